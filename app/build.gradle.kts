@@ -36,6 +36,15 @@ android {
     buildFeatures {
         viewBinding = true
     }
+
+    testOptions {
+        // android.util.Log and friends return defaults instead of throwing on the JVM
+        unitTests.isReturnDefaultValues = true
+        unitTests.all {
+            // Benchmarks under src/test are skipped unless -Dbrbscan.bench=true is passed
+            it.systemProperty("brbscan.bench", System.getProperty("brbscan.bench") ?: "false")
+        }
+    }
 }
 
 
@@ -0,0 +1,66 @@
+package com.example.brbscan;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares four single-crop interpreter calls against one batched call of four crops on the
+ * bundled model. Runs on a device because TFLite has no JVM runtime here.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MultiCropBenchmark {
+
+    private static final String TAG = "MultiCropBenchmark";
+    private static final int CROPS = 4;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 30;
+
+    @Test
+    public void batchedCrops_costLessPerCropThanSequentialRuns() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        MappedByteBuffer model = ModelLoader.mapAsset(context.getAssets(), "banknote_model.tflite");
+        TfliteInferenceEngine engine = new TfliteInferenceEngine(model, InferenceConfig.cpu(4, true));
+        try (InputStream in = context.getAssets().open("fusion.properties")) {
+            Recognizer recognizer = new Recognizer(engine,
+                    FusionConfig.load(in, engine.getOutputSpec().numElements()));
+
+            ByteBuffer single = recognizer.newPreprocessor().getInput();
+            long sequential = time(recognizer, single, CROPS);
+
+            recognizer.setCrops(CROPS);
+            ByteBuffer batched = recognizer.newPreprocessor().getInput();
+            long batch = time(recognizer, batched, 1);
+
+            Log.i(TAG, "per crop: sequential " + sequential / CROPS / 1000 + " us, batched "
+                    + batch / CROPS / 1000 + " us");
+            assertTrue("Batched " + batch + " ns vs sequential " + sequential + " ns", batch < sequential);
+        } finally {
+            engine.close();
+        }
+    }
+
+    // Median nanoseconds for `runs` back-to-back recognize() calls
+    private static long time(Recognizer recognizer, ByteBuffer input, int runs) {
+        for (int i = 0; i < WARMUP; i++) recognizer.recognize(input);
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            for (int r = 0; r < runs; r++) recognizer.recognize(input);
+            samples[i] = System.nanoTime() - start;
+        }
+        java.util.Arrays.sort(samples);
+        return samples[ITERATIONS / 2];
+    }
+}
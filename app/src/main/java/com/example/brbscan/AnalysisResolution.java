@@ -0,0 +1,99 @@
+package com.example.brbscan;
+
+import android.util.Size;
+
+import androidx.camera.core.resolutionselector.ResolutionFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chooses the camera analysis resolution from what the device supports. The smallest size
+ * whose short side still resolves a region of interest covering {@code minRoiFraction} of the
+ * frame at the model's input size wins: larger frames only cost conversion, gating and ROI
+ * time for pixels the preprocessor averages away, smaller ones make it upsample the note.
+ */
+public final class AnalysisResolution {
+
+    /** Smallest region of interest, as a fraction of the frame's short side, that must not be upsampled. */
+    static final float DEFAULT_MIN_ROI_FRACTION = 0.5f;
+
+    // Sensors are natively 4:3, so that aspect keeps the full field of view
+    private static final float NATIVE_ASPECT = 4f / 3f;
+
+    private AnalysisResolution() {
+    }
+
+    /** Short side a frame needs so an ROI of {@code minRoiFraction} still has {@code inputSize} pixels. */
+    static int requiredShortSide(int inputSize, float minRoiFraction) {
+        return (int) Math.ceil(inputSize / minRoiFraction);
+    }
+
+    /**
+     * Index of the size to request among {@code sizes} ({width, height} pairs in any
+     * orientation), or -1 if the list is empty. When no size is large enough the one with the
+     * longest short side is taken.
+     */
+    static int choose(int[][] sizes, int inputSize, float minRoiFraction) {
+        int required = requiredShortSide(inputSize, minRoiFraction);
+        int best = -1;
+        boolean bestCovers = false;
+        for (int i = 0; i < sizes.length; i++) {
+            int shortSide = Math.min(sizes[i][0], sizes[i][1]);
+            boolean covers = shortSide >= required;
+            if (best < 0 || (covers && !bestCovers) || (covers == bestCovers && better(sizes[i], sizes[best], covers))) {
+                best = i;
+                bestCovers = covers;
+            }
+        }
+        return best;
+    }
+
+    // Among covering sizes the smallest area wins, otherwise the longest short side; ties go to 4:3
+    private static boolean better(int[] a, int[] b, boolean covers) {
+        long areaA = (long) a[0] * a[1];
+        long areaB = (long) b[0] * b[1];
+        if (covers) {
+            if (areaA != areaB) return areaA < areaB;
+        } else {
+            int shortA = Math.min(a[0], a[1]);
+            int shortB = Math.min(b[0], b[1]);
+            if (shortA != shortB) return shortA > shortB;
+            if (areaA != areaB) return areaA < areaB;
+        }
+        return aspectError(a) < aspectError(b);
+    }
+
+    private static float aspectError(int[] size) {
+        float aspect = (float) Math.max(size[0], size[1]) / Math.min(size[0], size[1]);
+        return Math.abs(aspect - NATIVE_ASPECT);
+    }
+
+    /**
+     * CameraX filter that moves the chosen size to the front of the supported list, leaving
+     * the rest as fallbacks in their original order. {@code listener} sees the pick.
+     */
+    static ResolutionFilter filter(int inputSize, float minRoiFraction, Listener listener) {
+        return (supportedSizes, rotationDegrees) -> {
+            int[][] sizes = new int[supportedSizes.size()][];
+            for (int i = 0; i < sizes.length; i++) {
+                Size size = supportedSizes.get(i);
+                sizes[i] = new int[]{size.getWidth(), size.getHeight()};
+            }
+            int chosen = choose(sizes, inputSize, minRoiFraction);
+            if (chosen < 0) return supportedSizes;
+            List<Size> ordered = new ArrayList<>(supportedSizes.size());
+            ordered.add(supportedSizes.get(chosen));
+            for (int i = 0; i < sizes.length; i++) {
+                if (i != chosen) ordered.add(supportedSizes.get(i));
+            }
+            listener.onChosen(sizes[chosen][0], sizes[chosen][1], supportedSizes.size(),
+                    Math.min(sizes[chosen][0], sizes[chosen][1]) >= requiredShortSide(inputSize, minRoiFraction));
+            return ordered;
+        };
+    }
+
+    public interface Listener {
+        void onChosen(int width, int height, int supportedCount, boolean coversRoi);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.brbscan;
+
+/**
+ * Decides which camera frames are worth analyzing. The interval between analyses adapts to
+ * measured inference time, a luma scene-change score and how stable recent results are:
+ * it drops to the inference floor while something is moving into view and backs off
+ * geometrically while the scene is static, furthest when nothing has been found.
+ */
+public class AnalysisScheduler {
+
+    public enum Decision {
+        /** Scene changed since the last analysis; analyze as soon as inference allows. */
+        ANALYZE_SCENE_CHANGE,
+        /** Scene is static but the current interval has elapsed. */
+        ANALYZE_INTERVAL,
+        /** Too soon since the last analysis. */
+        SKIP
+    }
+
+    private static final int GRID_COLS = 16;
+    private static final int GRID_ROWS = 12;
+    private static final float SCENE_CHANGE_THRESHOLD = 12f;
+    private static final long MIN_INTERVAL_NANOS = 50_000_000L;
+    private static final long STABLE_MAX_INTERVAL_NANOS = 600_000_000L;
+    private static final long IDLE_MAX_INTERVAL_NANOS = 1_000_000_000L;
+    private static final int STABLE_RESULTS_BEFORE_BACKOFF = 2;
+    private static final int EMPTY_RESULTS_BEFORE_IDLE = 3;
+    private static final float INFERENCE_EWMA_ALPHA = 0.2f;
+
+    private final LumaGrid current = new LumaGrid(GRID_COLS, GRID_ROWS);
+    private final LumaGrid lastAnalyzed = new LumaGrid(GRID_COLS, GRID_ROWS);
+    private boolean hasLastAnalyzed = false;
+
+    private long lastAnalysisNanos = 0;
+    // Read by getLoad() from other threads
+    private volatile long intervalNanos = MIN_INTERVAL_NANOS;
+    private float lastSceneScore = 0f;
+    private Decision lastDecision = Decision.SKIP;
+    private long analyzedCount = 0;
+    private long skippedCount = 0;
+
+    // Written from the inference thread
+    private volatile long inferenceNanos = 0;
+    private volatile int stableResults = 0;
+    private volatile int emptyResults = 0;
+    private int lastLabel = -1;
+    private volatile boolean sustained = false;
+    // Raised by the performance governor to analyse less often when hot or low on battery
+    private volatile long minIntervalNanos = MIN_INTERVAL_NANOS;
+
+    /** Called on the camera thread for every frame; samples luma, so the frame must be open. */
+    public boolean shouldAnalyze(YuvFrame frame, long nowNanos) {
+        current.sample(frame);
+        lastSceneScore = hasLastAnalyzed ? current.meanAbsDiff(lastAnalyzed) : Float.MAX_VALUE;
+
+        long floor = Math.max(minIntervalNanos, inferenceNanos);
+        boolean sceneChanged = lastSceneScore >= SCENE_CHANGE_THRESHOLD;
+        if (sceneChanged) {
+            intervalNanos = floor;
+        }
+
+        long elapsed = nowNanos - lastAnalysisNanos;
+        if (hasLastAnalyzed && elapsed < Math.max(intervalNanos, floor)) {
+            lastDecision = Decision.SKIP;
+            skippedCount++;
+            return false;
+        }
+
+        lastDecision = sceneChanged ? Decision.ANALYZE_SCENE_CHANGE : Decision.ANALYZE_INTERVAL;
+        if (!sceneChanged) {
+            // Static scene: stretch the interval while results agree
+            long cap = sustained ? floor
+                    : emptyResults >= EMPTY_RESULTS_BEFORE_IDLE ? IDLE_MAX_INTERVAL_NANOS
+                    : stableResults >= STABLE_RESULTS_BEFORE_BACKOFF ? STABLE_MAX_INTERVAL_NANOS
+                    : floor;
+            intervalNanos = Math.max(floor, Math.min(cap, intervalNanos + intervalNanos / 2));
+        }
+
+        lastAnalyzed.copyFrom(current);
+        hasLastAnalyzed = true;
+        lastAnalysisNanos = nowNanos;
+        analyzedCount++;
+        return true;
+    }
+
+    /**
+     * Called on the inference thread after each analyzed frame with how long inference took
+     * and which label, if any, was detected ({@code label < 0} for nothing).
+     */
+    public void onResult(long durationNanos, int label) {
+        long previous = inferenceNanos;
+        inferenceNanos = previous == 0 ? durationNanos
+                : (long) (previous + INFERENCE_EWMA_ALPHA * (durationNanos - previous));
+        updateStreaks(label);
+    }
+
+    /**
+     * Reports a frame that was rejected before inference. Counts as an empty result but
+     * leaves the inference-time estimate alone.
+     */
+    public void onEmptyFrame() {
+        updateStreaks(-1);
+    }
+
+    private void updateStreaks(int label) {
+        if (label < 0) {
+            emptyResults++;
+            stableResults = 0;
+        } else {
+            emptyResults = 0;
+            stableResults = label == lastLabel ? stableResults + 1 : 0;
+        }
+        lastLabel = label;
+    }
+
+    /** Keeps analysing at the inference floor even when the scene is static, e.g. while counting. */
+    public void setSustained(boolean sustained) {
+        this.sustained = sustained;
+    }
+
+    /** Shortest interval between analyses, never below the default; safe to call from any thread. */
+    public void setMinInterval(long nanos) {
+        minIntervalNanos = Math.max(MIN_INTERVAL_NANOS, nanos);
+    }
+
+    public void reset() {
+        hasLastAnalyzed = false;
+        intervalNanos = minIntervalNanos;
+        stableResults = 0;
+        emptyResults = 0;
+        lastLabel = -1;
+    }
+
+    /**
+     * Share of time the inference thread is busy at the current analysis interval, from 0
+     * while idle to 1 when frames are analysed back to back. Safe to call from any thread.
+     */
+    public float getLoad() {
+        long interval = Math.max(minIntervalNanos, intervalNanos);
+        return Math.min(1f, (float) inferenceNanos / interval);
+    }
+
+    public long getIntervalMillis() {
+        return Math.max(intervalNanos, Math.max(minIntervalNanos, inferenceNanos)) / 1_000_000L;
+    }
+
+    /** Current target analysis rate in frames per second. */
+    public float getAnalysisRate() {
+        return 1000f / Math.max(1, getIntervalMillis());
+    }
+
+    public float getLastSceneScore() {
+        return lastSceneScore;
+    }
+
+    public Decision getLastDecision() {
+        return lastDecision;
+    }
+
+    public long getAnalyzedCount() {
+        return analyzedCount;
+    }
+
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    public long getInferenceMillis() {
+        return inferenceNanos / 1_000_000L;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.brbscan;
+
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the fastest inference configuration by timing each candidate on a synthetic input.
+ * The winner is persisted so later launches create it directly and skip the probe.
+ */
+public class BackendSelector {
+
+    private static final String TAG = "BackendSelector";
+    private static final int WARMUP_RUNS = 2;
+    private static final int TIMED_RUNS = 5;
+
+    public interface Store {
+        String get(String key);
+
+        void put(String key, String value);
+    }
+
+    private final InferenceEngine.Factory factory;
+    private final Store store;
+    private final Map<InferenceConfig, Long> lastTimings = new LinkedHashMap<>();
+    private boolean lastSelectionCached = false;
+
+    public BackendSelector(InferenceEngine.Factory factory, Store store) {
+        this.factory = factory;
+        this.store = store;
+    }
+
+    /**
+     * Returns an engine for the cached configuration under {@code cacheKey}, or probes every
+     * candidate on a zero-filled input and returns the fastest. The caller owns the returned engine.
+     */
+    public InferenceEngine select(String cacheKey, List<InferenceConfig> candidates) throws Exception {
+        lastTimings.clear();
+        lastSelectionCached = false;
+
+        InferenceConfig cached = InferenceConfig.fromKey(store.get(cacheKey));
+        if (cached != null) {
+            try {
+                InferenceEngine engine = factory.create(cached);
+                lastSelectionCached = true;
+                return engine;
+            } catch (Exception e) {
+                Log.w(TAG, "Cached backend " + cached + " failed, probing again", e);
+            }
+        }
+
+        InferenceEngine best = null;
+        long bestNanos = Long.MAX_VALUE;
+        Exception lastError = null;
+
+        for (InferenceConfig config : candidates) {
+            InferenceEngine engine;
+            try {
+                engine = factory.create(config);
+            } catch (Exception e) {
+                lastError = e;
+                continue;
+            }
+
+            long nanos;
+            try {
+                nanos = time(engine);
+            } catch (RuntimeException e) {
+                lastError = e;
+                engine.close();
+                continue;
+            }
+            lastTimings.put(config, nanos);
+
+            if (nanos < bestNanos) {
+                if (best != null) best.close();
+                best = engine;
+                bestNanos = nanos;
+            } else {
+                engine.close();
+            }
+        }
+
+        if (best == null) {
+            throw lastError != null ? lastError : new IllegalStateException("No inference backend available");
+        }
+
+        store.put(cacheKey, best.getConfig().key());
+        Log.i(TAG, "Selected " + best.getConfig() + " from " + lastTimings);
+        return best;
+    }
+
+    /** Median run time in nanoseconds per candidate from the last probe; empty on a cache hit. */
+    public Map<InferenceConfig, Long> getLastTimings() {
+        return lastTimings;
+    }
+
+    public boolean wasLastSelectionCached() {
+        return lastSelectionCached;
+    }
+
+    private static long time(InferenceEngine engine) {
+        ByteBuffer input = ByteBuffer.allocateDirect(engine.getInputSpec().numBytes())
+                .order(ByteOrder.nativeOrder());
+        ByteBuffer output = ByteBuffer.allocateDirect(engine.getOutputSpec().numBytes())
+                .order(ByteOrder.nativeOrder());
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            engine.run(input, output);
+        }
+        long[] samples = new long[TIMED_RUNS];
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            long start = System.nanoTime();
+            engine.run(input, output);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[TIMED_RUNS / 2];
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.brbscan;
+
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * One recognizable currency: model file, optional expected input shape, labels, speech,
+ * vibration and face value per class, counting phrases, result caching and fusion settings.
+ * Packs are described by a UTF-8 properties manifest, either bundled under
+ * {@code assets/packs/<id>.properties} (paths relative to the asset root) or downloaded to
+ * {@code files/packs/<id>.properties} (paths relative to that directory). Fusion keys may
+ * live in the manifest itself or in a separate {@code fusion} file.
+ */
+public class CurrencyPack {
+
+    private static final String TAG = "CurrencyPack";
+    static final String PACK_DIR = "packs";
+    private static final String SUFFIX = ".properties";
+
+    final String id;
+    final String name;
+    final Locale locale;
+    final String modelPath;
+    final String fusionPath;
+    final int[] inputShape;
+    final int crops;
+    final int cacheSize;
+    final String[] labels;
+    final String[] speech;
+    final long[][] vibrations;
+    final int[] values;
+    final String countStart;
+    // Format with the running total and the number of notes
+    final String countTotal;
+    private final Properties properties;
+    private final File baseDir;
+
+    private CurrencyPack(String id, Properties p, File baseDir) {
+        this.id = id;
+        this.baseDir = baseDir;
+        properties = p;
+        name = p.getProperty("name", id).trim();
+        locale = new Locale(p.getProperty("locale", "ar").trim());
+        modelPath = required(p, "model");
+        String fusion = p.getProperty("fusion");
+        fusionPath = fusion == null ? null : fusion.trim();
+        String shape = p.getProperty("input.shape");
+        inputShape = shape == null ? null : parseInts(shape);
+        crops = Integer.parseInt(p.getProperty("crops", "1").trim());
+        if (crops < 1 || crops > TensorPreprocessor.MAX_CROPS) {
+            throw new IllegalArgumentException("Pack " + id + " asks for " + crops + " crops");
+        }
+        cacheSize = Integer.parseInt(p.getProperty("cache", String.valueOf(ResultCache.DEFAULT_CAPACITY)).trim());
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Pack " + id + " asks for a cache of " + cacheSize);
+        }
+
+        int classes = Integer.parseInt(required(p, "classes"));
+        if (classes < 1) throw new IllegalArgumentException("Pack " + id + " has no classes");
+        labels = new String[classes];
+        speech = new String[classes];
+        vibrations = new long[classes][];
+        values = new int[classes];
+        for (int i = 0; i < classes; i++) {
+            String prefix = "class." + i + ".";
+            labels[i] = required(p, prefix + "label");
+            speech[i] = p.getProperty(prefix + "speech", labels[i]).trim();
+            String pattern = p.getProperty(prefix + "vibration");
+            vibrations[i] = pattern == null ? null : parseLongs(pattern);
+            values[i] = Integer.parseInt(p.getProperty(prefix + "value", "0").trim());
+        }
+        countStart = p.getProperty("count.start", "+").trim();
+        countTotal = p.getProperty("count.total", "%1$d (%2$d)").trim();
+    }
+
+    /** Parses a manifest; {@code baseDir} is null for bundled packs. */
+    public static CurrencyPack load(String id, InputStream in, File baseDir) throws IOException {
+        Properties properties = new Properties();
+        try (InputStreamReader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new CurrencyPack(id, properties, baseDir);
+    }
+
+    /**
+     * Lists bundled packs followed by downloaded ones; a downloaded pack replaces a bundled
+     * pack with the same id. Broken manifests are skipped.
+     */
+    public static List<CurrencyPack> scan(AssetManager assets, File storageDir) {
+        Map<String, CurrencyPack> packs = new LinkedHashMap<>();
+        try {
+            String[] names = assets.list(PACK_DIR);
+            if (names != null) {
+                Arrays.sort(names);
+                for (String name : names) {
+                    if (!name.endsWith(SUFFIX)) continue;
+                    String id = name.substring(0, name.length() - SUFFIX.length());
+                    try (InputStream in = assets.open(PACK_DIR + "/" + name)) {
+                        packs.put(id, load(id, in, null));
+                    } catch (IOException | RuntimeException e) {
+                        Log.w(TAG, "Skipping bundled pack " + name, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot list bundled packs", e);
+        }
+
+        File dir = storageDir == null ? null : new File(storageDir, PACK_DIR);
+        File[] files = dir == null ? null : dir.listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.endsWith(SUFFIX)) continue;
+                String id = name.substring(0, name.length() - SUFFIX.length());
+                try (InputStream in = new FileInputStream(file)) {
+                    packs.put(id, load(id, in, dir));
+                } catch (IOException | RuntimeException e) {
+                    Log.w(TAG, "Skipping downloaded pack " + name, e);
+                }
+            }
+        }
+        return new ArrayList<>(packs.values());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public int numClasses() {
+        return labels.length;
+    }
+
+    public String label(int index) {
+        return labels[index];
+    }
+
+    public String speech(int index) {
+        return speech[index];
+    }
+
+    /** Vibration waveform for a class, or null when the class has none. */
+    public long[] vibration(int index) {
+        return vibrations[index];
+    }
+
+    /** Face value of a class in the currency's units; 0 for classes that are not notes. */
+    public int value(int index) {
+        return values[index];
+    }
+
+    /** Spoken running total for counting mode. */
+    public String totalText(long total, int notes) {
+        return String.format(locale, countTotal, total, notes);
+    }
+
+    public boolean isBundled() {
+        return baseDir == null;
+    }
+
+    /** Memory-maps the pack's model; only called for the pack being activated. */
+    MappedByteBuffer mapModel(AssetManager assets) throws IOException {
+        return baseDir == null ? ModelLoader.mapAsset(assets, modelPath)
+                : ModelLoader.mapFile(new File(baseDir, modelPath));
+    }
+
+    FusionConfig loadFusionConfig(AssetManager assets) throws IOException {
+        if (fusionPath == null) {
+            return FusionConfig.fromProperties(properties, numClasses());
+        }
+        try (InputStream in = baseDir == null ? assets.open(fusionPath)
+                : new FileInputStream(new File(baseDir, fusionPath))) {
+            return FusionConfig.load(in, numClasses());
+        }
+    }
+
+    /** Fails when the manifest declares a single-image input shape the loaded model does not have. */
+    void checkInputSpec(TensorSpec spec) {
+        if (inputShape != null && !Arrays.equals(inputShape, spec.shape)) {
+            throw new IllegalStateException("Pack " + id + " expects input "
+                    + Arrays.toString(inputShape) + " but model has " + spec);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return id + " (" + name + ", " + numClasses() + " classes)";
+    }
+
+    private static String required(Properties p, String key) {
+        String value = p.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing pack key " + key);
+        }
+        return value.trim();
+    }
+
+    private static int[] parseInts(String csv) {
+        String[] parts = csv.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) values[i] = Integer.parseInt(parts[i].trim());
+        return values;
+    }
+
+    private static long[] parseLongs(String csv) {
+        String[] parts = csv.split(",");
+        long[] values = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) values[i] = Long.parseLong(parts[i].trim());
+        return values;
+    }
+}
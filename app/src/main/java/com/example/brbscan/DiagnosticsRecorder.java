@@ -0,0 +1,297 @@
+package com.example.brbscan;
+
+import org.tensorflow.lite.DataType;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opt-in flight recorder for missed or wrong notes: keeps the last {@code capacity} analysed
+ * frames in a fixed-size memory-mapped file, each as a downsampled RGB copy of the model
+ * input, the raw logits, timings and the fused decision. Writes are plain stores into the
+ * mapping, so recording never blocks on I/O or allocates, and what was written survives an
+ * app crash. {@link #readAll(File)} reads a dump back, oldest record first.
+ *
+ * <p>File layout, little-endian: a {@value #HEADER_BYTES}-byte header followed by
+ * {@code capacity} fixed-size records.
+ * <pre>
+ * header: int magic, int version, int capacity, int recordBytes, int numClasses,
+ *         int thumbWidth, int thumbHeight, int reserved, long written
+ * record: long sequence, long timestampNanos, long inferenceNanos, long postprocessNanos,
+ *         int decided, int topClass, float confidence, byte crop, byte flags, short reserved,
+ *         float[numClasses] logits, byte[thumbHeight * thumbWidth * 3] rgb
+ * </pre>
+ * A record is committed by writing its 1-based sequence last, then the header's count, so a
+ * torn record is recognisable by its sequence.
+ *
+ * <p>{@link #record} and {@link #recordEmpty} are called from the inference thread only.
+ */
+public class DiagnosticsRecorder implements Closeable {
+
+    static final int MAGIC = 0x44425242; // "BRBD"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    private static final int WRITTEN = 32;
+    private static final int RECORD_FIXED_BYTES = 48;
+
+    /** Fusion ran on cached logits; the model did not run. */
+    public static final int FLAG_CACHE_HIT = 1;
+    /** No note candidate: neither preprocessing nor the model ran, so there is no image. */
+    public static final int FLAG_EMPTY = 2;
+
+    /** One recorded frame, as read back from a dump. */
+    public static class Record {
+        public long sequence;
+        public long timestampNanos;
+        public long inferenceNanos;
+        public long postprocessNanos;
+        public int decided;
+        public int topClass;
+        public float confidence;
+        public int crop;
+        public int flags;
+        public float[] logits;
+        /** Interleaved RGB, {@code thumbHeight} rows of {@code thumbWidth} pixels; null for empty frames. */
+        public byte[] rgb;
+        public int thumbWidth;
+        public int thumbHeight;
+    }
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer map;
+    private final TensorSpec inputSpec;
+    private final int capacity;
+    private final int recordBytes;
+    private final int numClasses;
+    private final int inputWidth;
+    private final int inputHeight;
+    private final int thumbWidth;
+    private final int thumbHeight;
+    // Every step-th input pixel in each direction becomes a thumbnail pixel
+    private final int step;
+    private final byte[] channelTable;
+    private long written;
+
+    /**
+     * Maps {@code path}, resuming its ring if it was written with the same geometry and
+     * starting a new one otherwise. The thumbnail is the model input sampled down to at most
+     * {@code maxThumbSize} pixels on its longer side.
+     */
+    public DiagnosticsRecorder(File path, TensorSpec inputSpec, int numClasses, int capacity,
+                               int maxThumbSize) throws IOException {
+        if (capacity < 1 || maxThumbSize < 1) throw new IllegalArgumentException("Empty recorder");
+        this.inputSpec = inputSpec;
+        this.capacity = capacity;
+        this.numClasses = numClasses;
+        inputHeight = inputSpec.shape[1];
+        inputWidth = inputSpec.shape[2];
+        step = (Math.max(inputWidth, inputHeight) + maxThumbSize - 1) / maxThumbSize;
+        thumbWidth = inputWidth / step;
+        thumbHeight = inputHeight / step;
+        recordBytes = (RECORD_FIXED_BYTES + 4 * numClasses + thumbWidth * thumbHeight * 3 + 7) & ~7;
+        channelTable = inputSpec.isQuantized() ? quantizedChannels(inputSpec) : null;
+
+        long size = HEADER_BYTES + (long) capacity * recordBytes;
+        file = new RandomAccessFile(path, "rw");
+        try {
+            file.setLength(size);
+            map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        if (headerMatches()) {
+            written = map.getLong(WRITTEN);
+        } else {
+            writeHeader();
+        }
+    }
+
+    private boolean headerMatches() {
+        return map.getInt(0) == MAGIC && map.getInt(4) == VERSION && map.getInt(8) == capacity
+                && map.getInt(12) == recordBytes && map.getInt(16) == numClasses
+                && map.getInt(20) == thumbWidth && map.getInt(24) == thumbHeight;
+    }
+
+    private void writeHeader() {
+        for (int i = 0; i < HEADER_BYTES; i += 8) map.putLong(i, 0L);
+        map.putInt(0, MAGIC);
+        map.putInt(4, VERSION);
+        map.putInt(8, capacity);
+        map.putInt(12, recordBytes);
+        map.putInt(16, numClasses);
+        map.putInt(20, thumbWidth);
+        map.putInt(24, thumbHeight);
+        // Stale records from another geometry must not pass as committed
+        for (int r = 0; r < capacity; r++) map.putLong(HEADER_BYTES + r * recordBytes, 0L);
+        written = 0;
+    }
+
+    /**
+     * Records a frame the model (or the result cache) scored. {@code input} is the batched
+     * model input and {@code crop} the batch entry whose {@code logits} were fused.
+     */
+    public void record(ByteBuffer input, int crop, float[] logits, long timestampNanos,
+                       long inferenceNanos, long postprocessNanos, int decided, int topClass,
+                       float confidence) {
+        int base = begin(timestampNanos, inferenceNanos, postprocessNanos, decided, topClass,
+                confidence, crop, inferenceNanos == 0 ? FLAG_CACHE_HIT : 0);
+        int at = base + RECORD_FIXED_BYTES;
+        for (int k = 0; k < numClasses; k++) map.putFloat(at + 4 * k, logits[k]);
+        writeThumbnail(input, crop, at + 4 * numClasses);
+        commit(base);
+    }
+
+    /** Records a frame rejected before preprocessing, for its timing and decision. */
+    public void recordEmpty(long timestampNanos, long postprocessNanos, int decided, int topClass,
+                            float confidence) {
+        int base = begin(timestampNanos, 0, postprocessNanos, decided, topClass, confidence, 0, FLAG_EMPTY);
+        int at = base + RECORD_FIXED_BYTES;
+        for (int k = 0; k < numClasses; k++) map.putFloat(at + 4 * k, 0f);
+        commit(base);
+    }
+
+    private int begin(long timestampNanos, long inferenceNanos, long postprocessNanos, int decided,
+                      int topClass, float confidence, int crop, int flags) {
+        int base = HEADER_BYTES + (int) (written % capacity) * recordBytes;
+        map.putLong(base, 0L);
+        map.putLong(base + 8, timestampNanos);
+        map.putLong(base + 16, inferenceNanos);
+        map.putLong(base + 24, postprocessNanos);
+        map.putInt(base + 32, decided);
+        map.putInt(base + 36, topClass);
+        map.putFloat(base + 40, confidence);
+        map.put(base + 44, (byte) crop);
+        map.put(base + 45, (byte) flags);
+        map.putShort(base + 46, (short) 0);
+        return base;
+    }
+
+    private void commit(int base) {
+        written++;
+        map.putLong(base, written);
+        map.putLong(WRITTEN, written);
+    }
+
+    // Nearest-pixel sampling; the thumbnail only has to show what the model was looking at
+    private void writeThumbnail(ByteBuffer input, int crop, int at) {
+        int cropOffset = crop * inputHeight * inputWidth * 3;
+        for (int ty = 0; ty < thumbHeight; ty++) {
+            int rowOffset = cropOffset + ty * step * inputWidth * 3;
+            for (int tx = 0; tx < thumbWidth; tx++) {
+                int element = rowOffset + tx * step * 3;
+                int pixel = at + (ty * thumbWidth + tx) * 3;
+                for (int c = 0; c < 3; c++) map.put(pixel + c, channel(input, element + c));
+            }
+        }
+    }
+
+    // Undoes the input encoding back to an 8-bit channel value
+    private byte channel(ByteBuffer input, int element) {
+        float value;
+        switch (inputSpec.dataType) {
+            case UINT8:
+            case INT8:
+                return channelTable[input.get(element) & 0xff];
+            default:
+                value = input.getFloat(element * 4);
+                break;
+        }
+        return (byte) Math.max(0, Math.min(255, Math.round((value + 1) * 127.5f)));
+    }
+
+    private static byte[] quantizedChannels(TensorSpec spec) {
+        int min = spec.dataType == DataType.INT8 ? -128 : 0;
+        byte[] table = new byte[256];
+        for (int b = 0; b < 256; b++) {
+            int q = min == 0 ? b : (byte) b;
+            int channel = spec.scale > 0f
+                    ? Math.round(((q - spec.zeroPoint) * spec.scale + 1) * 127.5f)
+                    : q - min;
+            table[b] = (byte) Math.max(0, Math.min(255, channel));
+        }
+        return table;
+    }
+
+    /** Records committed since the ring was created, including overwritten ones. */
+    public long getWritten() {
+        return written;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Asks the OS to write dirty pages back now; not needed for crash safety of the app. */
+    public void flush() {
+        map.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        map.force();
+        file.close();
+    }
+
+    /** Reads every committed record of a dump, oldest first; torn records are skipped. */
+    public static List<Record> readAll(File path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            ByteBuffer map = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (file.length() < HEADER_BYTES || map.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a diagnostics dump");
+            }
+            if (map.getInt(4) != VERSION) {
+                throw new IOException(path + " has unsupported version " + map.getInt(4));
+            }
+            int capacity = map.getInt(8);
+            int recordBytes = map.getInt(12);
+            int numClasses = map.getInt(16);
+            int thumbWidth = map.getInt(20);
+            int thumbHeight = map.getInt(24);
+            long written = map.getLong(WRITTEN);
+            if (file.length() < HEADER_BYTES + (long) capacity * recordBytes) {
+                throw new IOException(path + " is truncated");
+            }
+
+            List<Record> records = new ArrayList<>();
+            for (long sequence = Math.max(1, written - capacity + 1); sequence <= written; sequence++) {
+                int base = HEADER_BYTES + (int) ((sequence - 1) % capacity) * recordBytes;
+                if (map.getLong(base) != sequence) continue;
+                Record r = new Record();
+                r.sequence = sequence;
+                r.timestampNanos = map.getLong(base + 8);
+                r.inferenceNanos = map.getLong(base + 16);
+                r.postprocessNanos = map.getLong(base + 24);
+                r.decided = map.getInt(base + 32);
+                r.topClass = map.getInt(base + 36);
+                r.confidence = map.getFloat(base + 40);
+                r.crop = map.get(base + 44);
+                r.flags = map.get(base + 45);
+                r.logits = new float[numClasses];
+                for (int k = 0; k < numClasses; k++) {
+                    r.logits[k] = map.getFloat(base + RECORD_FIXED_BYTES + 4 * k);
+                }
+                r.thumbWidth = thumbWidth;
+                r.thumbHeight = thumbHeight;
+                if ((r.flags & FLAG_EMPTY) == 0) {
+                    r.rgb = new byte[thumbWidth * thumbHeight * 3];
+                    ByteBuffer pixels = map.duplicate();
+                    pixels.position(base + RECORD_FIXED_BYTES + 4 * numClasses);
+                    pixels.get(r.rgb);
+                }
+                records.add(r);
+            }
+            return records;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.brbscan;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Rejects frames that are not worth classifying before any colour conversion happens.
+ * Exposure, contrast and sharpness (variance of a 4-neighbour Laplacian) come from a sparse
+ * grid of Y-plane samples; motion is the luma-grid difference to the previous frame,
+ * normalized to a 30 fps frame gap. Verdicts are counted per reason for threshold tuning.
+ */
+public class FrameGate {
+
+    public enum Verdict {
+        PASS(false),
+        TOO_DARK(false),
+        OVEREXPOSED(false),
+        LOW_CONTRAST(false),
+        MOTION(true),
+        BLURRY(true);
+
+        private final boolean isTransient;
+
+        Verdict(boolean isTransient) {
+            this.isTransient = isTransient;
+        }
+
+        /** Transient rejections are expected to clear within a few frames on their own. */
+        public boolean isTransient() {
+            return isTransient;
+        }
+    }
+
+    private static final int GRID_COLS = 40;
+    private static final int GRID_ROWS = 30;
+    private static final int HISTOGRAM_BINS = 16;
+    private static final int DARK_BINS = 2;  // luma < 32
+    private static final long REFERENCE_FRAME_NANOS = 33_333_333L;
+    private static final long MAX_MOTION_GAP_NANOS = 200_000_000L;
+
+    // Thresholds; package-private so tests and tuning builds can adjust them
+    float maxDarkFraction = 0.8f;
+    float maxClippedFraction = 0.5f;
+    float minContrast = 8f;
+    float minSharpness = 40f;
+    float maxMotion = 18f;
+
+    final int[] histogram = new int[HISTOGRAM_BINS];
+    private final LumaGrid current = new LumaGrid(16, 12);
+    private final LumaGrid previous = new LumaGrid(16, 12);
+    private final AtomicLongArray counts = new AtomicLongArray(Verdict.values().length);
+    private volatile boolean hasPrevious = false;
+    private long previousNanos;
+
+    private float lastMean;
+    private float lastContrast;
+    private float lastSharpness;
+    private float lastMotion;
+    private Verdict lastVerdict = Verdict.PASS;
+
+    /** Classifies one frame; meant to run on every camera frame so motion has a close reference. */
+    public Verdict check(YuvFrame frame, long nowNanos) {
+        ByteBuffer y = frame.y;
+        int rowStride = frame.yRowStride;
+        int pixelStride = frame.yPixelStride;
+        int width = frame.width;
+        int height = frame.height;
+        for (int i = 0; i < HISTOGRAM_BINS; i++) histogram[i] = 0;
+
+        long sum = 0;
+        long sumSq = 0;
+        long lapSum = 0;
+        long lapSumSq = 0;
+        for (int r = 0; r < GRID_ROWS; r++) {
+            int py = Math.max(1, Math.min(height - 2, (2 * r + 1) * height / (2 * GRID_ROWS)));
+            int rowOffset = py * rowStride;
+            for (int c = 0; c < GRID_COLS; c++) {
+                int px = Math.max(1, Math.min(width - 2, (2 * c + 1) * width / (2 * GRID_COLS)));
+                int offset = rowOffset + px * pixelStride;
+                int p = y.get(offset) & 0xff;
+                int laplacian = 4 * p
+                        - (y.get(offset - pixelStride) & 0xff) - (y.get(offset + pixelStride) & 0xff)
+                        - (y.get(offset - rowStride) & 0xff) - (y.get(offset + rowStride) & 0xff);
+                sum += p;
+                sumSq += p * p;
+                lapSum += laplacian;
+                lapSumSq += laplacian * laplacian;
+                histogram[p >> 4]++;
+            }
+        }
+
+        int samples = GRID_COLS * GRID_ROWS;
+        lastMean = (float) sum / samples;
+        lastContrast = (float) Math.sqrt(Math.max(0f, (float) sumSq / samples - lastMean * lastMean));
+        float lapMean = (float) lapSum / samples;
+        lastSharpness = (float) lapSumSq / samples - lapMean * lapMean;
+
+        current.sample(frame);
+        long gap = nowNanos - previousNanos;
+        if (hasPrevious && gap > 0 && gap <= MAX_MOTION_GAP_NANOS) {
+            lastMotion = current.meanAbsDiff(previous) * REFERENCE_FRAME_NANOS / gap;
+        } else {
+            lastMotion = 0f;
+        }
+        previous.copyFrom(current);
+        previousNanos = nowNanos;
+        hasPrevious = true;
+
+        int dark = 0;
+        for (int i = 0; i < DARK_BINS; i++) dark += histogram[i];
+        int clipped = histogram[HISTOGRAM_BINS - 1];
+
+        Verdict verdict;
+        if (dark > maxDarkFraction * samples) {
+            verdict = Verdict.TOO_DARK;
+        } else if (clipped > maxClippedFraction * samples) {
+            verdict = Verdict.OVEREXPOSED;
+        } else if (lastContrast < minContrast) {
+            verdict = Verdict.LOW_CONTRAST;
+        } else if (lastMotion > maxMotion) {
+            verdict = Verdict.MOTION;
+        } else if (lastSharpness < minSharpness) {
+            verdict = Verdict.BLURRY;
+        } else {
+            verdict = Verdict.PASS;
+        }
+        counts.incrementAndGet(verdict.ordinal());
+        lastVerdict = verdict;
+        return verdict;
+    }
+
+    /** Forgets the motion reference, e.g. after the camera was paused. */
+    public void reset() {
+        hasPrevious = false;
+    }
+
+    public long getCount(Verdict verdict) {
+        return counts.get(verdict.ordinal());
+    }
+
+    public long getCheckedCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) total += counts.get(i);
+        return total;
+    }
+
+    /** Luma grid of the last checked frame; valid until the next {@link #check}. */
+    public LumaGrid getLumaGrid() {
+        return current;
+    }
+
+    public Verdict getLastVerdict() {
+        return lastVerdict;
+    }
+
+    public float getLastMean() {
+        return lastMean;
+    }
+
+    public float getLastContrast() {
+        return lastContrast;
+    }
+
+    public float getLastSharpness() {
+        return lastSharpness;
+    }
+
+    public float getLastMotion() {
+        return lastMotion;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("checked=").append(getCheckedCount());
+        for (Verdict verdict : Verdict.values()) {
+            sb.append(' ').append(verdict.name().toLowerCase(Locale.ROOT)).append('=').append(getCount(verdict));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.brbscan;
+
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Two-stage frame pipeline. The camera thread preprocesses each frame into one of a ring of
+ * pre-allocated input buffers; a dedicated inference thread always takes the newest ready
+ * buffer. When the ring is full the oldest unconsumed frame is dropped, so latency stays
+ * bounded and conversion of frame N+1 overlaps inference of frame N.
+ */
+public class FramePipeline {
+
+    private static final String TAG = "FramePipeline";
+
+    public interface FrameConsumer {
+        /** Runs on the inference thread; {@code input} is only valid for the duration of the call. */
+        void onFrame(ByteBuffer input, long timestampNanos);
+
+        /**
+         * Like {@link #onFrame(ByteBuffer, long)}, with the frame's signature, which is only
+         * valid for the duration of the call and only computed when signatures are enabled.
+         */
+        default void onFrame(ByteBuffer input, FrameSignature signature, long timestampNanos) {
+            onFrame(input, timestampNanos);
+        }
+
+        /** Runs on the inference thread for frames submitted without a candidate region. */
+        default void onEmptyFrame(long timestampNanos) {
+        }
+    }
+
+    private static final int FREE = 0;
+    private static final int WRITING = 1;
+    private static final int READY = 2;
+    private static final int CONSUMING = 3;
+
+    private final TensorPreprocessor preprocessor;
+    private final FrameConsumer consumer;
+    private final InputEncoder[] inputs;
+    private final int[] states;
+    private final long[] sequences;
+    private final long[] timestamps;
+    private final boolean[] empty;
+    private final long[] readyNanos;
+    private final FrameSignature[] signatures;
+    private final RegionOfInterest readRegion = new RegionOfInterest();
+    private final Object lock = new Object();
+
+    private long nextSequence = 0;
+    private long submitted = 0;
+    private long dropped = 0;
+    private long consumed = 0;
+    private boolean running = false;
+    private Thread worker;
+    private Runnable onStopped;
+    private ScanMetrics metrics = ScanMetrics.DISCARD;
+    private boolean signing = false;
+
+    public FramePipeline(TensorPreprocessor preprocessor, int slotCount, FrameConsumer consumer) {
+        if (slotCount < 3) {
+            // One slot being written, one being consumed and one ready to hand over
+            throw new IllegalArgumentException("Pipeline needs at least 3 slots");
+        }
+        this.preprocessor = preprocessor;
+        this.consumer = consumer;
+        inputs = new InputEncoder[slotCount];
+        states = new int[slotCount];
+        sequences = new long[slotCount];
+        timestamps = new long[slotCount];
+        empty = new boolean[slotCount];
+        readyNanos = new long[slotCount];
+        signatures = new FrameSignature[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            inputs[i] = preprocessor.newInput();
+            signatures[i] = new FrameSignature();
+        }
+    }
+
+    /** Records preprocessing, queueing and dropped frames; set before {@link #start()}. */
+    public void setMetrics(ScanMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Computes a {@link FrameSignature} of each submitted frame on the camera thread, for a
+     * result cache on the consumer side; set before {@link #start()}.
+     */
+    public void setSignatures(boolean enabled) {
+        signing = enabled;
+    }
+
+    public void start() {
+        synchronized (lock) {
+            if (running) return;
+            running = true;
+            // Frames left over from a previous run are stale
+            for (int i = 0; i < states.length; i++) states[i] = FREE;
+        }
+        worker = new Thread(this::runWorker, "brbscan-inference");
+        worker.start();
+    }
+
+    /**
+     * Stops without waiting for the inference thread: {@code onStopped} runs on it once its
+     * current frame is done, or right away on the caller if no thread was running. A later
+     * {@link #stop()} still waits for the thread to end.
+     */
+    public void stopAsync(Runnable onStopped) {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+            if (worker != null) {
+                this.onStopped = onStopped;
+                return;
+            }
+        }
+        onStopped.run();
+    }
+
+    public void stop() {
+        Thread thread;
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+            thread = worker;
+            worker = null;
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Preprocesses {@code frame} into a free slot and hands it to the inference thread. Called
+     * from the camera thread; the frame may be closed as soon as this returns.
+     */
+    public boolean submit(YuvFrame frame) {
+        return submit(frame, null);
+    }
+
+    /**
+     * Like {@link #submit(YuvFrame)} but only the region {@code roi} is resampled into the
+     * input. When the detector found no candidate the frame skips preprocessing and inference
+     * entirely and the consumer sees {@link FrameConsumer#onEmptyFrame(long)} instead.
+     */
+    public boolean submit(YuvFrame frame, RegionOfInterest roi) {
+        boolean noCandidate = roi != null && !roi.found;
+        int slot;
+        synchronized (lock) {
+            if (!running) return false;
+            submitted++;
+            slot = claimSlot();
+            states[slot] = WRITING;
+        }
+
+        try {
+            if (noCandidate) {
+                metrics.increment(ScanMetrics.Counter.FRAMES_EMPTY);
+            } else {
+                long start = metrics.begin(ScanMetrics.Stage.PREPROCESS);
+                try {
+                    preprocessor.process(frame, inputs[slot], roi);
+                } finally {
+                    metrics.end(ScanMetrics.Stage.PREPROCESS, start);
+                }
+            }
+            if (signing && !noCandidate) {
+                long start = metrics.begin(ScanMetrics.Stage.SIGNATURE);
+                try {
+                    signatures[slot].compute(frame, preprocessor.readRegion(frame, roi, readRegion));
+                } finally {
+                    metrics.end(ScanMetrics.Stage.SIGNATURE, start);
+                }
+            } else {
+                signatures[slot].clear();
+            }
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                states[slot] = FREE;
+            }
+            throw e;
+        }
+
+        synchronized (lock) {
+            sequences[slot] = nextSequence++;
+            timestamps[slot] = frame.timestampNanos;
+            empty[slot] = noCandidate;
+            readyNanos[slot] = System.nanoTime();
+            states[slot] = READY;
+            lock.notifyAll();
+        }
+        return true;
+    }
+
+    // Caller holds the lock. Prefers a free slot, otherwise evicts the oldest ready frame.
+    private int claimSlot() {
+        int oldestReady = -1;
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] == FREE) return i;
+            if (states[i] == READY && (oldestReady < 0 || sequences[i] < sequences[oldestReady])) {
+                oldestReady = i;
+            }
+        }
+        if (oldestReady < 0) {
+            throw new IllegalStateException("No pipeline slot available");
+        }
+        dropped++;
+        metrics.increment(ScanMetrics.Counter.FRAMES_DROPPED);
+        return oldestReady;
+    }
+
+    private void runWorker() {
+        while (true) {
+            int slot;
+            Runnable stopped = null;
+            synchronized (lock) {
+                slot = newestReady();
+                while (running && slot < 0) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                    slot = newestReady();
+                }
+                if (!running) {
+                    stopped = onStopped;
+                    onStopped = null;
+                    // Its current frame is done, so there is nothing left to wait for
+                    if (worker == Thread.currentThread()) worker = null;
+                    slot = -1;
+                } else {
+                    // Anything older than the newest ready frame is stale
+                    for (int i = 0; i < states.length; i++) {
+                        if (i != slot && states[i] == READY) {
+                            states[i] = FREE;
+                            dropped++;
+                            metrics.increment(ScanMetrics.Counter.FRAMES_DROPPED);
+                        }
+                    }
+                    states[slot] = CONSUMING;
+                }
+            }
+            if (slot < 0) {
+                if (stopped != null) stopped.run();
+                return;
+            }
+            metrics.record(ScanMetrics.Stage.QUEUE, System.nanoTime() - readyNanos[slot]);
+
+            try {
+                if (empty[slot]) {
+                    consumer.onEmptyFrame(timestamps[slot]);
+                } else {
+                    consumer.onFrame(inputs[slot].getBuffer(), signatures[slot], timestamps[slot]);
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Frame consumer failed", e);
+            }
+
+            synchronized (lock) {
+                states[slot] = FREE;
+                consumed++;
+            }
+        }
+    }
+
+    // Caller holds the lock
+    private int newestReady() {
+        int newest = -1;
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] == READY && (newest < 0 || sequences[i] > sequences[newest])) {
+                newest = i;
+            }
+        }
+        return newest;
+    }
+
+    public long getSubmittedCount() {
+        synchronized (lock) {
+            return submitted;
+        }
+    }
+
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+
+    public long getConsumedCount() {
+        synchronized (lock) {
+            return consumed;
+        }
+    }
+}
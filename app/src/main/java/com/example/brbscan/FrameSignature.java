@@ -0,0 +1,78 @@
+package com.example.brbscan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Perceptual signature of the part of a frame the model reads: a 64-bit difference hash
+ * (dHash) of a 9x8 luma grid sampled straight from the Y plane, plus the mean chroma of the
+ * region. dHash ignores exposure and small shifts but not colour, and notes that share a
+ * layout differ mostly in colour, so the chroma means guard against mixing them up.
+ */
+public class FrameSignature {
+
+    private static final int CHROMA_SAMPLES = 4;
+
+    private final LumaGrid grid = new LumaGrid(9, 8);
+
+    long hash;
+    int meanU;
+    int meanV;
+    int rotation;
+    boolean valid;
+
+    /** Computes the signature of {@code region} (sensor coordinates) of {@code frame}. */
+    public void compute(YuvFrame frame, RegionOfInterest region) {
+        int width = region.width();
+        int height = region.height();
+        grid.sample(frame, region.left, region.top, width, height);
+        long bits = 0;
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                bits <<= 1;
+                if (grid.get(c + 1, r) > grid.get(c, r)) bits |= 1;
+            }
+        }
+
+        ByteBuffer u = frame.u;
+        ByteBuffer v = frame.v;
+        int sumU = 0;
+        int sumV = 0;
+        for (int sy = 0; sy < CHROMA_SAMPLES; sy++) {
+            int py = region.top + (sy * 2 + 1) * height / (2 * CHROMA_SAMPLES);
+            int rowOffset = (py >> 1) * frame.uvRowStride;
+            for (int sx = 0; sx < CHROMA_SAMPLES; sx++) {
+                int px = region.left + (sx * 2 + 1) * width / (2 * CHROMA_SAMPLES);
+                int index = rowOffset + (px >> 1) * frame.uvPixelStride;
+                sumU += u.get(index) & 0xff;
+                sumV += v.get(index) & 0xff;
+            }
+        }
+
+        hash = bits;
+        meanU = sumU / (CHROMA_SAMPLES * CHROMA_SAMPLES);
+        meanV = sumV / (CHROMA_SAMPLES * CHROMA_SAMPLES);
+        rotation = frame.rotationDegrees;
+        valid = true;
+    }
+
+    public void copyFrom(FrameSignature other) {
+        hash = other.hash;
+        meanU = other.meanU;
+        meanV = other.meanV;
+        rotation = other.rotation;
+        valid = other.valid;
+    }
+
+    public void clear() {
+        valid = false;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /** Number of differing hash bits, 0 to 64. */
+    public int distance(FrameSignature other) {
+        return Long.bitCount(hash ^ other.hash);
+    }
+}
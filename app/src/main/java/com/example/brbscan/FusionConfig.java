@@ -0,0 +1,91 @@
+package com.example.brbscan;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Settings for {@link ResultFuser}, loaded from a properties file so thresholds can be tuned
+ * per model without code changes. Per-class keys use the model's output index:
+ * {@code class.<index>.threshold}, {@code class.<index>.min_agreement} and
+ * {@code class.<index>.weight}.
+ */
+public class FusionConfig {
+
+    public enum Mode { EWMA, WINDOW }
+
+    final Mode mode;
+    final int window;
+    final float alpha;
+    final float temperature;
+    final int noneClass;
+    final float[] thresholds;
+    final int[] minAgreement;
+    final float[] weights;
+
+    private FusionConfig(Mode mode, int window, float alpha, float temperature, int noneClass,
+                         float[] thresholds, int[] minAgreement, float[] weights) {
+        this.mode = mode;
+        this.window = window;
+        this.alpha = alpha;
+        this.temperature = temperature;
+        this.noneClass = noneClass;
+        this.thresholds = thresholds;
+        this.minAgreement = minAgreement;
+        this.weights = weights;
+    }
+
+    public static FusionConfig load(InputStream in, int numClasses) throws IOException {
+        Properties properties = new Properties();
+        try (InputStreamReader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return fromProperties(properties, numClasses);
+    }
+
+    public static FusionConfig fromProperties(Properties p, int numClasses) {
+        Mode mode = Mode.valueOf(p.getProperty("mode", "ewma").trim().toUpperCase(Locale.ROOT));
+        int window = Integer.parseInt(p.getProperty("window", "5").trim());
+        float alpha = Float.parseFloat(p.getProperty("ewma.alpha", "0.5").trim());
+        float temperature = Float.parseFloat(p.getProperty("temperature", "1.0").trim());
+        int noneClass = Integer.parseInt(p.getProperty("none.class", "-1").trim());
+        float defaultThreshold = Float.parseFloat(p.getProperty("default.threshold", "0.5").trim());
+        int defaultAgreement = Integer.parseInt(p.getProperty("default.min_agreement", "1").trim());
+
+        if (window < 1 || alpha <= 0f || alpha > 1f || temperature <= 0f || noneClass >= numClasses) {
+            throw new IllegalArgumentException("Invalid fusion config " + p);
+        }
+
+        float[] thresholds = new float[numClasses];
+        int[] minAgreement = new int[numClasses];
+        float[] weights = new float[numClasses];
+        for (int i = 0; i < numClasses; i++) {
+            String prefix = "class." + i + ".";
+            thresholds[i] = Float.parseFloat(p.getProperty(prefix + "threshold", String.valueOf(defaultThreshold)).trim());
+            minAgreement[i] = Math.min(window, Integer.parseInt(
+                    p.getProperty(prefix + "min_agreement", String.valueOf(defaultAgreement)).trim()));
+            weights[i] = Float.parseFloat(p.getProperty(prefix + "weight", "1.0").trim());
+        }
+        return new FusionConfig(mode, window, alpha, temperature, noneClass, thresholds, minAgreement, weights);
+    }
+
+    public int numClasses() {
+        return thresholds.length;
+    }
+
+    public int getNoneClass() {
+        return noneClass;
+    }
+
+    @Override
+    public String toString() {
+        return "FusionConfig{" + mode + " window=" + window + " alpha=" + alpha
+                + " thresholds=" + Arrays.toString(thresholds)
+                + " agreement=" + Arrays.toString(minAgreement)
+                + " weights=" + Arrays.toString(weights) + "}";
+    }
+}
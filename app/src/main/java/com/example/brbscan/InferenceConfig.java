@@ -0,0 +1,100 @@
+package com.example.brbscan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Interpreter settings for one backend configuration. Configs round-trip through
+ * {@link #key()} so a probed choice can be persisted and restored on the next launch.
+ */
+public class InferenceConfig {
+
+    public enum Accelerator { CPU, NNAPI, GPU }
+
+    private static final int MAX_CPU_THREADS = 4;
+
+    final Accelerator accelerator;
+    final int numThreads;
+    final boolean useXnnpack;
+
+    private InferenceConfig(Accelerator accelerator, int numThreads, boolean useXnnpack) {
+        this.accelerator = accelerator;
+        this.numThreads = numThreads;
+        this.useXnnpack = useXnnpack;
+    }
+
+    public static InferenceConfig cpu(int numThreads, boolean useXnnpack) {
+        return new InferenceConfig(Accelerator.CPU, Math.max(1, numThreads), useXnnpack);
+    }
+
+    public static InferenceConfig nnapi() {
+        return new InferenceConfig(Accelerator.NNAPI, 1, false);
+    }
+
+    public static InferenceConfig gpu() {
+        return new InferenceConfig(Accelerator.GPU, 1, false);
+    }
+
+    /** CPU configurations worth probing on a device with the given core count. */
+    public static List<InferenceConfig> cpuCandidates(int availableCores) {
+        int maxThreads = Math.max(1, Math.min(MAX_CPU_THREADS, availableCores));
+        List<InferenceConfig> candidates = new ArrayList<>();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            candidates.add(cpu(threads, true));
+        }
+        candidates.add(cpu(maxThreads, false));
+        return candidates;
+    }
+
+    public Accelerator getAccelerator() {
+        return accelerator;
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    public boolean isXnnpackEnabled() {
+        return useXnnpack;
+    }
+
+    public InferenceConfig withThreads(int threads) {
+        return new InferenceConfig(accelerator, Math.max(1, threads), useXnnpack);
+    }
+
+    public String key() {
+        return accelerator.name() + ":" + numThreads + ":" + (useXnnpack ? "xnnpack" : "plain");
+    }
+
+    /** Parses a value produced by {@link #key()}, or returns null if it is missing or malformed. */
+    public static InferenceConfig fromKey(String key) {
+        if (key == null) return null;
+        String[] parts = key.split(":");
+        if (parts.length != 3) return null;
+        try {
+            return new InferenceConfig(Accelerator.valueOf(parts[0]),
+                    Math.max(1, Integer.parseInt(parts[1])), "xnnpack".equals(parts[2]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof InferenceConfig)) return false;
+        InferenceConfig other = (InferenceConfig) o;
+        return accelerator == other.accelerator && numThreads == other.numThreads
+                && useXnnpack == other.useXnnpack;
+    }
+
+    @Override
+    public int hashCode() {
+        return key().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.brbscan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A loaded model that can be run on preprocessed input. Implementations are not thread-safe;
+ * each engine is driven from a single inference thread.
+ */
+public interface InferenceEngine extends AutoCloseable {
+
+    void run(ByteBuffer input, Object output);
+
+    InferenceConfig getConfig();
+
+    TensorSpec getInputSpec();
+
+    TensorSpec getOutputSpec();
+
+    /**
+     * Changes the input shape, e.g. the batch size, and reallocates tensors; the specs
+     * reflect the new shapes afterwards. Returns false, leaving the engine as it was, when
+     * the engine or its delegate cannot take that shape.
+     */
+    default boolean resizeInput(int[] shape) {
+        return false;
+    }
+
+    @Override
+    void close();
+
+    interface Factory {
+        InferenceEngine create(InferenceConfig config) throws Exception;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.brbscan;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Writes 8-bit RGB channel values into a model input buffer in the tensor's own representation.
+ * The encoder is chosen once from the input {@link TensorSpec}, so the per-frame loop never
+ * branches on data type; every representation is a lookup of the (v/127.5)-1 normalization.
+ */
+public abstract class InputEncoder {
+
+    final ByteBuffer buffer;
+
+    InputEncoder(int elements, int bytesPerElement) {
+        buffer = ByteBuffer.allocateDirect(elements * bytesPerElement).order(ByteOrder.nativeOrder());
+    }
+
+    public ByteBuffer getBuffer() {
+        buffer.rewind();
+        return buffer;
+    }
+
+    /** Writes {@code count} channel values (0-255) starting at element {@code offset}. */
+    abstract void writeRow(int[] channels, int count, int offset);
+
+    static float normalize(int channel) {
+        return (channel / 127.5f) - 1;
+    }
+
+    public static InputEncoder forSpec(TensorSpec spec) {
+        switch (spec.dataType) {
+            case FLOAT32:
+                return new Float32Encoder(spec.numElements());
+            case UINT8:
+                return new QuantizedEncoder(spec, 0, 255);
+            case INT8:
+                return new QuantizedEncoder(spec, -128, 127);
+            default:
+                throw new IllegalArgumentException("Unsupported input tensor " + spec);
+        }
+    }
+
+    private static final class Float32Encoder extends InputEncoder {
+        private final FloatBuffer floats;
+        private final float[] table = new float[256];
+
+        Float32Encoder(int elements) {
+            super(elements, 4);
+            floats = buffer.asFloatBuffer();
+            for (int i = 0; i < 256; i++) table[i] = normalize(i);
+        }
+
+        @Override
+        void writeRow(int[] channels, int count, int offset) {
+            for (int i = 0; i < count; i++) {
+                floats.put(offset + i, table[channels[i]]);
+            }
+        }
+    }
+
+    private static final class QuantizedEncoder extends InputEncoder {
+        private final byte[] table = new byte[256];
+
+        QuantizedEncoder(TensorSpec spec, int min, int max) {
+            super(spec.numElements(), 1);
+            for (int i = 0; i < 256; i++) {
+                // A zero scale means the model takes raw pixels
+                int q = spec.scale > 0f
+                        ? Math.round(normalize(i) / spec.scale) + spec.zeroPoint
+                        : i + min;
+                table[i] = (byte) Math.max(min, Math.min(max, q));
+            }
+        }
+
+        @Override
+        void writeRow(int[] channels, int count, int offset) {
+            for (int i = 0; i < count; i++) {
+                buffer.put(offset + i, table[channels[i]]);
+            }
+        }
+    }
+}
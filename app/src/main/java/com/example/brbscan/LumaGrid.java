@@ -0,0 +1,83 @@
+package com.example.brbscan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Coarse luma thumbnail sampled straight from the Y plane. Each cell is the mean of a few
+ * sparse samples, which is plenty for scene-change and exposure statistics at a tiny cost.
+ */
+public class LumaGrid {
+
+    private static final int SAMPLES_PER_AXIS = 2;
+
+    final int cols;
+    final int rows;
+    final int[] values;
+
+    public LumaGrid(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        values = new int[cols * rows];
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int get(int col, int row) {
+        return values[row * cols + col];
+    }
+
+    /** Samples the whole frame in sensor orientation. */
+    public void sample(YuvFrame frame) {
+        sample(frame, 0, 0, frame.width, frame.height);
+    }
+
+    /** Samples the given sensor-space rectangle of the frame. */
+    public void sample(YuvFrame frame, int left, int top, int width, int height) {
+        ByteBuffer y = frame.y;
+        int rowStride = frame.yRowStride;
+        int pixelStride = frame.yPixelStride;
+        int samples = SAMPLES_PER_AXIS * SAMPLES_PER_AXIS;
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int sum = 0;
+                for (int sy = 0; sy < SAMPLES_PER_AXIS; sy++) {
+                    int py = top + ((r * SAMPLES_PER_AXIS + sy) * 2 + 1) * height
+                            / (2 * rows * SAMPLES_PER_AXIS);
+                    int rowOffset = py * rowStride;
+                    for (int sx = 0; sx < SAMPLES_PER_AXIS; sx++) {
+                        int px = left + ((c * SAMPLES_PER_AXIS + sx) * 2 + 1) * width
+                                / (2 * cols * SAMPLES_PER_AXIS);
+                        sum += y.get(rowOffset + px * pixelStride) & 0xff;
+                    }
+                }
+                values[r * cols + c] = sum / samples;
+            }
+        }
+    }
+
+    public void copyFrom(LumaGrid other) {
+        System.arraycopy(other.values, 0, values, 0, values.length);
+    }
+
+    /** Mean absolute per-cell difference, 0 for identical grids up to 255. */
+    public float meanAbsDiff(LumaGrid other) {
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            sum += Math.abs(values[i] - other.values[i]);
+        }
+        return (float) sum / values.length;
+    }
+
+    public float mean() {
+        long sum = 0;
+        for (int value : values) sum += value;
+        return (float) sum / values.length;
+    }
+}
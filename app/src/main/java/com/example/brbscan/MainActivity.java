@@ -1,15 +1,22 @@
 package com.example.brbscan;
 
 import android.Manifest;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
-import android.graphics.Matrix;
 import android.net.Uri;
+import android.os.BatteryManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
-import android.speech.tts.TextToSpeech;
 import android.util.Log;
 import android.util.Size;
 import android.view.View;
@@ -24,51 +31,103 @@ import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
+import androidx.camera.core.ResolutionInfo;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.core.content.ContextCompat;
 
 import com.example.brbscan.databinding.ActivityMainBinding;
 import com.google.common.util.concurrent.ListenableFuture;
 
-import org.tensorflow.lite.Interpreter;
-
-import java.io.FileInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class MainActivity extends AppCompatActivity {
 
     private ActivityMainBinding binding;
-    private Interpreter tflite;
+    private volatile long createdNanos;
     private ExecutorService cameraExecutor;
+    private ExecutorService modelExecutor;
+    private ModelLoader loader;
+    private ModelRegistry registry;
+    private volatile CurrencyPack activePack;
     private ActivityResultLauncher<String> requestPermissionLauncher;
-    private TextToSpeech tts;
+    private SpeechOutput speech;
+    private OutputScheduler output;
+    private HandlerThread outputThread;
+    private Handler outputHandler;
     private View scanIndicator;
     private Vibrator vibrator;
     private Camera camera;
-
-    private static final int MODEL_INPUT_SIZE = 224;
-    private static final String MODEL_PATH = "banknote_model.tflite";
-    private final String[] labels = {"خمسة دنانير", "عشرة دنانير", "عشرون دينار", "خمسون دينار", "لا شيء"};
-
-    private static final float GENERAL_THRESHOLD = 0.45f;
-    private static final float FIFTY_DINAR_THRESHOLD = 0.65f;
-    private static final float FIFTY_DINAR_PENALTY = 0.10f;
-    private static final float TWENTY_DINAR_BOOST = 0.10f;
-
-    private long lastAnalysisTime = 0;
-    private boolean isAnalyzing = true;
-    private int noDetectionCount = 0;
+    private ImageAnalysis imageAnalysis;
+    private ScanSession session;
+    private int cameraInputSize;
+    // Side of the loaded model's input; a pack manifest need not declare it
+    private int modelInputSize = DEFAULT_INPUT_SIZE;
+    private final YuvFrame frame = new YuvFrame();
+    private volatile Recognizer recognizer;
+    private volatile FramePipeline pipeline;
+    // Main thread. A stopped pipeline whose inference thread is still finishing its frame, and
+    // what to do once it has: install the newest ready model, or free every model
+    private FramePipeline retiring;
+    private CurrencyPack nextPack;
+    private Recognizer nextRecognizer;
+    private boolean nextAnnounce;
+    private boolean releaseAllWhenRetired;
+    private boolean loggedFirstPack = false;
+    private final AnalysisScheduler scheduler = new AnalysisScheduler();
+    private final RoiDetector roiDetector = new RoiDetector();
+    private final FrameGate gate = new FrameGate();
+    private final RegionOfInterest noRegion = new RegionOfInterest();
+    private final StackCounter stackCounter = new StackCounter();
+    private volatile boolean counting = false;
+    // Set on resume; the inference thread forgets the fused history before its next frame
+    private volatile boolean resetFusion = false;
+    private final ScanMetrics metrics = new ScanMetrics();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private static final String DEFAULT_PACK = "jod";
+    private static final String PACK_PREFS = "currency_pack";
+    // The active pack plus the previous one, so switching back is instant
+    private static final int MAX_RESIDENT_MODELS = 2;
+
+    private static final int PIPELINE_SLOTS = 3;
+    // Sizes the analysis stream before any pack has loaded
+    private static final int DEFAULT_INPUT_SIZE = 224;
+
+    private static final String METRICS_DUMP_FILE = "scan_metrics.json";
+    private static final String DIAGNOSTICS_PREFS = "diagnostics";
+    // About 20 s of analysed frames; each keeps a thumbnail of the model input
+    private static final int DIAGNOSTICS_FRAMES = 200;
+    private static final int DIAGNOSTICS_THUMB_SIZE = 112;
+    private static final long OVERLAY_REFRESH_MS = 500;
+    private static final long SPEECH_RETRY_MS = 500;
+
+    // Written by the inference thread only; a resume asks it to start over through clearResult
+    private final ScanResult latestResult = new ScanResult();
+    private volatile boolean clearResult = false;
+    private final ScanResult pendingResult = new ScanResult();
+    private final ScanResult shownResult = new ScanResult();
+    private final AtomicBoolean resultPosted = new AtomicBoolean();
+    private volatile boolean recordDiagnostics = false;
+    private volatile DiagnosticsRecorder diagnostics;
     private static final int NO_DETECTION_THRESHOLD = 5;
-    private int consecutiveFiftyDetections = 0;
-    private static final int MAX_CONSECUTIVE_FIFTY_DETECTIONS = 3;
+
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
+    private BroadcastReceiver powerReceiver;
+    private PerformanceGovernor governor;
 
     private Toast currentToast;
+    private String toastText;
+    private long toastUntilMillis;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -83,22 +142,130 @@ public class MainActivity extends AppCompatActivity {
 
         // Set up clickable footer "Powered by naneko96"
         binding.bottomLeftText.setOnClickListener(v -> openGithub());
+        // Long-press toggles the latency overlay for debugging
+        binding.bottomLeftText.setOnLongClickListener(v -> {
+            toggleMetricsOverlay();
+            return true;
+        });
 
-        try {
-            tflite = new Interpreter(loadModelFile());
-        } catch (IOException e) {
-            showToast("فشل في تحميل النموذج", Toast.LENGTH_LONG);
-            finish();
-            return;
+        // Long-press on the latency overlay records recent frames for reports of missed notes
+        recordDiagnostics = getSharedPreferences(DIAGNOSTICS_PREFS, MODE_PRIVATE).getBoolean("enabled", false);
+        binding.metricsOverlay.setOnLongClickListener(v -> {
+            toggleDiagnostics();
+            return true;
+        });
+
+        // Long-press on the preview starts or stops counting a stack; a tap speaks the total
+        binding.previewView.setOnLongClickListener(v -> {
+            toggleCounting();
+            return true;
+        });
+        binding.previewView.setOnClickListener(v -> {
+            if (counting) announceTotal();
+        });
+
+        // Built before the governor's inputs are wired, since those may change the tier at once
+        createdNanos = System.nanoTime();
+        loader = new ModelLoader(getAssets(), backendPreferences(),
+                InferenceConfig.cpuCandidates(Runtime.getRuntime().availableProcessors()), metrics);
+        registry = new ModelRegistry(loader, MAX_RESIDENT_MODELS);
+        modelExecutor = Executors.newSingleThreadExecutor();
+
+        // Pausing detaches the analyzer and torch but keeps the model for an instant resume;
+        // memory pressure frees it, and the next resume re-warms the active pack
+        session = new ScanSession(new ScanSession.Host() {
+            @Override
+            public void setCapturing(boolean capturing) {
+                MainActivity.this.setCapturing(capturing);
+            }
+
+            @Override
+            public void release(boolean all) {
+                releaseModels(all);
+            }
+
+            @Override
+            public void rewarm() {
+                CurrencyPack pack = activePack;
+                if (pack != null) loadPack(pack.id, false);
+            }
+        }, metrics);
+
+        // Heat, battery and inference latency step the session through performance tiers;
+        // the star field backs off on its own while the scanner is busy or the device is hot
+        governor = new PerformanceGovernor(this::onTierChanged, System.nanoTime());
+        binding.starFieldView.setMetrics(metrics);
+        binding.starFieldView.setLoadSource(scheduler::getLoad);
+        PowerManager power = (PowerManager) getSystemService(POWER_SERVICE);
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.Q) {
+            thermalListener = status -> {
+                binding.starFieldView.setThermalStatus(status);
+                governor.setThermalStatus(status, System.nanoTime());
+            };
+            thermalListener.onThermalStatusChanged(power.getCurrentThermalStatus());
+            power.addThermalStatusListener(ContextCompat.getMainExecutor(this), thermalListener);
         }
+        powerReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+                    int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+                    int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, 100);
+                    if (level < 0 || scale <= 0) return;
+                    boolean plugged = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+                    governor.setBattery(level * 100 / scale, plugged, System.nanoTime());
+                } else {
+                    governor.setPowerSave(power.isPowerSaveMode(), System.nanoTime());
+                }
+            }
+        };
+        IntentFilter powerEvents = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+        powerEvents.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        registerReceiver(powerReceiver, powerEvents);
+        governor.setPowerSave(power.isPowerSaveMode(), System.nanoTime());
+        // A tier no input changed was never applied by the listener
+        applyTier(governor.getTier());
+
+        // Long-press on the title cycles through the installed currency packs
+        binding.customTopBar.setOnLongClickListener(v -> {
+            switchToNextPack();
+            return true;
+        });
+
+        // The model loads in the background while the camera preview starts; frames are
+        // dropped until the pipeline exists
+        String packId = getSharedPreferences(PACK_PREFS, MODE_PRIVATE).getString("active", DEFAULT_PACK);
+        modelExecutor.execute(() -> {
+            for (CurrencyPack pack : CurrencyPack.scan(getAssets(), getFilesDir())) {
+                registry.register(pack);
+            }
+        });
+        loadPack(packId, false);
 
         cameraExecutor = Executors.newSingleThreadExecutor();
 
-        tts = new TextToSpeech(this, status -> {
-            if (status == TextToSpeech.SUCCESS) {
-                tts.setLanguage(new Locale("ar"));
+        // Speech and vibration run on their own thread so neither the UI nor inference waits
+        outputThread = new HandlerThread("brbscan-output");
+        outputThread.start();
+        outputHandler = new Handler(outputThread.getLooper());
+        speech = new SpeechOutput(this, new File(getCacheDir(), "speech"), new SpeechOutput.Listener() {
+            // Announcements queued while the engine started are spoken, or only vibrated, now
+            @Override
+            public void onEngineReady(boolean available) {
+                outputHandler.post(pumpOutput);
+            }
+
+            @Override
+            public void onSpeechStart(String utteranceId) {
+                output.onSpeechStart(utteranceId, System.nanoTime());
+            }
+
+            @Override
+            public void onSpeechDone(String utteranceId) {
+                if (output.onSpeechDone(utteranceId)) outputHandler.post(pumpOutput);
             }
         });
+        output = new OutputScheduler(speech, this::vibrateForBill, metrics);
 
         requestPermissionLauncher = registerForActivityResult(
                 new ActivityResultContracts.RequestPermission(),
@@ -124,15 +291,255 @@ public class MainActivity extends AppCompatActivity {
         startActivity(intent);
     }
 
-    private MappedByteBuffer loadModelFile() throws IOException {
-        try (FileInputStream fileInputStream = new FileInputStream(getAssets().openFd(MODEL_PATH).getFileDescriptor())) {
-            FileChannel fileChannel = fileInputStream.getChannel();
-            long startOffset = getAssets().openFd(MODEL_PATH).getStartOffset();
-            long declaredLength = getAssets().openFd(MODEL_PATH).getDeclaredLength();
-            return fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
+    /** Loads {@code packId} off the main thread, then swaps it in without touching the camera. */
+    private void loadPack(String packId, boolean announce) {
+        modelExecutor.execute(() -> {
+            String id = registry.getPack(packId) != null ? packId : DEFAULT_PACK;
+            try {
+                Recognizer loaded = registry.acquire(id);
+                CurrencyPack pack = registry.getPack(id);
+                runOnUiThread(() -> onModelReady(pack, loaded, announce));
+            } catch (Exception e) {
+                Log.e("Model", "Failed to load pack " + id, e);
+                runOnUiThread(() -> {
+                    showToast("فشل في تحميل النموذج", Toast.LENGTH_LONG);
+                    if (pipeline == null) finish();
+                });
+            }
+        });
+    }
+
+    // Any thread; logged here, applied on the main thread
+    private void onTierChanged(PerformanceGovernor.Tier from, PerformanceGovernor.Tier to, String reason) {
+        Log.i("Governor", "Tier " + from + " -> " + to + ": " + reason);
+        runOnUiThread(() -> applyTier(to));
+    }
+
+    private void applyTier(PerformanceGovernor.Tier tier) {
+        if (isFinishing() || isDestroyed()) return;
+        scheduler.setMinInterval(tier.minIntervalNanos);
+        updateTorch();
+        loader.setLimits(tier.maxThreads, tier.maxCrops);
+        // Threads are fixed when the interpreter is built, so a new cap needs a fresh recognizer
+        Recognizer active = recognizer;
+        if (active != null && (active.limited || active.getCrops() > tier.maxCrops
+                || active.getEngine().getConfig().getNumThreads() > tier.maxThreads)) {
+            reloadActivePack();
+        }
+    }
+
+    private void reloadActivePack() {
+        modelExecutor.execute(() -> {
+            String id = registry.getActiveId();
+            if (id == null) return;
+            try {
+                Recognizer reloaded = registry.reload(id);
+                CurrencyPack pack = registry.getPack(id);
+                runOnUiThread(() -> {
+                    // Dropped if the user switched packs meanwhile; it stays resident for later
+                    CurrencyPack current = activePack;
+                    if (current != null && current.id.equals(id)) {
+                        onModelReady(pack, reloaded, false);
+                    } else {
+                        registry.abandon(id);
+                    }
+                });
+            } catch (Exception e) {
+                Log.e("Model", "Failed to reload pack " + id, e);
+            }
+        });
+    }
+
+    private void updateTorch() {
+        Camera camera = this.camera;
+        if (camera != null && camera.getCameraInfo().hasFlashUnit()) {
+            camera.getCameraControl().enableTorch(governor.getTier().torch && !session.isPaused());
+        }
+    }
+
+    // A detached analyzer stops frame delivery altogether, rather than closing every frame
+    private void setCapturing(boolean capturing) {
+        ImageAnalysis analysis = imageAnalysis;
+        if (analysis != null) {
+            if (capturing) {
+                analysis.setAnalyzer(cameraExecutor, this::analyzeImage);
+            } else {
+                analysis.clearAnalyzer();
+            }
+        }
+        updateTorch();
+    }
+
+    // With all, the session is paused and the analyzer detached, so once the pipeline has
+    // stopped nothing runs on the active recognizer; its buffers go with the pipeline
+    private void releaseModels(boolean all) {
+        if (all && (pipeline != null || retiring != null)) {
+            releaseAllWhenRetired = true;
+            retirePipeline();
+            return;
+        }
+        if (all) recognizer = null;
+        modelExecutor.execute(() -> Log.i("Model", "Released " + registry.release(all)
+                + (all ? " models" : " spare models") + " under memory pressure"));
+    }
+
+    // Stops the installed pipeline without waiting on its inference thread, which finishes
+    // its current frame on the current recognizer first
+    private void retirePipeline() {
+        FramePipeline previous = pipeline;
+        if (previous == null) return;
+        pipeline = null;
+        retiring = previous;
+        previous.stopAsync(() -> mainHandler.post(this::onPipelineRetired));
+    }
+
+    private void onPipelineRetired() {
+        retiring = null;
+        if (isDestroyed()) return;
+        if (releaseAllWhenRetired) {
+            releaseAllWhenRetired = false;
+            releaseModels(true);
+        }
+        CurrencyPack pack = nextPack;
+        if (pack != null) {
+            Recognizer loaded = nextRecognizer;
+            nextPack = null;
+            nextRecognizer = null;
+            onModelReady(pack, loaded, nextAnnounce);
+        }
+    }
+
+    private void toggleCounting() {
+        CurrencyPack pack = activePack;
+        if (pack == null) return;
+        if (!counting) {
+            stackCounter.reset();
+            scheduler.setSustained(true);
+            counting = true;
+            if (output.offerSummary(pack.countStart, System.nanoTime())) outputHandler.post(pumpOutput);
+        } else {
+            counting = false;
+            scheduler.setSustained(false);
+            Log.i("Counter", String.format(Locale.ROOT, "%d notes, total %d; camera %.1f fps, classified %.1f fps",
+                    stackCounter.getNotes(), stackCounter.getTotal(),
+                    stackCounter.getFrameRate(), stackCounter.getDecisionRate()));
+            announceTotal();
         }
     }
 
+    private void announceTotal() {
+        CurrencyPack pack = activePack;
+        if (pack == null) return;
+        String total = pack.totalText(stackCounter.getTotal(), stackCounter.getNotes());
+        showToast(total, Toast.LENGTH_LONG);
+        if (output.offerSummary(total, System.nanoTime())) outputHandler.post(pumpOutput);
+    }
+
+    private void switchToNextPack() {
+        CurrencyPack current = activePack;
+        if (current == null || registry == null) return;
+        CurrencyPack next = registry.next(current.id);
+        if (next == null || next.id.equals(current.id)) return;
+        getSharedPreferences(PACK_PREFS, MODE_PRIVATE).edit().putString("active", next.id).apply();
+        loadPack(next.id, true);
+    }
+
+    private void onModelReady(CurrencyPack pack, Recognizer loaded, boolean announce) {
+        if (isFinishing() || isDestroyed()) {
+            registry.abandon(pack.id);
+            return;
+        }
+
+        // The camera keeps running; frames are dropped while no pipeline is installed. The
+        // model waits until the old inference thread is done with the current recognizer, and
+        // a newer one arriving meanwhile takes its place
+        if (pipeline != null || retiring != null) {
+            if (nextPack != null) registry.abandon(nextPack.id);
+            nextPack = pack;
+            nextRecognizer = loaded;
+            nextAnnounce = announce;
+            retirePipeline();
+            return;
+        }
+
+        // Input encoding and output dequantization are fixed by the model's tensor types
+        TensorPreprocessor preprocessor = loaded.newPreprocessor();
+        FramePipeline created = new FramePipeline(preprocessor, PIPELINE_SLOTS,
+                new FramePipeline.FrameConsumer() {
+                    @Override
+                    public void onFrame(ByteBuffer input, long timestampNanos) {
+                        onFrameReady(input, null, timestampNanos);
+                    }
+
+                    @Override
+                    public void onFrame(ByteBuffer input, FrameSignature signature, long timestampNanos) {
+                        onFrameReady(input, signature, timestampNanos);
+                    }
+
+                    @Override
+                    public void onEmptyFrame(long timestampNanos) {
+                        onNoCandidate(timestampNanos);
+                    }
+                });
+        loaded.setMetrics(metrics);
+        created.setMetrics(metrics);
+        created.setSignatures(loaded.getResultCache() != null);
+        created.start();
+
+        // A running count would mix currencies; a reload of the same pack keeps it
+        if (counting && (activePack == null || !activePack.id.equals(pack.id))) {
+            counting = false;
+            scheduler.setSustained(false);
+        }
+        loaded.reset();
+        scheduler.reset();
+        // The recorder's layout follows the model, so the next one is opened for the new recognizer
+        setDiagnostics(null);
+        recognizer = loaded;
+        activePack = pack;
+        pipeline = created;
+        registry.activate(pack.id);
+        openDiagnostics(pack, loaded);
+        // A pack with a different input size may want a different analysis resolution
+        modelInputSize = preprocessor.getSize();
+        if (camera != null && modelInputSize != cameraInputSize) startCamera();
+
+        speech.prepare(pack);
+        if (announce) {
+            showToast(pack.getName(), Toast.LENGTH_SHORT);
+            if (output.offerPack(pack, System.nanoTime())) outputHandler.post(pumpOutput);
+        }
+        // Later loads happen after the first recognition, which clears createdNanos
+        if (!loggedFirstPack) {
+            loggedFirstPack = true;
+            Log.i("Model", "Pack " + pack + " ready " + (System.nanoTime() - createdNanos) / 1_000_000L
+                    + " ms after onCreate");
+        }
+    }
+
+    // Runs on the inference thread after each recognition; only the first one counts
+    private void recordColdStart() {
+        if (createdNanos != 0) {
+            metrics.record(ScanMetrics.Stage.COLD_START, System.nanoTime() - createdNanos);
+            createdNanos = 0;
+        }
+    }
+
+    private BackendSelector.Store backendPreferences() {
+        SharedPreferences prefs = getSharedPreferences("inference_backend", MODE_PRIVATE);
+        return new BackendSelector.Store() {
+            @Override
+            public String get(String key) {
+                return prefs.getString(key, null);
+            }
+
+            @Override
+            public void put(String key, String value) {
+                prefs.edit().putString(key, value).apply();
+            }
+        };
+    }
+
     private void startCamera() {
         ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(this);
         cameraProviderFuture.addListener(() -> {
@@ -144,21 +551,41 @@ public class MainActivity extends AppCompatActivity {
                         .build();
                 preview.setSurfaceProvider(binding.previewView.getSurfaceProvider());
 
-                ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
-                        .setTargetResolution(new Size(640, 480))
+                // Analysis reads the YUV planes directly, so CameraX never converts to RGBA
+                int inputSize = modelInputSize;
+                ResolutionSelector analysisResolution = new ResolutionSelector.Builder()
+                        .setResolutionStrategy(ResolutionStrategy.HIGHEST_AVAILABLE_STRATEGY)
+                        .setResolutionFilter(AnalysisResolution.filter(inputSize,
+                                AnalysisResolution.DEFAULT_MIN_ROI_FRACTION,
+                                (width, height, supported, coversRoi) -> Log.i("Camera", "Analysis "
+                                        + width + "x" + height + " chosen from " + supported
+                                        + " sizes for " + inputSize + " px input"
+                                        + (coversRoi ? "" : ", none large enough"))))
+                        .build();
+                imageAnalysis = new ImageAnalysis.Builder()
+                        .setResolutionSelector(analysisResolution)
+                        .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
                         .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                         .build();
-                imageAnalysis.setAnalyzer(cameraExecutor, this::analyzeImage);
+                // A rebind while paused leaves the analyzer detached until resume
+                if (!session.isPaused()) imageAnalysis.setAnalyzer(cameraExecutor, this::analyzeImage);
 
                 CameraSelector cameraSelector = CameraSelector.DEFAULT_BACK_CAMERA;
 
                 cameraProvider.unbindAll();
                 camera = cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageAnalysis);
-
-                if (camera.getCameraInfo().hasFlashUnit()) {
-                    camera.getCameraControl().enableTorch(true);
+                cameraInputSize = inputSize;
+
+                ResolutionInfo bound = imageAnalysis.getResolutionInfo();
+                if (bound != null) {
+                    String config = bound.getResolution().getWidth() + "x"
+                            + bound.getResolution().getHeight() + " YUV_420_888";
+                    metrics.setCameraConfig(config);
+                    Log.i("Camera", "Analysis stream " + config);
                 }
 
+                updateTorch();
+
             } catch (Exception e) {
                 showToast("فشل في تشغيل الكاميرا", Toast.LENGTH_LONG);
             }
@@ -166,157 +593,285 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void analyzeImage(@NonNull ImageProxy imageProxy) {
-        if (!isAnalyzing) {
+        FramePipeline pipeline = this.pipeline;
+        if (session.isPaused() || pipeline == null) {
+            if (session.isPaused()) session.onFrameWhilePaused();
             imageProxy.close();
             return;
         }
 
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastAnalysisTime < 800) {
-            imageProxy.close();
-            return;
-        }
-        lastAnalysisTime = currentTime;
-
         try {
-            Bitmap bitmap = ImageUtils.imageProxyToBitmap(imageProxy);
-            if (bitmap != null) {
-                bitmap = rotateAndEnhanceBitmap(bitmap, imageProxy.getImageInfo().getRotationDegrees());
-                processImageForInference(bitmap);
+            frame.set(imageProxy);
+            long now = System.nanoTime();
+            metrics.increment(ScanMetrics.Counter.FRAMES_RECEIVED);
+
+            // Every frame is gated so motion is measured against its direct predecessor
+            long gateStart = metrics.begin(ScanMetrics.Stage.GATE);
+            FrameGate.Verdict verdict;
+            try {
+                verdict = gate.check(frame, now);
+            } finally {
+                metrics.end(ScanMetrics.Stage.GATE, gateStart);
+            }
+            // The counter needs every frame, motion included, to see a note being flipped
+            if (counting) stackCounter.onFrame(gate.getLumaGrid(), frame.timestampNanos);
+            if (verdict.isTransient()) {
+                metrics.increment(ScanMetrics.Counter.FRAMES_GATED);
+                return;
+            }
+            if (!scheduler.shouldAnalyze(frame, now)) {
+                metrics.increment(ScanMetrics.Counter.FRAMES_THROTTLED);
+                return;
+            }
+
+            // Only the note's bounding box is resampled into the model input; dark, blank
+            // or note-less frames skip inference and count as "nothing in view"
+            RegionOfInterest roi = noRegion;
+            if (verdict == FrameGate.Verdict.PASS) {
+                long roiStart = metrics.begin(ScanMetrics.Stage.ROI);
+                try {
+                    roi = roiDetector.detect(frame);
+                } finally {
+                    metrics.end(ScanMetrics.Stage.ROI, roiStart);
+                }
+            }
+            if (roi.isFound()) {
+                metrics.markNoteInView(now);
+            } else {
+                metrics.clearNoteInView();
+            }
+            if (pipeline.submit(frame, roi)) {
+                metrics.increment(ScanMetrics.Counter.FRAMES_SUBMITTED);
             }
         } catch (Exception e) {
             Log.e("Camera", "Error processing image", e);
         } finally {
+            frame.clear();
             imageProxy.close();
         }
     }
 
-    private void processImageForInference(Bitmap bitmap) {
-        cameraExecutor.execute(() -> {
-            try {
-                PredictionResult result = runModelInference(bitmap);
-                handlePredictionResult(result);
-            } catch (Exception e) {
-                Log.e("Model", "Inference error", e);
+    private void onFrameReady(ByteBuffer input, FrameSignature signature, long timestampNanos) {
+        try {
+            if (resetFusion) {
+                resetFusion = false;
+                recognizer.reset();
             }
-        });
+            // A flipped note must not inherit the previous note's fused history
+            if (counting && stackCounter.needsFusionReset()) recognizer.reset();
+            long start = System.nanoTime();
+            // Fuses this frame, or cached logits for a near-identical one, under the pack's fusion config
+            int decided = recognizer.recognize(input, signature);
+            scheduler.onResult(System.nanoTime() - start, decided);
+            // Cache hits say nothing about how fast the model runs
+            long inference = recognizer.getLastInferenceNanos();
+            if (inference > 0) governor.onInference(inference, System.nanoTime());
+            recordColdStart();
+            session.onRecognition(System.nanoTime());
+            publishResult(decided, timestampNanos);
+
+            DiagnosticsRecorder recorder = diagnostics;
+            if (recorder != null) {
+                long recordStart = metrics.begin(ScanMetrics.Stage.DIAGNOSTICS);
+                try {
+                    recorder.record(input, recognizer.getLastCrop(), recognizer.getLastLogits(),
+                            timestampNanos, inference, recognizer.getLastPostprocessNanos(), decided,
+                            recognizer.getTopClass(), recognizer.getConfidence());
+                } finally {
+                    metrics.end(ScanMetrics.Stage.DIAGNOSTICS, recordStart);
+                }
+            }
+        } catch (Exception e) {
+            Log.e("Model", "Inference error", e);
+        }
     }
 
-    private Bitmap rotateAndEnhanceBitmap(Bitmap bitmap, int rotationDegrees) {
-        if (rotationDegrees != 0) {
-            Matrix matrix = new Matrix();
-            matrix.postRotate(rotationDegrees);
-            bitmap = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    private void onNoCandidate(long timestampNanos) {
+        try {
+            if (resetFusion) {
+                resetFusion = false;
+                recognizer.reset();
+            }
+            if (counting && stackCounter.needsFusionReset()) recognizer.reset();
+            int decided = recognizer.recognizeEmpty();
+            scheduler.onEmptyFrame();
+            recordColdStart();
+            publishResult(decided, timestampNanos);
+
+            DiagnosticsRecorder recorder = diagnostics;
+            if (recorder != null) {
+                recorder.recordEmpty(timestampNanos, recognizer.getLastPostprocessNanos(), decided,
+                        recognizer.getTopClass(), recognizer.getConfidence());
+            }
+        } catch (Exception e) {
+            Log.e("Model", "Fusion error", e);
         }
-        return bitmap;
     }
 
-    private PredictionResult runModelInference(Bitmap bitmap) {
-        Bitmap resized = Bitmap.createScaledBitmap(bitmap, MODEL_INPUT_SIZE, MODEL_INPUT_SIZE, true);
-        float[][][][] input = new float[1][MODEL_INPUT_SIZE][MODEL_INPUT_SIZE][3];
-
-        for (int y = 0; y < MODEL_INPUT_SIZE; y++) {
-            for (int x = 0; x < MODEL_INPUT_SIZE; x++) {
-                int pixel = resized.getPixel(x, y);
-                input[0][y][x][0] = ((pixel >> 16 & 0xFF) / 127.5f) - 1;
-                input[0][y][x][1] = ((pixel >> 8 & 0xFF) / 127.5f) - 1;
-                input[0][y][x][2] = ((pixel & 0xFF) / 127.5f) - 1;
+    // Inference thread. Hands the newest result to the UI without allocating; an announcement
+    // still waiting for the main thread is never replaced by "nothing"
+    private void publishResult(int decided, long frameTimestampNanos) {
+        if (clearResult) {
+            clearResult = false;
+            latestResult.clear();
+        }
+        latestResult.update(activePack, decided, recognizer.getConfidence(), System.nanoTime());
+        // Speech is driven from here so no decision is lost to main-thread coalescing
+        if (counting) {
+            int counted = stackCounter.onDecision(latestResult.pack, decided, frameTimestampNanos);
+            if (counted != ScanResult.NOTHING
+                    && output.offerCounted(latestResult.pack, counted, latestResult.createdNanos)) {
+                outputHandler.post(pumpOutput);
             }
+        } else if (output.onResult(latestResult)) {
+            outputHandler.post(pumpOutput);
         }
+        synchronized (pendingResult) {
+            if (!resultPosted.get() || !pendingResult.isNote() || latestResult.isNote()) {
+                pendingResult.copyFrom(latestResult);
+            }
+        }
+        if (resultPosted.compareAndSet(false, true)) mainHandler.post(deliverResult);
+    }
 
-        float[][] output = new float[1][labels.length];
-        tflite.run(input, output);
-
-        float[] probs = softmaxWithTemperature(output[0], 0.8f);
-
-        int fiftyIdx = Arrays.asList(labels).indexOf("خمسون دينار");
-        if (fiftyIdx >= 0) probs[fiftyIdx] *= (1f - FIFTY_DINAR_PENALTY);
+    private final Runnable deliverResult = () -> {
+        synchronized (pendingResult) {
+            shownResult.copyFrom(pendingResult);
+            resultPosted.set(false);
+        }
+        metrics.record(ScanMetrics.Stage.UI_DISPATCH, System.nanoTime() - shownResult.createdNanos);
+        showResult(shownResult);
+    };
+
+    // Main thread; speech and vibration are driven by the output scheduler instead
+    private void showResult(ScanResult result) {
+        if (!result.isNote()) {
+            if (result.getEmptyStreak() >= NO_DETECTION_THRESHOLD) {
+                showToast("الرجاء توجيه الكاميرا نحو الورقة النقدية", Toast.LENGTH_LONG);
+            }
+            return;
+        }
 
-        int twentyIdx = Arrays.asList(labels).indexOf("عشرون دينار");
-        if (twentyIdx >= 0) probs[twentyIdx] *= (1f + TWENTY_DINAR_BOOST);
+        CurrencyPack pack = result.pack;
+        int classId = result.getClassId();
+        showToast("تم التعرف: " + pack.label(classId), Toast.LENGTH_LONG);
 
-        int bestIdx = 0;
-        float maxProb = probs[0];
-        for (int i = 1; i < probs.length; i++) {
-            if (probs[i] > maxProb) {
-                maxProb = probs[i];
-                bestIdx = i;
-            }
+        if (scanIndicator != null) {
+            scanIndicator.setAlpha(1f);
+            scanIndicator.animate().alpha(0f).setDuration(500).start();
         }
+    }
 
-        if (labels[bestIdx].equals("خمسون دينار")) {
-            consecutiveFiftyDetections++;
-            if (consecutiveFiftyDetections < MAX_CONSECUTIVE_FIFTY_DETECTIONS || maxProb < FIFTY_DINAR_THRESHOLD) {
-                return new PredictionResult("لا شيء", maxProb);
-            }
-        } else {
-            consecutiveFiftyDetections = 0;
+    // Output thread
+    private final Runnable pumpOutput = () -> {
+        output.pump(System.nanoTime());
+        // Re-checks a stuck utterance even if its engine never reports back
+        outputHandler.removeCallbacks(this.outputWatchdog);
+        if (output.isSpeaking()) {
+            outputHandler.postDelayed(this.outputWatchdog, OutputScheduler.DEFAULT_MAX_UTTERANCE_NANOS / 1_000_000L);
+        } else if (output.queuedCount() > 0) {
+            // The engine refused the next announcement; it keeps its place and is retried
+            outputHandler.postDelayed(this.outputWatchdog, SPEECH_RETRY_MS);
         }
+    };
 
-        if (maxProb >= GENERAL_THRESHOLD && !labels[bestIdx].equals("لا شيء")) {
-            return new PredictionResult(labels[bestIdx], maxProb);
+    private final Runnable outputWatchdog = () -> outputHandler.post(pumpOutput);
+
+    private final Runnable overlayRefresh = new Runnable() {
+        @Override
+        public void run() {
+            binding.metricsOverlay.setText(metrics.snapshot().toOverlayText()
+                    + (recordDiagnostics ? "\nrecording diagnostics" : ""));
+            mainHandler.postDelayed(this, OVERLAY_REFRESH_MS);
         }
+    };
 
-        return (maxProb >= 0.3f) ? new PredictionResult(labels[bestIdx], maxProb)
-                : new PredictionResult("لا شيء", maxProb);
+    private void toggleMetricsOverlay() {
+        boolean show = binding.metricsOverlay.getVisibility() != View.VISIBLE;
+        binding.metricsOverlay.setVisibility(show ? View.VISIBLE : View.GONE);
+        mainHandler.removeCallbacks(overlayRefresh);
+        if (show) mainHandler.post(overlayRefresh);
     }
 
-    private float[] softmaxWithTemperature(float[] logits, float temperature) {
-        float sum = 0f;
-        float[] exp = new float[logits.length];
-        for (int i = 0; i < logits.length; i++) {
-            exp[i] = (float) Math.exp(logits[i] / temperature);
-            sum += exp[i];
+    /** Writes the current metrics snapshot next to the app's external files for bug reports. */
+    private void dumpMetrics() {
+        File dir = getExternalFilesDir(null);
+        if (dir == null) return;
+        File file = new File(dir, METRICS_DUMP_FILE);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(metrics.snapshot().toJson().getBytes(StandardCharsets.UTF_8));
+            Log.i("Metrics", "Wrote " + file.getAbsolutePath());
+        } catch (IOException e) {
+            Log.w("Metrics", "Failed to write metrics", e);
         }
-        for (int i = 0; i < logits.length; i++) {
-            exp[i] /= sum;
+    }
+
+    private void toggleDiagnostics() {
+        recordDiagnostics = !recordDiagnostics;
+        getSharedPreferences(DIAGNOSTICS_PREFS, MODE_PRIVATE).edit().putBoolean("enabled", recordDiagnostics).apply();
+        showToast(recordDiagnostics ? "تسجيل التشخيص مفعّل" : "تسجيل التشخيص متوقف", Toast.LENGTH_SHORT);
+        if (recordDiagnostics) {
+            openDiagnostics(activePack, recognizer);
+        } else {
+            setDiagnostics(null);
         }
-        return exp;
     }
 
-    private void handlePredictionResult(PredictionResult result) {
-        runOnUiThread(() -> {
-            if (result.label.equals("لا شيء")) {
-                if (++noDetectionCount >= NO_DETECTION_THRESHOLD) {
-                    showToast("الرجاء توجيه الكاميرا نحو الورقة النقدية", Toast.LENGTH_LONG);
+    // Maps the pack's ring file off the main thread; it lives next to the metrics dump
+    private void openDiagnostics(CurrencyPack pack, Recognizer target) {
+        if (!recordDiagnostics || pack == null || target == null) return;
+        modelExecutor.execute(() -> {
+            File dir = getExternalFilesDir(null);
+            if (dir == null) return;
+            File file = new File(dir, "diagnostics_" + pack.id + ".ring");
+            try {
+                DiagnosticsRecorder opened = new DiagnosticsRecorder(file, target.getEngine().getInputSpec(),
+                        target.numClasses(), DIAGNOSTICS_FRAMES, DIAGNOSTICS_THUMB_SIZE);
+                // Recording may have been turned off, or the pack switched, while the file was mapped
+                if (recordDiagnostics && recognizer == target) {
+                    setDiagnostics(opened);
+                    Log.i("Diagnostics", "Recording to " + file.getAbsolutePath()
+                            + ", " + opened.getWritten() + " frames so far");
+                } else {
+                    opened.close();
                 }
-                return;
-            }
-
-            noDetectionCount = 0;
-            showToast("تم التعرف: " + result.label, Toast.LENGTH_LONG);
-
-            if (scanIndicator != null) {
-                scanIndicator.setAlpha(1f);
-                scanIndicator.animate().alpha(0f).setDuration(500).start();
+            } catch (IOException e) {
+                Log.w("Diagnostics", "Failed to open " + file, e);
             }
+        });
+    }
 
-            if (tts != null && !tts.isSpeaking()) {
-                tts.speak(result.label, TextToSpeech.QUEUE_FLUSH, null, "BillID");
-                vibrateForBill(result.label);
+    // Closing flushes the mapping, so it happens off the main thread. The mapping outlives the
+    // file handle, so a frame still being written to the old recorder is harmless.
+    private synchronized void setDiagnostics(DiagnosticsRecorder next) {
+        DiagnosticsRecorder previous = diagnostics;
+        diagnostics = next;
+        if (previous == null) return;
+        modelExecutor.execute(() -> {
+            try {
+                previous.close();
+            } catch (IOException e) {
+                Log.w("Diagnostics", "Failed to close recorder", e);
             }
         });
     }
 
+    // Repeats of the message already on screen are ignored instead of re-creating the toast
     private void showToast(String message, int duration) {
         runOnUiThread(() -> {
+            long now = SystemClock.uptimeMillis();
+            if (currentToast != null && message.equals(toastText) && now < toastUntilMillis) return;
             if (currentToast != null) currentToast.cancel();
             currentToast = Toast.makeText(this, message, duration);
             currentToast.show();
+            toastText = message;
+            toastUntilMillis = now + (duration == Toast.LENGTH_LONG ? 3500 : 2000);
         });
     }
 
-    private void vibrateForBill(String label) {
-        if (vibrator == null || !vibrator.hasVibrator()) return;
-
-        long[] pattern;
-        switch (label) {
-            case "خمسة دنانير": pattern = new long[]{0, 200}; break;
-            case "عشرة دنانير": pattern = new long[]{0, 200, 300, 200}; break;
-            case "عشرون دينار": pattern = new long[]{0, 600}; break;
-            case "خمسون دينار": pattern = new long[]{0, 600, 400, 600}; break;
-            default: return;
-        }
+    // Patterns come from the active pack's manifest
+    private void vibrateForBill(long[] pattern) {
+        if (pattern == null || vibrator == null || !vibrator.hasVibrator()) return;
 
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
             vibrator.vibrate(VibrationEffect.createWaveform(pattern, -1));
@@ -328,36 +883,62 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onPause() {
         super.onPause();
-        isAnalyzing = false;
+        session.onPause(System.nanoTime());
+        binding.starFieldView.setRunning(false);
+        Log.d("FrameGate", gate.toString());
+        mainHandler.removeCallbacks(overlayRefresh);
+        if (cameraExecutor != null) cameraExecutor.execute(this::dumpMetrics);
+        DiagnosticsRecorder recorder = diagnostics;
+        if (recorder != null && cameraExecutor != null) cameraExecutor.execute(recorder::flush);
+        output.clear();
+        outputHandler.post(pumpOutput);
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        isAnalyzing = true;
-        noDetectionCount = 0;
-        consecutiveFiftyDetections = 0;
+        // Each reset runs on the thread that owns the state, ahead of the first new frame: the
+        // camera executor runs tasks in order, and the inference thread checks the flag first
+        if (cameraExecutor != null) {
+            cameraExecutor.execute(() -> {
+                scheduler.reset();
+                gate.reset();
+                metrics.clearNoteInView();
+            });
+        }
+        resetFusion = true;
+        clearResult = true;
+        session.onResume(System.nanoTime());
+        binding.starFieldView.setRunning(true);
+        if (binding.metricsOverlay.getVisibility() == View.VISIBLE) mainHandler.post(overlayRefresh);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        session.onTrimMemory(level);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (tflite != null) tflite.close();
+        if (pipeline != null) pipeline.stop();
+        // Nothing may still run on a recognizer the registry is about to close
+        if (retiring != null) retiring.stop();
+        setDiagnostics(null);
+        mainHandler.removeCallbacks(deliverResult);
+        if (registry != null) registry.close();
+        if (modelExecutor != null) modelExecutor.shutdown();
         if (cameraExecutor != null) cameraExecutor.shutdown();
-        if (tts != null) {
-            tts.stop();
-            tts.shutdown();
+        if (outputThread != null) {
+            outputHandler.removeCallbacksAndMessages(null);
+            outputThread.quitSafely();
         }
-        if (currentToast != null) currentToast.cancel();
-    }
-
-    private static class PredictionResult {
-        final String label;
-        final float confidence;
-
-        PredictionResult(String label, float confidence) {
-            this.label = label;
-            this.confidence = confidence;
+        if (speech != null) speech.shutdown();
+        if (powerReceiver != null) unregisterReceiver(powerReceiver);
+        if (thermalListener != null) {
+            ((PowerManager) getSystemService(POWER_SERVICE)).removeThermalStatusListener(thermalListener);
         }
+        if (currentToast != null) currentToast.cancel();
     }
 }
@@ -0,0 +1,122 @@
+package com.example.brbscan;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Builds a ready-to-run {@link Recognizer} for a {@link CurrencyPack}: maps the model, picks
+ * the backend, and runs one warm-up inference so the first camera frame does not pay for
+ * kernel preparation. Blocking; callers run it off the main thread.
+ */
+public class ModelLoader implements ModelRegistry.Loader {
+
+    private static final String TAG = "ModelLoader";
+
+    private final AssetManager assets;
+    private final BackendSelector.Store backendStore;
+    private final List<InferenceConfig> candidates;
+    private final ScanMetrics metrics;
+    // Performance-tier caps; only read when a recognizer is built
+    private volatile int maxThreads = Integer.MAX_VALUE;
+    private volatile int maxCrops = TensorPreprocessor.MAX_CROPS;
+
+    public ModelLoader(AssetManager assets, BackendSelector.Store backendStore,
+                       List<InferenceConfig> candidates, ScanMetrics metrics) {
+        this.assets = assets;
+        this.backendStore = backendStore;
+        this.candidates = candidates;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Caps interpreter threads and batched crops for recognizers built from now on; ones
+     * already loaded keep their settings until reloaded.
+     */
+    public void setLimits(int maxThreads, int maxCrops) {
+        this.maxThreads = Math.max(1, maxThreads);
+        this.maxCrops = Math.max(1, maxCrops);
+    }
+
+    @Override
+    public Recognizer load(CurrencyPack pack) throws Exception {
+        int threadCap = maxThreads;
+        int cropCap = maxCrops;
+        long start = metrics.begin(ScanMetrics.Stage.MODEL_LOAD);
+        Recognizer recognizer;
+        try {
+            MappedByteBuffer model = pack.mapModel(assets);
+            InferenceEngine.Factory factory = TfliteInferenceEngine.factory(model);
+            BackendSelector selector = new BackendSelector(factory, backendStore);
+            InferenceEngine engine = selector.select(
+                    pack.id + "/" + pack.modelPath + "@" + model.capacity(), candidates);
+            // The persisted choice stays the unlimited one; the cap applies to this engine only
+            InferenceConfig chosen = engine.getConfig();
+            boolean limited = false;
+            if (chosen.getNumThreads() > threadCap) {
+                engine.close();
+                engine = factory.create(chosen.withThreads(threadCap));
+                limited = true;
+            }
+            try {
+                pack.checkInputSpec(engine.getInputSpec());
+                recognizer = new Recognizer(engine, pack.loadFusionConfig(assets));
+                recognizer.limited = limited || pack.crops > cropCap;
+                int crops = Math.min(pack.crops, cropCap);
+                if (crops > 1) enableCrops(recognizer, crops);
+                if (pack.cacheSize > 0) {
+                    recognizer.setResultCache(new ResultCache(pack.cacheSize, recognizer.numClasses()));
+                }
+            } catch (Exception e) {
+                engine.close();
+                throw e;
+            }
+        } finally {
+            metrics.end(ScanMetrics.Stage.MODEL_LOAD, start);
+        }
+
+        long warmStart = metrics.begin(ScanMetrics.Stage.WARMUP);
+        try {
+            recognizer.warmUp();
+        } finally {
+            metrics.end(ScanMetrics.Stage.WARMUP, warmStart);
+        }
+        Log.i(TAG, "Loaded " + pack + " on " + recognizer.getEngine().getConfig().key()
+                + " in " + (System.nanoTime() - start) / 1_000_000L + " ms");
+        return recognizer;
+    }
+
+    // Delegates that cannot resize fall back to single-crop inference
+    private static void enableCrops(Recognizer recognizer, int crops) {
+        if (!recognizer.setCrops(crops)) {
+            Log.w(TAG, "Batched " + crops + "-crop inference unavailable on "
+                    + recognizer.getEngine().getConfig().key());
+        }
+    }
+
+    /**
+     * Memory-maps an uncompressed asset. The descriptor is opened once and closed before
+     * returning; the mapping stays valid on its own.
+     */
+    static MappedByteBuffer mapAsset(AssetManager assets, String path) throws IOException {
+        try (AssetFileDescriptor fd = assets.openFd(path);
+             FileInputStream in = new FileInputStream(fd.getFileDescriptor());
+             FileChannel channel = in.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getDeclaredLength());
+        }
+    }
+
+    static MappedByteBuffer mapFile(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.brbscan;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Known currency packs and the recognizers currently loaded for them. At most
+ * {@code maxResident} recognizers stay loaded, least recently used first out; the active
+ * pack is never evicted. While a switch is in flight the new pack is resident alongside the
+ * old one until {@link #activate} releases the surplus. A recognizer handed out by
+ * {@link #acquire} or {@link #reload} is pending until its pack is activated or the hand-out
+ * is {@link #abandon}ed, and {@link #release} never closes a pending one.
+ */
+public class ModelRegistry {
+
+    private static final String TAG = "ModelRegistry";
+
+    public interface Loader {
+        Recognizer load(CurrencyPack pack) throws Exception;
+    }
+
+    private final Loader loader;
+    private final int maxResident;
+    private final Map<String, CurrencyPack> packs = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Recognizer> resident = new LinkedHashMap<>(4, 0.75f, true);
+    // Replaced by reload() but possibly still running until the next activate()
+    private final List<Recognizer> retired = new ArrayList<>();
+    // Hand-outs per pack not yet followed by activate() or abandon()
+    private final Map<String, Integer> pending = new HashMap<>();
+    private String activeId;
+    private boolean closed = false;
+
+    public ModelRegistry(Loader loader, int maxResident) {
+        if (maxResident < 1) throw new IllegalArgumentException("maxResident must be at least 1");
+        this.loader = loader;
+        this.maxResident = maxResident;
+    }
+
+    public synchronized void register(CurrencyPack pack) {
+        packs.put(pack.id, pack);
+    }
+
+    public synchronized List<CurrencyPack> getPacks() {
+        return new ArrayList<>(packs.values());
+    }
+
+    public synchronized CurrencyPack getPack(String id) {
+        return packs.get(id);
+    }
+
+    /** Pack after {@code id} in registration order, wrapping around. */
+    public synchronized CurrencyPack next(String id) {
+        List<CurrencyPack> list = new ArrayList<>(packs.values());
+        if (list.isEmpty()) return null;
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).id.equals(id)) return list.get((i + 1) % list.size());
+        }
+        return list.get(0);
+    }
+
+    /**
+     * Returns the pack's recognizer, loading it on the calling thread when it is not resident.
+     * Blocking; never call from the main thread.
+     */
+    public Recognizer acquire(String id) throws Exception {
+        CurrencyPack pack;
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("Registry closed");
+            Recognizer loaded = resident.get(id);
+            if (loaded != null) {
+                pin(id);
+                return loaded;
+            }
+            pack = packs.get(id);
+        }
+        if (pack == null) throw new IllegalArgumentException("Unknown pack " + id);
+
+        Recognizer recognizer = loader.load(pack);
+        synchronized (this) {
+            if (closed) {
+                recognizer.getEngine().close();
+                throw new IllegalStateException("Registry closed");
+            }
+            Recognizer raced = resident.get(id);
+            if (raced != null) {
+                recognizer.getEngine().close();
+                pin(id);
+                return raced;
+            }
+            resident.put(id, recognizer);
+            pin(id);
+            return recognizer;
+        }
+    }
+
+    /**
+     * Builds a fresh recognizer for {@code id}, e.g. after the loader's limits changed, and
+     * makes it the resident one. The recognizer it replaces is closed by the next
+     * {@link #activate}, so it can keep running until the fresh one is swapped in. Blocking.
+     */
+    public Recognizer reload(String id) throws Exception {
+        CurrencyPack pack;
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("Registry closed");
+            pack = packs.get(id);
+        }
+        if (pack == null) throw new IllegalArgumentException("Unknown pack " + id);
+
+        Recognizer recognizer = loader.load(pack);
+        synchronized (this) {
+            if (closed) {
+                recognizer.getEngine().close();
+                throw new IllegalStateException("Registry closed");
+            }
+            Recognizer replaced = resident.put(id, recognizer);
+            if (replaced != null) retired.add(replaced);
+            pin(id);
+            return recognizer;
+        }
+    }
+
+    /**
+     * Marks {@code id} as the pack in use and releases the least recently used recognizers
+     * beyond the resident limit, except pending ones. Call once nothing runs on the previous
+     * pack any more.
+     */
+    public synchronized void activate(String id) {
+        if (!resident.containsKey(id)) throw new IllegalStateException("Pack " + id + " not loaded");
+        activeId = id;
+        unpin(id);
+        resident.get(id);  // touch for LRU order
+        Iterator<Map.Entry<String, Recognizer>> it = resident.entrySet().iterator();
+        while (resident.size() > maxResident && it.hasNext()) {
+            Map.Entry<String, Recognizer> entry = it.next();
+            if (entry.getKey().equals(activeId)) continue;
+            // About to be installed by whoever acquired it
+            if (pending.containsKey(entry.getKey())) continue;
+            Log.i(TAG, "Releasing " + entry.getKey());
+            entry.getValue().getEngine().close();
+            it.remove();
+        }
+        for (Recognizer recognizer : retired) recognizer.getEngine().close();
+        retired.clear();
+    }
+
+    /**
+     * Closes resident recognizers to free memory: the spare ones, and with {@code includeActive}
+     * the active one too, which the next {@link #acquire} loads again. Pending recognizers are
+     * kept. Nothing may still run on a recognizer being closed. Returns how many were closed.
+     */
+    public synchronized int release(boolean includeActive) {
+        int released = 0;
+        Iterator<Map.Entry<String, Recognizer>> it = resident.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Recognizer> entry = it.next();
+            if (!includeActive && entry.getKey().equals(activeId)) continue;
+            // About to be installed by whoever acquired it
+            if (pending.containsKey(entry.getKey())) continue;
+            Log.i(TAG, "Releasing " + entry.getKey());
+            entry.getValue().getEngine().close();
+            it.remove();
+            released++;
+        }
+        // A retired recognizer may still be running until the next activate()
+        if (includeActive) {
+            for (Recognizer recognizer : retired) recognizer.getEngine().close();
+            released += retired.size();
+            retired.clear();
+        }
+        return released;
+    }
+
+    /** Gives up a recognizer from {@link #acquire} or {@link #reload} that will not be activated. */
+    public synchronized void abandon(String id) {
+        unpin(id);
+    }
+
+    private void pin(String id) {
+        Integer count = pending.get(id);
+        pending.put(id, count == null ? 1 : count + 1);
+    }
+
+    private void unpin(String id) {
+        Integer count = pending.get(id);
+        if (count == null) return;
+        if (count > 1) {
+            pending.put(id, count - 1);
+        } else {
+            pending.remove(id);
+        }
+    }
+
+    public synchronized String getActiveId() {
+        return activeId;
+    }
+
+    public synchronized boolean isResident(String id) {
+        return resident.containsKey(id);
+    }
+
+    public synchronized int residentCount() {
+        return resident.size();
+    }
+
+    public synchronized void close() {
+        closed = true;
+        for (Recognizer recognizer : resident.values()) recognizer.getEngine().close();
+        for (Recognizer recognizer : retired) recognizer.getEngine().close();
+        resident.clear();
+        retired.clear();
+        pending.clear();
+        activeId = null;
+    }
+}
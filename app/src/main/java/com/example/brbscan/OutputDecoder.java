@@ -0,0 +1,83 @@
+package com.example.brbscan;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Owns the model output buffer and dequantizes it into a reused float array. Like
+ * {@link InputEncoder}, the representation is fixed at load time.
+ */
+public abstract class OutputDecoder {
+
+    final ByteBuffer buffer;
+    final float[] values;
+
+    OutputDecoder(int elements, int bytesPerElement) {
+        buffer = ByteBuffer.allocateDirect(elements * bytesPerElement).order(ByteOrder.nativeOrder());
+        values = new float[elements];
+    }
+
+    /** Buffer to hand to the interpreter as the output. */
+    public ByteBuffer getBuffer() {
+        buffer.rewind();
+        return buffer;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /** Returns the output as floats; the array is overwritten by the next call. */
+    public abstract float[] decode();
+
+    public static OutputDecoder forSpec(TensorSpec spec) {
+        switch (spec.dataType) {
+            case FLOAT32:
+                return new Float32Decoder(spec.numElements());
+            case UINT8:
+                return new QuantizedDecoder(spec, 0xff);
+            case INT8:
+                return new QuantizedDecoder(spec, -1);
+            default:
+                throw new IllegalArgumentException("Unsupported output tensor " + spec);
+        }
+    }
+
+    private static final class Float32Decoder extends OutputDecoder {
+        private final FloatBuffer floats;
+
+        Float32Decoder(int elements) {
+            super(elements, 4);
+            floats = buffer.asFloatBuffer();
+        }
+
+        @Override
+        public float[] decode() {
+            for (int i = 0; i < values.length; i++) values[i] = floats.get(i);
+            return values;
+        }
+    }
+
+    private static final class QuantizedDecoder extends OutputDecoder {
+        private final float scale;
+        private final int zeroPoint;
+        private final int mask;
+
+        // mask 0xff reads bytes as unsigned, -1 keeps them signed
+        QuantizedDecoder(TensorSpec spec, int mask) {
+            super(spec.numElements(), 1);
+            this.scale = spec.scale > 0f ? spec.scale : 1f;
+            this.zeroPoint = spec.zeroPoint;
+            this.mask = mask;
+        }
+
+        @Override
+        public float[] decode() {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ((buffer.get(i) & mask) - zeroPoint) * scale;
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.brbscan;
+
+/**
+ * Orders spoken and haptic output so no confirmed note is lost. Each appearance of a note is
+ * queued once; repeats of the note being spoken or waiting are coalesced, pack announcements
+ * are pre-empted by notes, and the queue drains in priority then arrival order as utterances
+ * finish. A requested summary, such as a counting total, goes next.
+ *
+ * <p>Producers call {@link #onResult} from any thread. {@link #pump} starts the next utterance
+ * and must run on a single output thread, never the main thread; speech callbacks may arrive
+ * on any thread and only update state, after which the caller pumps again.
+ */
+public class OutputScheduler {
+
+    public interface Speaker {
+        /** Starts speaking {@code text}; false if the engine refused it, e.g. while starting up. */
+        boolean speak(String text, String utteranceId);
+
+        /** True once the engine failed for good; announcements then only vibrate. */
+        default boolean isUnavailable() {
+            return false;
+        }
+
+        void stop();
+    }
+
+    public interface Haptics {
+        void vibrate(long[] pattern);
+    }
+
+    static final int CAPACITY = 16;
+    // The same note reappearing within this window is flicker, not a second note
+    static final long DEFAULT_COALESCE_NANOS = 600_000_000L;
+    // Pack announcements nobody heard by then are dropped
+    static final long DEFAULT_STALE_NANOS = 3_000_000_000L;
+    // An utterance with no completion callback by then is treated as finished
+    static final long DEFAULT_MAX_UTTERANCE_NANOS = 5_000_000_000L;
+
+    // Utterance IDs are drawn in turn from this many, so a late callback for an utterance that
+    // was already stopped or timed out cannot match any recent one
+    static final int UTTERANCE_IDS = 256;
+
+    private static final int SUMMARY = 2;
+    private static final int NOTE = 1;
+    private static final int PACK = 0;
+
+    /** One queued or playing announcement; pooled. */
+    static final class Announcement {
+        int priority;
+        CurrencyPack pack;
+        int classId;
+        long queuedNanos;
+        long sequence;
+        String text;
+        // Assigned when it starts speaking
+        String utteranceId;
+        // A refused announcement keeps its place; it vibrates once however often it is tried
+        boolean vibrated;
+
+        boolean isNote() {
+            return priority == NOTE;
+        }
+
+        boolean sameNote(CurrencyPack pack, int classId) {
+            return priority == NOTE && this.pack == pack && this.classId == classId;
+        }
+
+        String text() {
+            return text != null ? text : priority == NOTE ? pack.speech(classId) : pack.getName();
+        }
+    }
+
+    private final Speaker speaker;
+    private final Haptics haptics;
+    private final ScanMetrics metrics;
+    private final Announcement[] pool = new Announcement[CAPACITY + 1];
+    private final Announcement[] queue = new Announcement[CAPACITY];
+    // Built once, so speech callbacks need no allocation
+    private final String[] utteranceIds = new String[UTTERANCE_IDS];
+    private int nextUtterance;
+    private int poolSize;
+    private int queued;
+    private long nextSequence;
+
+    long coalesceNanos = DEFAULT_COALESCE_NANOS;
+    long staleNanos = DEFAULT_STALE_NANOS;
+    long maxUtteranceNanos = DEFAULT_MAX_UTTERANCE_NANOS;
+
+    private Announcement current;
+    private long currentStartedNanos;
+    private boolean stopCurrent;
+    // Last note seen in the result stream, and when the last note was announced or coalesced
+    private CurrencyPack lastPack;
+    private int lastClass = ScanResult.NOTHING;
+    private CurrencyPack recentPack;
+    private int recentClass = ScanResult.NOTHING;
+    private long recentNanos;
+
+    public OutputScheduler(Speaker speaker, Haptics haptics, ScanMetrics metrics) {
+        this.speaker = speaker;
+        this.haptics = haptics;
+        this.metrics = metrics;
+        for (int i = 0; i < pool.length; i++) pool[i] = new Announcement();
+        poolSize = pool.length;
+        for (int i = 0; i < utteranceIds.length; i++) utteranceIds[i] = "announce-" + i;
+    }
+
+    /**
+     * Feeds one fused decision. A note is queued when it first appears; holding it in view does
+     * not repeat it. Returns true when {@link #pump} should run.
+     */
+    public synchronized boolean onResult(ScanResult result) {
+        if (!result.isNote()) {
+            lastPack = null;
+            lastClass = ScanResult.NOTHING;
+            return false;
+        }
+        if (result.pack == lastPack && result.classId == lastClass) return false;
+        lastPack = result.pack;
+        lastClass = result.classId;
+        return offerNote(result.pack, result.classId, result.createdNanos, false);
+    }
+
+    /**
+     * Queues a note the caller already knows to be distinct, e.g. one counted by
+     * {@link StackCounter}; it is never coalesced. Returns true when {@link #pump} should run.
+     */
+    public synchronized boolean offerCounted(CurrencyPack pack, int classId, long decidedNanos) {
+        return offerNote(pack, classId, decidedNanos, true);
+    }
+
+    // Caller holds the lock
+    private boolean offerNote(CurrencyPack pack, int classId, long decidedNanos, boolean distinct) {
+        if (!distinct && pack == recentPack && classId == recentClass
+                && decidedNanos - recentNanos < coalesceNanos) {
+            recentNanos = decidedNanos;
+            metrics.increment(ScanMetrics.Counter.ANNOUNCEMENTS_COALESCED);
+            return false;
+        }
+        for (int i = 0; !distinct && i < queued; i++) {
+            if (queue[i].sameNote(pack, classId)) {
+                metrics.increment(ScanMetrics.Counter.ANNOUNCEMENTS_COALESCED);
+                return false;
+            }
+        }
+        recentPack = pack;
+        recentClass = classId;
+        recentNanos = decidedNanos;
+
+        Announcement a = obtain();
+        if (a == null) {
+            // Queue full of notes: the oldest has waited longest and is the least useful
+            release(removeAt(0));
+            a = obtain();
+        }
+        a.priority = NOTE;
+        a.pack = pack;
+        a.classId = classId;
+        a.queuedNanos = decidedNanos;
+        enqueue(a);
+
+        if (current != null && current.priority == PACK) {
+            stopCurrent = true;
+            metrics.increment(ScanMetrics.Counter.ANNOUNCEMENTS_PREEMPTED);
+        }
+        return true;
+    }
+
+    /** Speaks {@code text} as soon as the current utterance ends; replaces a waiting summary. */
+    public synchronized boolean offerSummary(String text, long nowNanos) {
+        for (int i = 0; i < queued; i++) {
+            if (queue[i].priority == SUMMARY) {
+                queue[i].text = text;
+                return false;
+            }
+        }
+        Announcement a = obtain();
+        if (a == null) {
+            release(removeAt(0));
+            a = obtain();
+        }
+        a.priority = SUMMARY;
+        a.pack = null;
+        a.text = text;
+        a.classId = ScanResult.NOTHING;
+        a.queuedNanos = nowNanos;
+        enqueue(a);
+        return true;
+    }
+
+    /** Queues the name of a newly activated pack behind any waiting notes. */
+    public synchronized boolean offerPack(CurrencyPack pack, long nowNanos) {
+        for (int i = 0; i < queued; i++) {
+            if (queue[i].priority == PACK) release(removeAt(i--));
+        }
+        Announcement a = obtain();
+        if (a == null) return false;
+        a.priority = PACK;
+        a.pack = pack;
+        a.classId = ScanResult.NOTHING;
+        a.queuedNanos = nowNanos;
+        enqueue(a);
+        return true;
+    }
+
+    /** Starts the next announcement if nothing is playing. Output thread only. */
+    public void pump(long nowNanos) {
+        Announcement next;
+        String utteranceId = null;
+        boolean stop;
+        synchronized (this) {
+            if (current != null && nowNanos - currentStartedNanos > maxUtteranceNanos) {
+                finishCurrent();
+            }
+            stop = stopCurrent;
+            stopCurrent = false;
+            if (stop && current != null) finishCurrent();
+            if (current != null) return;
+            next = takeNext(nowNanos);
+            if (next != null) {
+                utteranceId = utteranceIds[nextUtterance];
+                next.utteranceId = utteranceId;
+                nextUtterance = (nextUtterance + 1) % UTTERANCE_IDS;
+            }
+            current = next;
+            currentStartedNanos = nowNanos;
+        }
+
+        // Engine calls happen outside the lock so producers never wait on them
+        if (stop) speaker.stop();
+        if (next == null) return;
+        if (next.isNote() && !next.vibrated) {
+            next.vibrated = true;
+            haptics.vibrate(next.pack.vibration(next.classId));
+        }
+        if (speaker.isUnavailable()) {
+            synchronized (this) {
+                if (current == next) finishCurrent();
+            }
+            pump(nowNanos);
+        } else if (!speaker.speak(next.text(), utteranceId)) {
+            // Tried again on the next pump, e.g. once the engine is ready
+            synchronized (this) {
+                if (current == next) requeue(next);
+            }
+        }
+    }
+
+    /** Speech for {@code utteranceId} became audible. */
+    public synchronized void onSpeechStart(String utteranceId, long nowNanos) {
+        if (current == null || !current.utteranceId.equals(utteranceId)) return;
+        if (current.isNote()) {
+            metrics.record(ScanMetrics.Stage.DECISION_TO_SPEECH, nowNanos - current.queuedNanos);
+            metrics.recordAnnounced(nowNanos);
+        }
+    }
+
+    /** Speech for {@code utteranceId} finished or failed; returns true when {@link #pump} should run. */
+    public synchronized boolean onSpeechDone(String utteranceId) {
+        if (current == null || !current.utteranceId.equals(utteranceId)) return false;
+        finishCurrent();
+        return queued > 0;
+    }
+
+    /** Drops everything queued and stops the current utterance on the next pump. */
+    public synchronized void clear() {
+        while (queued > 0) release(removeAt(queued - 1));
+        if (current != null) stopCurrent = true;
+        lastPack = null;
+        lastClass = ScanResult.NOTHING;
+        recentPack = null;
+        recentClass = ScanResult.NOTHING;
+    }
+
+    synchronized int queuedCount() {
+        return queued;
+    }
+
+    synchronized boolean isSpeaking() {
+        return current != null;
+    }
+
+    // Caller holds the lock. Highest priority first, then arrival order; stale pack names go.
+    private Announcement takeNext(long nowNanos) {
+        int best = -1;
+        for (int i = 0; i < queued; i++) {
+            Announcement a = queue[i];
+            if (a.priority == PACK && nowNanos - a.queuedNanos > staleNanos) {
+                release(removeAt(i--));
+                continue;
+            }
+            if (best < 0 || a.priority > queue[best].priority
+                    || (a.priority == queue[best].priority && a.sequence < queue[best].sequence)) {
+                best = i;
+            }
+        }
+        return best < 0 ? null : removeAt(best);
+    }
+
+    private void finishCurrent() {
+        release(current);
+        current = null;
+    }
+
+    private Announcement obtain() {
+        if (poolSize == 0 || queued == CAPACITY) return null;
+        return pool[--poolSize];
+    }
+
+    // Caller holds the lock. Puts the current announcement back with its original place in line
+    private void requeue(Announcement a) {
+        current = null;
+        if (queued == CAPACITY) {
+            release(a);
+            return;
+        }
+        a.utteranceId = null;
+        queue[queued++] = a;
+    }
+
+    private void release(Announcement a) {
+        a.pack = null;
+        a.text = null;
+        a.utteranceId = null;
+        a.vibrated = false;
+        pool[poolSize++] = a;
+    }
+
+    private void enqueue(Announcement a) {
+        a.sequence = nextSequence++;
+        queue[queued++] = a;
+    }
+
+    private Announcement removeAt(int index) {
+        Announcement a = queue[index];
+        System.arraycopy(queue, index + 1, queue, index, queued - index - 1);
+        queue[--queued] = null;
+        return a;
+    }
+}
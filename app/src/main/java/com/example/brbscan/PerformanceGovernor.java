@@ -0,0 +1,183 @@
+package com.example.brbscan;
+
+/**
+ * Steps the scan session through performance tiers so latency stays steady as the phone
+ * heats up or the battery runs down. Each input asks for a tier: thermal status, battery
+ * level and power saver, and inference latency drifting above the best seen at the current
+ * tier (the sign of CPU throttling). The session runs at the highest tier asked for; it
+ * moves up at once and back down one tier at a time after a minimum dwell.
+ *
+ * <p>Inputs may arrive on any thread with the caller's clock; the listener runs on the
+ * thread that caused the transition, outside the governor's lock.
+ */
+public class PerformanceGovernor {
+
+    public enum Tier {
+        FULL(50, Integer.MAX_VALUE, TensorPreprocessor.MAX_CROPS, true),
+        BALANCED(100, Integer.MAX_VALUE, 1, true),
+        SAVER(200, 2, 1, true),
+        CRITICAL(500, 1, 1, false);
+
+        /** Shortest interval between analysed frames. */
+        public final long minIntervalNanos;
+        /** Interpreter threads and batched crops the recognizer may use. */
+        public final int maxThreads;
+        public final int maxCrops;
+        public final boolean torch;
+
+        Tier(long minIntervalMillis, int maxThreads, int maxCrops, boolean torch) {
+            this.minIntervalNanos = minIntervalMillis * 1_000_000L;
+            this.maxThreads = maxThreads;
+            this.maxCrops = maxCrops;
+            this.torch = torch;
+        }
+    }
+
+    public interface Listener {
+        void onTierChanged(Tier from, Tier to, String reason);
+    }
+
+    // PowerManager.THERMAL_STATUS_MODERATE, SEVERE and CRITICAL
+    private static final int THERMAL_MODERATE = 2;
+    private static final int THERMAL_SEVERE = 3;
+    private static final int THERMAL_CRITICAL = 4;
+
+    static final int LOW_BATTERY_PERCENT = 15;
+    static final int CRITICAL_BATTERY_PERCENT = 5;
+    // Inferences after a tier change before its latency counts, e.g. once new threads are warm
+    static final int WARMUP_INFERENCES = 10;
+    static final float THROTTLED_RATIO = 1.5f;
+    static final float RECOVERED_RATIO = 1.2f;
+    static final long THROTTLED_HOLD_NANOS = 5_000_000_000L;
+    static final long RECOVERED_HOLD_NANOS = 30_000_000_000L;
+    static final long MIN_DWELL_NANOS = 10_000_000_000L;
+
+    private static final Tier[] TIERS = Tier.values();
+
+    private final Listener listener;
+
+    private int thermalStatus = 0;
+    private int batteryPercent = 100;
+    private boolean charging = false;
+    private boolean powerSave = false;
+
+    private Tier tier = Tier.FULL;
+    private long tierSinceNanos;
+    private int latencyTier = 0;
+    // Best settled inference latency seen at each tier, 0 until measured
+    private final long[] baselineNanos = new long[TIERS.length];
+    private long latencyNanos = 0;
+    private int inferencesAtTier = 0;
+    private long throttledSinceNanos = -1;
+    private long recoveredSinceNanos = -1;
+
+    public PerformanceGovernor(Listener listener, long nowNanos) {
+        this.listener = listener;
+        tierSinceNanos = nowNanos;
+    }
+
+    public synchronized Tier getTier() {
+        return tier;
+    }
+
+    /** A {@code PowerManager.THERMAL_STATUS_*} value. */
+    public void setThermalStatus(int status, long nowNanos) {
+        synchronized (this) {
+            thermalStatus = status;
+        }
+        evaluate(nowNanos);
+    }
+
+    public void setBattery(int percent, boolean charging, long nowNanos) {
+        synchronized (this) {
+            batteryPercent = percent;
+            this.charging = charging;
+        }
+        evaluate(nowNanos);
+    }
+
+    public void setPowerSave(boolean powerSave, long nowNanos) {
+        synchronized (this) {
+            this.powerSave = powerSave;
+        }
+        evaluate(nowNanos);
+    }
+
+    /** Reports how long one model run took; called from the inference thread. */
+    public void onInference(long durationNanos, long nowNanos) {
+        synchronized (this) {
+            if (++inferencesAtTier <= WARMUP_INFERENCES) return;
+            latencyNanos = latencyNanos == 0 ? durationNanos : latencyNanos + (durationNanos - latencyNanos) / 8;
+
+            int index = tier.ordinal();
+            long baseline = baselineNanos[index];
+            if (baseline == 0 || latencyNanos < baseline) baselineNanos[index] = baseline = latencyNanos;
+
+            if (latencyNanos > baseline * THROTTLED_RATIO) {
+                if (throttledSinceNanos < 0) throttledSinceNanos = nowNanos;
+                if (nowNanos - throttledSinceNanos >= THROTTLED_HOLD_NANOS && index + 1 < TIERS.length) {
+                    latencyTier = index + 1;
+                    throttledSinceNanos = -1;
+                }
+            } else {
+                throttledSinceNanos = -1;
+            }
+            if (latencyNanos < baseline * RECOVERED_RATIO) {
+                if (recoveredSinceNanos < 0) recoveredSinceNanos = nowNanos;
+                if (nowNanos - recoveredSinceNanos >= RECOVERED_HOLD_NANOS && latencyTier > 0) {
+                    latencyTier--;
+                    recoveredSinceNanos = -1;
+                }
+            } else {
+                recoveredSinceNanos = -1;
+            }
+        }
+        evaluate(nowNanos);
+    }
+
+    /** Re-checks the tier, e.g. so a dwell can expire without new input. */
+    public void evaluate(long nowNanos) {
+        Tier from;
+        Tier to;
+        String reason;
+        synchronized (this) {
+            int thermal = thermalTier();
+            int battery = batteryTier();
+            int target = Math.max(latencyTier, Math.max(thermal, battery));
+            int current = tier.ordinal();
+            if (target > current) {
+                to = TIERS[target];
+            } else if (target < current && nowNanos - tierSinceNanos >= MIN_DWELL_NANOS) {
+                to = TIERS[current - 1];
+            } else {
+                return;
+            }
+            from = tier;
+            tier = to;
+            tierSinceNanos = nowNanos;
+            inferencesAtTier = 0;
+            latencyNanos = 0;
+            throttledSinceNanos = -1;
+            recoveredSinceNanos = -1;
+            // Latency asks relative to the tier it was measured at
+            latencyTier = Math.min(latencyTier, to.ordinal());
+            reason = "thermal status " + thermalStatus + ", battery " + batteryPercent + "%"
+                    + (charging ? " charging" : "") + (powerSave ? ", power saver" : "")
+                    + ", latency tier " + TIERS[latencyTier];
+        }
+        listener.onTierChanged(from, to, reason);
+    }
+
+    private int thermalTier() {
+        if (thermalStatus >= THERMAL_CRITICAL) return Tier.CRITICAL.ordinal();
+        if (thermalStatus >= THERMAL_SEVERE) return Tier.SAVER.ordinal();
+        if (thermalStatus >= THERMAL_MODERATE) return Tier.BALANCED.ordinal();
+        return Tier.FULL.ordinal();
+    }
+
+    private int batteryTier() {
+        if (!charging && batteryPercent <= CRITICAL_BATTERY_PERCENT) return Tier.CRITICAL.ordinal();
+        if (!charging && batteryPercent <= LOW_BATTERY_PERCENT) return Tier.SAVER.ordinal();
+        return powerSave ? Tier.BALANCED.ordinal() : Tier.FULL.ordinal();
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.brbscan;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Inference and decision stages of the scan loop, independent of the Activity: runs the
+ * engine on a preprocessed input, dequantizes the output and fuses it over time. The same
+ * object drives the camera pipeline on device and the replay harness on the JVM.
+ */
+public class Recognizer {
+
+    private final InferenceEngine engine;
+    private final ResultFuser fuser;
+    private final int numClasses;
+    private final int noneClass;
+    private final float[] cropLogits;
+    private OutputDecoder decoder;
+    private int crops = 1;
+    private int lastCrop = 0;
+
+    private ResultCache cache;
+    private float[] cachedLogits;
+    // Running mean of the model time, credited to the cache for every hit
+    private long inferenceEstimateNanos = 0;
+
+    private float[] lastLogits;
+    private long lastInferenceNanos = 0;
+    private long lastPostprocessNanos = 0;
+    private ScanMetrics metrics = ScanMetrics.DISCARD;
+    // Built with fewer threads or crops than the pack asks for, to save power
+    boolean limited = false;
+
+    public Recognizer(InferenceEngine engine, FusionConfig fusionConfig) {
+        this.engine = engine;
+        decoder = OutputDecoder.forSpec(engine.getOutputSpec());
+        numClasses = fusionConfig.numClasses();
+        noneClass = fusionConfig.getNoneClass();
+        if (decoder.size() != numClasses) {
+            throw new IllegalStateException("Model output " + engine.getOutputSpec()
+                    + " does not match " + numClasses + " classes");
+        }
+        cropLogits = new float[numClasses];
+        fuser = new ResultFuser(fusionConfig);
+    }
+
+    /**
+     * Switches to batched multi-crop inference: each frame is fed as {@code crops} views (see
+     * {@link TensorPreprocessor}) in one interpreter call, and the crop that most strongly
+     * shows a note is fused. Call before creating preprocessors. Returns false, keeping the
+     * current crop count, when the engine cannot batch or its batched output does not hold
+     * {@code crops} sets of logits.
+     */
+    public boolean setCrops(int crops) {
+        if (crops == this.crops) return true;
+        if (crops < 1 || crops > TensorPreprocessor.MAX_CROPS) {
+            throw new IllegalArgumentException("Unsupported crop count " + crops);
+        }
+        int[] shape = engine.getInputSpec().shape.clone();
+        shape[0] = crops;
+        if (!engine.resizeInput(shape)) return false;
+        OutputDecoder resized = OutputDecoder.forSpec(engine.getOutputSpec());
+        if (resized.size() != crops * numClasses) {
+            // Leave the engine as it was so single-crop inference keeps working
+            shape[0] = this.crops;
+            if (!engine.resizeInput(shape)) {
+                throw new IllegalStateException("Cannot restore input " + Arrays.toString(shape));
+            }
+            return false;
+        }
+        decoder = resized;
+        this.crops = crops;
+        return true;
+    }
+
+    public int getCrops() {
+        return crops;
+    }
+
+    /** Batch index of the crop fused for the last frame. */
+    public int getLastCrop() {
+        return lastCrop;
+    }
+
+    /**
+     * Reuses the logits of near-identical frames instead of running the model; frames need
+     * {@link FrameSignature}s for this (see {@link FramePipeline#setSignatures}). Null disables.
+     */
+    public void setResultCache(ResultCache cache) {
+        this.cache = cache;
+        cachedLogits = cache == null ? null : new float[numClasses];
+    }
+
+    public ResultCache getResultCache() {
+        return cache;
+    }
+
+    public void setMetrics(ScanMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** Creates a preprocessor that fills inputs in this model's tensor format. */
+    public TensorPreprocessor newPreprocessor() {
+        return new TensorPreprocessor(engine.getInputSpec());
+    }
+
+    /**
+     * Runs one preprocessed frame and returns the decided class index, or
+     * {@link ResultFuser#NO_DECISION}. Called from the inference thread only.
+     */
+    public int recognize(ByteBuffer input) {
+        return recognize(input, null);
+    }
+
+    /**
+     * Like {@link #recognize(ByteBuffer)}, but a frame whose {@code signature} matches a
+     * cached one is fused from the cached logits without running the model.
+     */
+    public int recognize(ByteBuffer input, FrameSignature signature) {
+        boolean cacheable = cache != null && signature != null && signature.isValid();
+        if (cacheable) {
+            long lookupStart = metrics.begin(ScanMetrics.Stage.CACHE_LOOKUP);
+            boolean hit;
+            try {
+                hit = cache.lookup(signature, System.nanoTime(), cachedLogits);
+            } finally {
+                metrics.end(ScanMetrics.Stage.CACHE_LOOKUP, lookupStart);
+            }
+            if (hit) {
+                metrics.increment(ScanMetrics.Counter.CACHE_HITS);
+                metrics.add(ScanMetrics.Counter.CACHE_SAVED_MICROS, inferenceEstimateNanos / 1000);
+                long start = System.nanoTime();
+                lastCrop = cache.getLastCrop();
+                lastLogits = cachedLogits;
+                int decided = fuser.add(lastLogits);
+                lastPostprocessNanos = System.nanoTime() - start;
+                lastInferenceNanos = 0;
+                return decided;
+            }
+            metrics.increment(ScanMetrics.Counter.CACHE_MISSES);
+        }
+
+        long start = metrics.begin(ScanMetrics.Stage.INFERENCE);
+        try {
+            engine.run(input, decoder.getBuffer());
+        } finally {
+            metrics.end(ScanMetrics.Stage.INFERENCE, start);
+        }
+        long inferred = metrics.begin(ScanMetrics.Stage.POSTPROCESS);
+        int decided;
+        try {
+            float[] logits = decoder.decode();
+            lastLogits = crops == 1 ? logits : selectCrop(logits);
+            decided = fuser.add(lastLogits);
+        } finally {
+            metrics.end(ScanMetrics.Stage.POSTPROCESS, inferred);
+        }
+        lastPostprocessNanos = System.nanoTime() - inferred;
+        lastInferenceNanos = inferred - start;
+        inferenceEstimateNanos = inferenceEstimateNanos == 0 ? lastInferenceNanos
+                : inferenceEstimateNanos + (lastInferenceNanos - inferenceEstimateNanos) / 8;
+        metrics.increment(ScanMetrics.Counter.INFERENCES);
+        if (cacheable) cache.put(signature, lastLogits, lastCrop, System.nanoTime());
+        return decided;
+    }
+
+    /**
+     * Records a frame the region detector rejected, without running the model. Returns
+     * the fused decision like {@link #recognize}.
+     */
+    public int recognizeEmpty() {
+        lastInferenceNanos = 0;
+        long start = System.nanoTime();
+        int decided = fuser.addEmpty();
+        lastPostprocessNanos = System.nanoTime() - start;
+        return decided;
+    }
+
+    /**
+     * Runs the model once on a blank input so lazy kernel and delegate preparation happens
+     * before the first real frame. Fused state is left untouched.
+     */
+    public void warmUp() {
+        ByteBuffer input = InputEncoder.forSpec(engine.getInputSpec()).getBuffer();
+        engine.run(input, decoder.getBuffer());
+    }
+
+    public void reset() {
+        fuser.reset();
+    }
+
+    public int numClasses() {
+        return numClasses;
+    }
+
+    // Picks the crop whose most likely note class has the highest softmax probability.
+    // Crops are alternative views, so averaging would dilute the one that fits.
+    private float[] selectCrop(float[] logits) {
+        int best = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < crops; c++) {
+            int offset = c * numClasses;
+            float max = logits[offset];
+            for (int k = 1; k < numClasses; k++) max = Math.max(max, logits[offset + k]);
+            float sum = 0f;
+            float top = Float.NEGATIVE_INFINITY;
+            for (int k = 0; k < numClasses; k++) {
+                sum += (float) Math.exp(logits[offset + k] - max);
+                if (k != noneClass) top = Math.max(top, logits[offset + k]);
+            }
+            float score = top - max - (float) Math.log(sum);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        lastCrop = best;
+        System.arraycopy(logits, best * numClasses, cropLogits, 0, numClasses);
+        return cropLogits;
+    }
+
+    public int getTopClass() {
+        return fuser.getTopClass();
+    }
+
+    public float getConfidence() {
+        return fuser.getConfidence();
+    }
+
+    /** Dequantized logits of the last frame (of the chosen crop); overwritten by the next {@link #recognize}. */
+    public float[] getLastLogits() {
+        return lastLogits;
+    }
+
+    public long getLastInferenceNanos() {
+        return lastInferenceNanos;
+    }
+
+    public long getLastPostprocessNanos() {
+        return lastPostprocessNanos;
+    }
+
+    public InferenceEngine getEngine() {
+        return engine;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.brbscan;
+
+/**
+ * Mutable crop rectangle in sensor (unrotated) pixel coordinates, right and bottom exclusive.
+ */
+public class RegionOfInterest {
+    int left;
+    int top;
+    int right;
+    int bottom;
+    boolean found;
+    float score;
+
+    public RegionOfInterest set(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        return this;
+    }
+
+    public RegionOfInterest setFull(int width, int height) {
+        found = true;
+        return set(0, 0, width, height);
+    }
+
+    public int width() {
+        return right - left;
+    }
+
+    public int height() {
+        return bottom - top;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    /** Ratio of edge density inside the box to the frame average; higher is more note-like. */
+    public float getScore() {
+        return score;
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= left && x < right && y >= top && y < bottom;
+    }
+
+    public void copyFrom(RegionOfInterest other) {
+        set(other.left, other.top, other.right, other.bottom);
+        found = other.found;
+        score = other.score;
+    }
+
+    @Override
+    public String toString() {
+        return found ? "[" + left + "," + top + " - " + right + "," + bottom + "]" : "[none]";
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.brbscan;
+
+/**
+ * Decides when a decorative animation may draw so it never competes with scanning. It draws
+ * every display frame while the scanner has headroom, drops to {@link #LOW_FPS} when the
+ * pipeline is busy or the device is warm, and freezes under saturation, severe thermal
+ * pressure, or while hidden or paused.
+ *
+ * <p>Main thread only; the {@link LoadSource} is polled on each frame callback.
+ */
+final class RenderGovernor {
+
+    interface LoadSource {
+        /** Share of time the scan pipeline is busy, 0 (idle) to 1 (saturated). */
+        float getLoad();
+    }
+
+    static final int FULL = 0;
+    static final int LOW = 1;
+    static final int FROZEN = 2;
+
+    static final int LOW_FPS = 10;
+    static final long LOW_INTERVAL_NANOS = 1_000_000_000L / LOW_FPS;
+    // How often a frozen but visible view checks whether it may draw again
+    static final long POLL_INTERVAL_MILLIS = 500;
+    private static final long DEFAULT_VSYNC_NANOS = 16_666_667L;
+    // A frame callback this much early still counts as on time for the low rate
+    private static final long VSYNC_SLACK_NANOS = 4_000_000L;
+
+    float lowLoad = 0.5f;
+    float freezeLoad = 0.85f;
+    // PowerManager.THERMAL_STATUS_MODERATE and THERMAL_STATUS_SEVERE
+    int lowThermalStatus = 2;
+    int freezeThermalStatus = 3;
+
+    private LoadSource loadSource;
+    private int thermalStatus;
+    private boolean visible;
+    private boolean running = true;
+
+    private boolean hasDrawn;
+    private long lastDrawNanos;
+    private long lastFrameNanos;
+    private long vsyncNanos = DEFAULT_VSYNC_NANOS;
+    private long delayMillis;
+    private long skipped;
+
+    void setLoadSource(LoadSource loadSource) {
+        this.loadSource = loadSource;
+    }
+
+    void setThermalStatus(int status) {
+        thermalStatus = status;
+    }
+
+    void setVisible(boolean visible) {
+        if (!visible) hasDrawn = false;
+        this.visible = visible;
+    }
+
+    /** False while the host is paused. */
+    void setRunning(boolean running) {
+        if (!running) hasDrawn = false;
+        this.running = running;
+    }
+
+    /** True while frame callbacks are needed at all; a hidden or paused view needs none. */
+    boolean isActive() {
+        return visible && running;
+    }
+
+    int mode() {
+        if (!isActive() || thermalStatus >= freezeThermalStatus) return FROZEN;
+        float load = loadSource == null ? 0f : loadSource.getLoad();
+        if (load >= freezeLoad) return FROZEN;
+        return load >= lowLoad || thermalStatus >= lowThermalStatus ? LOW : FULL;
+    }
+
+    /**
+     * Called from each frame callback. Returns true when this frame should be drawn; otherwise
+     * {@link #getDelayMillis()} says when to call back.
+     */
+    boolean onFrame(long frameTimeNanos) {
+        int mode = mode();
+        long sinceFrame = frameTimeNanos - lastFrameNanos;
+        // Consecutive display-rate callbacks reveal the vsync period
+        if (mode == FULL && sinceFrame > 0 && sinceFrame < 2 * vsyncNanos) {
+            vsyncNanos += (sinceFrame - vsyncNanos) / 8;
+        }
+        lastFrameNanos = frameTimeNanos;
+
+        if (mode == FROZEN) {
+            delayMillis = POLL_INTERVAL_MILLIS;
+            return false;
+        }
+        long sinceDraw = frameTimeNanos - lastDrawNanos;
+        if (mode == LOW && hasDrawn && sinceDraw < LOW_INTERVAL_NANOS - VSYNC_SLACK_NANOS) {
+            delayMillis = Math.max(1, (LOW_INTERVAL_NANOS - sinceDraw) / 1_000_000L);
+            return false;
+        }
+        if (hasDrawn) skipped += Math.max(0, (sinceDraw + vsyncNanos / 2) / vsyncNanos - 1);
+        hasDrawn = true;
+        lastDrawNanos = frameTimeNanos;
+        delayMillis = 0;
+        return true;
+    }
+
+    long getDelayMillis() {
+        return delayMillis;
+    }
+
+    /** Display frames left undrawn while visible since the last call. */
+    long takeSkippedFrames() {
+        long frames = skipped;
+        skipped = 0;
+        return frames;
+    }
+}
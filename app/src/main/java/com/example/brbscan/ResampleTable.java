@@ -0,0 +1,154 @@
+package com.example.brbscan;
+
+/**
+ * Source offsets and weights for resampling one crop of a YUV_420_888 frame into a square,
+ * upright target. Offsets are split into a column and a row term so the same layout serves
+ * every rotation; bilinear weights are 8-bit fixed point applied to the second sample.
+ * Tables are rebuilt in place only when the frame geometry, rotation or crop changes.
+ */
+final class ResampleTable {
+
+    static final int WEIGHT_BITS = 8;
+    static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+
+    final int size;
+    final boolean filter;
+
+    final int[] yCol0;
+    final int[] yCol1;
+    final int[] yColWeight;
+    final int[] yRow0;
+    final int[] yRow1;
+    final int[] yRowWeight;
+    final int[] uvCol0;
+    final int[] uvCol1;
+    final int[] uvColWeight;
+    final int[] uvRow0;
+    final int[] uvRow1;
+    final int[] uvRowWeight;
+
+    private int width = -1;
+    private int height = -1;
+    private int rotation = -1;
+    private int yRowStride = -1;
+    private int yPixelStride = -1;
+    private int uvRowStride = -1;
+    private int uvPixelStride = -1;
+    private int left = -1;
+    private int top = -1;
+    private int right = -1;
+    private int bottom = -1;
+    private long builds = 0;
+
+    ResampleTable(int size, boolean filter) {
+        this.size = size;
+        this.filter = filter;
+        yCol0 = new int[size];
+        yCol1 = new int[size];
+        yColWeight = new int[size];
+        yRow0 = new int[size];
+        yRow1 = new int[size];
+        yRowWeight = new int[size];
+        uvCol0 = new int[size];
+        uvCol1 = new int[size];
+        uvColWeight = new int[size];
+        uvRow0 = new int[size];
+        uvRow1 = new int[size];
+        uvRowWeight = new int[size];
+    }
+
+    /** Number of times the tables were (re)computed; a steady stream of frames builds once. */
+    long getBuildCount() {
+        return builds;
+    }
+
+    /**
+     * Makes the tables valid for {@code frame} turned {@code rotation} degrees clockwise and
+     * cropped to [left, right) x [top, bottom) in sensor coordinates.
+     */
+    void prepare(YuvFrame frame, int rotation, int left, int top, int right, int bottom) {
+        if (frame.width == width && frame.height == height && rotation == this.rotation
+                && frame.yRowStride == yRowStride && frame.yPixelStride == yPixelStride
+                && frame.uvRowStride == uvRowStride && frame.uvPixelStride == uvPixelStride
+                && left == this.left && top == this.top && right == this.right && bottom == this.bottom) {
+            return;
+        }
+
+        int w = frame.width;
+        int h = frame.height;
+        if (left < 0 || top < 0 || right > w || bottom > h || left >= right || top >= bottom) {
+            throw new IllegalArgumentException("Crop [" + left + "," + top + " - " + right + ","
+                    + bottom + "] outside " + w + "x" + h + " frame");
+        }
+
+        // Which sensor axis each output axis walks along, and whether it walks backwards
+        boolean colAlongX, colFlipped, rowFlipped;
+        switch (rotation) {
+            case 90: colAlongX = false; colFlipped = true; rowFlipped = false; break;
+            case 180: colAlongX = true; colFlipped = true; rowFlipped = true; break;
+            case 270: colAlongX = false; colFlipped = false; rowFlipped = true; break;
+            default: colAlongX = true; colFlipped = false; rowFlipped = false; break;
+        }
+
+        if (colAlongX) {
+            axis(left, right, colFlipped, frame.yPixelStride, frame.uvPixelStride,
+                    yCol0, yCol1, yColWeight, uvCol0, uvCol1, uvColWeight);
+            axis(top, bottom, rowFlipped, frame.yRowStride, frame.uvRowStride,
+                    yRow0, yRow1, yRowWeight, uvRow0, uvRow1, uvRowWeight);
+        } else {
+            axis(top, bottom, colFlipped, frame.yRowStride, frame.uvRowStride,
+                    yCol0, yCol1, yColWeight, uvCol0, uvCol1, uvColWeight);
+            axis(left, right, rowFlipped, frame.yPixelStride, frame.uvPixelStride,
+                    yRow0, yRow1, yRowWeight, uvRow0, uvRow1, uvRowWeight);
+        }
+
+        width = w;
+        height = h;
+        this.rotation = rotation;
+        yRowStride = frame.yRowStride;
+        yPixelStride = frame.yPixelStride;
+        uvRowStride = frame.uvRowStride;
+        uvPixelStride = frame.uvPixelStride;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        builds++;
+    }
+
+    // Fills one output axis sampling the sensor range [lo, hi) with the given plane steps
+    private void axis(int lo, int hi, boolean flipped, int yStep, int uvStep,
+                      int[] y0, int[] y1, int[] yWeight, int[] uv0, int[] uv1, int[] uvWeight) {
+        int length = hi - lo;
+        int uvLo = lo >> 1;
+        int uvHi = (hi - 1) >> 1;
+        for (int i = 0; i < size; i++) {
+            if (!filter) {
+                // Nearest sample, as the centre of output pixel i falls on the source grid
+                int n = (int) (((long) i * 2 + 1) * length / (2L * size));
+                int s = flipped ? hi - 1 - n : lo + n;
+                y0[i] = y1[i] = s * yStep;
+                uv0[i] = uv1[i] = (s >> 1) * uvStep;
+                yWeight[i] = uvWeight[i] = 0;
+                continue;
+            }
+
+            // Continuous source coordinate of the output pixel centre, on pixel-centre grids
+            float t = (i + 0.5f) * length / size;
+            float p = (flipped ? hi - t : lo + t) - 0.5f;
+            float c = (p - 0.5f) * 0.5f;
+
+            p = Math.max(lo, Math.min(hi - 1, p));
+            int p0 = (int) p;
+            y0[i] = p0 * yStep;
+            y1[i] = Math.min(p0 + 1, hi - 1) * yStep;
+            yWeight[i] = Math.round((p - p0) * WEIGHT_ONE);
+
+            c = Math.max(uvLo, Math.min(uvHi, c));
+            int c0 = (int) c;
+            uv0[i] = c0 * uvStep;
+            uv1[i] = Math.min(c0 + 1, uvHi) * uvStep;
+            uvWeight[i] = Math.round((c - c0) * WEIGHT_ONE);
+        }
+    }
+}
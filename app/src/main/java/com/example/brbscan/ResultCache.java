@@ -0,0 +1,112 @@
+package com.example.brbscan;
+
+/**
+ * Small LRU cache from {@link FrameSignature}s to the logits the model produced for them, so
+ * a note held steady is not re-inferred every frame. A lookup takes the closest entry within
+ * {@code maxDistance} hash bits and {@code maxChromaDelta} of each chroma mean; entries older
+ * than {@code maxAgeNanos} are ignored so a long hold still refreshes now and then.
+ *
+ * <p>Used from the inference thread only; lookups and stores never allocate.
+ */
+public class ResultCache {
+
+    static final int DEFAULT_CAPACITY = 8;
+    static final int DEFAULT_MAX_DISTANCE = 4;
+    static final int DEFAULT_MAX_CHROMA_DELTA = 6;
+    static final long DEFAULT_MAX_AGE_NANOS = 2_000_000_000L;
+
+    private final FrameSignature[] keys;
+    private final float[][] values;
+    private final int[] crops;
+    private final long[] storedNanos;
+    private final long[] lastUsed;
+    private int size;
+    private long tick;
+    private int lastCrop;
+
+    int maxDistance = DEFAULT_MAX_DISTANCE;
+    int maxChromaDelta = DEFAULT_MAX_CHROMA_DELTA;
+    long maxAgeNanos = DEFAULT_MAX_AGE_NANOS;
+
+    public ResultCache(int numClasses) {
+        this(DEFAULT_CAPACITY, numClasses);
+    }
+
+    public ResultCache(int capacity, int numClasses) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        keys = new FrameSignature[capacity];
+        values = new float[capacity][numClasses];
+        crops = new int[capacity];
+        storedNanos = new long[capacity];
+        lastUsed = new long[capacity];
+        for (int i = 0; i < capacity; i++) keys[i] = new FrameSignature();
+    }
+
+    /**
+     * Copies the logits cached for a frame matching {@code signature} into {@code out} and
+     * returns true, or returns false on a miss.
+     */
+    public boolean lookup(FrameSignature signature, long nowNanos, float[] out) {
+        int best = find(signature, nowNanos, true);
+        if (best < 0) return false;
+        lastUsed[best] = ++tick;
+        lastCrop = crops[best];
+        System.arraycopy(values[best], 0, out, 0, out.length);
+        return true;
+    }
+
+    /** Crop index stored with the entry returned by the last successful {@link #lookup}. */
+    public int getLastCrop() {
+        return lastCrop;
+    }
+
+    /** Caches {@code logits} for {@code signature}, replacing a matching or the least recently used entry. */
+    public void put(FrameSignature signature, float[] logits, int crop, long nowNanos) {
+        if (!signature.valid) return;
+        // An expired entry for the same scene is refreshed in place
+        int slot = find(signature, nowNanos, false);
+        if (slot < 0) slot = size < keys.length ? size++ : leastRecentlyUsed();
+        keys[slot].copyFrom(signature);
+        System.arraycopy(logits, 0, values[slot], 0, values[slot].length);
+        crops[slot] = crop;
+        storedNanos[slot] = nowNanos;
+        lastUsed[slot] = ++tick;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Closest entry within the match limits, only unexpired ones if live, or -1
+    private int find(FrameSignature signature, long nowNanos, boolean live) {
+        if (!signature.valid) return -1;
+        int best = -1;
+        int bestDistance = maxDistance + 1;
+        for (int i = 0; i < size; i++) {
+            FrameSignature key = keys[i];
+            if ((live && nowNanos - storedNanos[i] > maxAgeNanos) || key.rotation != signature.rotation
+                    || Math.abs(key.meanU - signature.meanU) > maxChromaDelta
+                    || Math.abs(key.meanV - signature.meanV) > maxChromaDelta) {
+                continue;
+            }
+            int distance = key.distance(signature);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    private int leastRecentlyUsed() {
+        int oldest = 0;
+        for (int i = 1; i < size; i++) {
+            if (lastUsed[i] < lastUsed[oldest]) oldest = i;
+        }
+        return oldest;
+    }
+}
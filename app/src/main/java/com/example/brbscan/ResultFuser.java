@@ -0,0 +1,152 @@
+package com.example.brbscan;
+
+/**
+ * Fuses per-frame classifier output over time. Each frame's logits are turned into
+ * temperature-scaled, class-weighted probabilities and stored in a fixed ring; a note is
+ * decided only when its aggregate score clears the class threshold and enough recent frames
+ * agree on it. Nothing is allocated after construction.
+ */
+public class ResultFuser {
+
+    public static final int NO_DECISION = -1;
+
+    private final FusionConfig config;
+    private final int numClasses;
+    private final float[][] ring;
+    private final int[] ringTop;
+    private final float[] ewma;
+    private final float[] aggregate;
+
+    private int head = 0;
+    private int count = 0;
+    private int topClass = NO_DECISION;
+    private float confidence = 0f;
+    private volatile boolean resetRequested = false;
+
+    public ResultFuser(FusionConfig config) {
+        this.config = config;
+        numClasses = config.numClasses();
+        ring = new float[config.window][numClasses];
+        ringTop = new int[config.window];
+        ewma = new float[numClasses];
+        aggregate = new float[numClasses];
+    }
+
+    /**
+     * Adds one frame of raw logits and returns the decided class index, or
+     * {@link #NO_DECISION} when the evidence is not yet strong enough.
+     */
+    public int add(float[] logits) {
+        checkReset();
+        float[] probs = ring[head];
+        softmax(logits, probs);
+        return fuse(probs);
+    }
+
+    /**
+     * Adds a frame in which no banknote was found, counted as certain evidence for the none
+     * class so that earlier detections fade out as they would with real inference.
+     */
+    public int addEmpty() {
+        checkReset();
+        if (config.noneClass < 0) {
+            head = 0;
+            count = 0;
+            topClass = NO_DECISION;
+            confidence = 0f;
+            return NO_DECISION;
+        }
+        float[] probs = ring[head];
+        for (int i = 0; i < numClasses; i++) probs[i] = 0f;
+        probs[config.noneClass] = 1f;
+        return fuse(probs);
+    }
+
+    private void checkReset() {
+        if (resetRequested) {
+            resetRequested = false;
+            head = 0;
+            count = 0;
+        }
+    }
+
+    private int fuse(float[] probs) {
+        ringTop[head] = argmax(probs);
+        head = (head + 1) % ring.length;
+        if (count < ring.length) count++;
+
+        if (config.mode == FusionConfig.Mode.EWMA) {
+            if (count == 1) {
+                System.arraycopy(probs, 0, ewma, 0, numClasses);
+            } else {
+                for (int i = 0; i < numClasses; i++) {
+                    ewma[i] += config.alpha * (probs[i] - ewma[i]);
+                }
+            }
+            System.arraycopy(ewma, 0, aggregate, 0, numClasses);
+        } else {
+            for (int i = 0; i < numClasses; i++) aggregate[i] = 0f;
+            for (int f = 0; f < count; f++) {
+                float[] frame = ring[f];
+                for (int i = 0; i < numClasses; i++) aggregate[i] += frame[i];
+            }
+            for (int i = 0; i < numClasses; i++) aggregate[i] /= count;
+        }
+
+        topClass = argmax(aggregate);
+        confidence = aggregate[topClass];
+
+        if (topClass == config.noneClass || confidence < config.thresholds[topClass]) {
+            return NO_DECISION;
+        }
+        int agreeing = 0;
+        for (int f = 0; f < count; f++) {
+            if (ringTop[f] == topClass) agreeing++;
+        }
+        return agreeing >= config.minAgreement[topClass] ? topClass : NO_DECISION;
+    }
+
+    /** Clears history before the next {@link #add}; safe to call from any thread. */
+    public void reset() {
+        resetRequested = true;
+    }
+
+    /** Class with the highest aggregate score after the last frame, decided or not. */
+    public int getTopClass() {
+        return topClass;
+    }
+
+    /** Aggregate score of {@link #getTopClass()}. */
+    public float getConfidence() {
+        return confidence;
+    }
+
+    private void softmax(float[] logits, float[] out) {
+        float max = logits[0];
+        for (int i = 1; i < numClasses; i++) {
+            if (logits[i] > max) max = logits[i];
+        }
+        float sum = 0f;
+        for (int i = 0; i < numClasses; i++) {
+            // Subtracting the max keeps exp() in range; it cancels out in the ratio
+            out[i] = (float) Math.exp((logits[i] - max) / config.temperature);
+            sum += out[i];
+        }
+        float weightedSum = 0f;
+        for (int i = 0; i < numClasses; i++) {
+            out[i] = out[i] / sum * config.weights[i];
+            weightedSum += out[i];
+        }
+        for (int i = 0; i < numClasses; i++) {
+            out[i] /= weightedSum;
+        }
+    }
+
+    private int argmax(float[] values) {
+        int best = 0;
+        for (int i = 1; i < numClasses; i++) {
+            if (values[i] > values[best]) best = i;
+        }
+        return best;
+    }
+}
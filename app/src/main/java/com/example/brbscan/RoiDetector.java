@@ -0,0 +1,138 @@
+package com.example.brbscan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the banknote's bounding box on the Y plane from gradient-energy projections. A
+ * banknote is densely printed, so its box is where most of the edge energy sits; frames
+ * with too little energy, or none concentrated anywhere, report no candidate so inference
+ * can be skipped.
+ */
+public class RoiDetector {
+
+    private static final int TARGET_SAMPLES = 120;
+    private static final int NOISE_FLOOR = 12;
+    private static final float MIN_ENERGY_PER_SAMPLE = 3f;
+    private static final float TRIM_FRACTION = 0.07f;
+    private static final float MIN_AREA_FRACTION = 0.03f;
+    private static final float LARGE_AREA_FRACTION = 0.7f;
+    private static final float MIN_DENSITY_RATIO = 1.2f;
+    private static final float PADDING = 0.1f;
+
+    private int[] colProfile = new int[0];
+    private int[] rowProfile = new int[0];
+    private final RegionOfInterest roi = new RegionOfInterest();
+
+    /**
+     * Returns the detected region; the object is reused and overwritten by the next call.
+     * {@link RegionOfInterest#isFound()} is false when there is nothing worth classifying.
+     */
+    public RegionOfInterest detect(YuvFrame frame) {
+        int width = frame.width;
+        int height = frame.height;
+        int step = Math.max(2, Math.min(width, height) / TARGET_SAMPLES);
+        int cols = width / step;
+        int rows = height / step;
+
+        if (colProfile.length < cols) colProfile = new int[cols];
+        if (rowProfile.length < rows) rowProfile = new int[rows];
+        for (int i = 0; i < cols; i++) colProfile[i] = 0;
+        for (int j = 0; j < rows; j++) rowProfile[j] = 0;
+
+        ByteBuffer y = frame.y;
+        int rowStride = frame.yRowStride;
+        int pixelStride = frame.yPixelStride;
+        int colStep = step * pixelStride;
+        int rowStep = step * rowStride;
+        long total = 0;
+
+        for (int j = 0; j < rows - 1; j++) {
+            int offset = j * rowStep;
+            int rowSum = 0;
+            for (int i = 0; i < cols - 1; i++) {
+                int p = y.get(offset) & 0xff;
+                int g = Math.abs((y.get(offset + colStep) & 0xff) - p)
+                        + Math.abs((y.get(offset + rowStep) & 0xff) - p);
+                if (g > NOISE_FLOOR) {
+                    colProfile[i] += g;
+                    rowSum += g;
+                }
+                offset += colStep;
+            }
+            rowProfile[j] = rowSum;
+            total += rowSum;
+        }
+
+        roi.found = false;
+        roi.score = 0f;
+        int samples = (cols - 1) * (rows - 1);
+        if (samples <= 0 || total < MIN_ENERGY_PER_SAMPLE * samples) {
+            return roi.set(0, 0, width, height);
+        }
+
+        long trim = (long) (total * TRIM_FRACTION);
+        int x0 = spanStart(colProfile, cols - 1, trim);
+        int x1 = spanEnd(colProfile, cols - 1, trim);
+        int y0 = spanStart(rowProfile, rows - 1, trim);
+        int y1 = spanEnd(rowProfile, rows - 1, trim);
+
+        float areaFraction = (float) ((x1 - x0 + 1) * (y1 - y0 + 1)) / samples;
+        if (areaFraction < MIN_AREA_FRACTION) {
+            return roi.set(0, 0, width, height);
+        }
+
+        // Edge density inside the box relative to the whole frame
+        long inside = 0;
+        for (int j = y0; j <= y1; j++) {
+            int offset = j * rowStep + x0 * colStep;
+            for (int i = x0; i <= x1; i++) {
+                int p = y.get(offset) & 0xff;
+                int g = Math.abs((y.get(offset + colStep) & 0xff) - p)
+                        + Math.abs((y.get(offset + rowStep) & 0xff) - p);
+                if (g > NOISE_FLOOR) inside += g;
+                offset += colStep;
+            }
+        }
+        roi.score = (inside / areaFraction) / total;
+        if (areaFraction < LARGE_AREA_FRACTION && roi.score < MIN_DENSITY_RATIO) {
+            return roi.set(0, 0, width, height);
+        }
+
+        // Back to pixels, padded and squared so the crop is not distorted by the resample
+        float left = x0 * step;
+        float top = y0 * step;
+        float right = (x1 + 2) * step;
+        float bottom = (y1 + 2) * step;
+        float side = Math.max(right - left, bottom - top) * (1f + 2 * PADDING);
+        side = Math.min(side, Math.min(width, height));
+        float cx = (left + right) / 2f;
+        float cy = (top + bottom) / 2f;
+        int l = clamp(Math.round(cx - side / 2f), 0, width - Math.round(side));
+        int t = clamp(Math.round(cy - side / 2f), 0, height - Math.round(side));
+
+        roi.found = true;
+        return roi.set(l, t, l + Math.round(side), t + Math.round(side));
+    }
+
+    private static int spanStart(int[] profile, int length, long trim) {
+        long acc = 0;
+        for (int i = 0; i < length; i++) {
+            acc += profile[i];
+            if (acc > trim) return i;
+        }
+        return 0;
+    }
+
+    private static int spanEnd(int[] profile, int length, long trim) {
+        long acc = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            acc += profile[i];
+            if (acc > trim) return i;
+        }
+        return length - 1;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.brbscan;
+
+import android.os.Trace;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings and counters for the scan loop, shared by the camera, inference and UI threads.
+ * Stages are timed on the monotonic clock into {@link LatencyHistogram}s and bracketed with
+ * {@link Trace} sections so they also show up in system traces. Recording never allocates;
+ * only {@link #snapshot()} does.
+ */
+public class ScanMetrics {
+
+    /** Shared instance that keeps trace sections but records nothing. */
+    static final ScanMetrics DISCARD = new ScanMetrics(false);
+
+    public enum Stage {
+        GATE("gate"),
+        ROI("roi"),
+        // Colour conversion, rotation, resize and tensor fill run as one fused pass
+        PREPROCESS("preprocess"),
+        QUEUE("queue"),
+        INFERENCE("inference"),
+        POSTPROCESS("postprocess"),
+        // Perceptual hash of the model's input region, on the camera thread
+        SIGNATURE("signature"),
+        CACHE_LOOKUP("cache_lookup"),
+        // Writing a frame to the diagnostics ring, on the inference thread
+        DIAGNOSTICS("diagnostics"),
+        UI_DISPATCH("ui_dispatch"),
+        NOTE_TO_SPEECH("note_to_speech"),
+        // Fused decision to the first audible sample of its announcement
+        DECISION_TO_SPEECH("decision_to_speech"),
+        // Decorative star field, on the main thread
+        STARFIELD_DRAW("starfield_draw"),
+        MODEL_LOAD("model_load"),
+        WARMUP("warmup"),
+        // Activity creation to the first completed recognition
+        COLD_START("cold_start"),
+        // onResume to the first completed recognition, including any re-warm
+        RESUME_TO_INFERENCE("resume_to_inference");
+
+        final String key;
+        final String traceName;
+
+        Stage(String key) {
+            this.key = key;
+            traceName = "brbscan:" + key;
+        }
+    }
+
+    public enum Counter {
+        FRAMES_RECEIVED,
+        FRAMES_GATED,
+        FRAMES_THROTTLED,
+        FRAMES_SUBMITTED,
+        FRAMES_DROPPED,
+        FRAMES_EMPTY,
+        INFERENCES,
+        CACHE_HITS,
+        CACHE_MISSES,
+        // Estimated model time not spent thanks to cache hits
+        CACHE_SAVED_MICROS,
+        ANNOUNCEMENTS,
+        ANNOUNCEMENTS_COALESCED,
+        ANNOUNCEMENTS_PREEMPTED,
+        STARFIELD_FRAMES,
+        // Display frames the star field left undrawn to spare the scanner
+        STARFIELD_SKIPPED,
+        // Camera frames still delivered while paused; a proxy for idle drain
+        FRAMES_WHILE_PAUSED,
+        // Resumes that reloaded a model freed under memory pressure
+        REWARMS;
+
+        final String key = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final long NO_NOTE = 0;
+    private static final long ANNOUNCED = Long.MIN_VALUE;
+
+    private final boolean enabled;
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+    private final AtomicLong noteInViewNanos = new AtomicLong(NO_NOTE);
+    private volatile long startNanos = System.nanoTime();
+    private volatile String cameraConfig = "";
+
+    public ScanMetrics() {
+        this(true);
+    }
+
+    private ScanMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < histograms.length; i++) histograms[i] = new LatencyHistogram();
+    }
+
+    /** Opens a trace section for {@code stage} and returns the start time for {@link #end}. */
+    public long begin(Stage stage) {
+        Trace.beginSection(stage.traceName);
+        return System.nanoTime();
+    }
+
+    /** Closes the section opened by {@link #begin} on the same thread and records its duration. */
+    public void end(Stage stage, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        Trace.endSection();
+        record(stage, elapsed);
+    }
+
+    public void record(Stage stage, long nanos) {
+        if (enabled) histograms[stage.ordinal()].record(nanos);
+    }
+
+    public void increment(Counter counter) {
+        if (enabled) counters.incrementAndGet(counter.ordinal());
+    }
+
+    public void add(Counter counter, long delta) {
+        if (enabled) counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    public long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    /**
+     * Marks the first frame in which a note is visible; later calls are ignored until the
+     * note leaves view, so the latency covers the whole run up to its announcement.
+     */
+    public void markNoteInView(long nowNanos) {
+        if (enabled) noteInViewNanos.compareAndSet(NO_NOTE, nowNanos);
+    }
+
+    public void clearNoteInView() {
+        noteInViewNanos.set(NO_NOTE);
+    }
+
+    /** Records an announcement and, for the first one since the note came into view, its latency. */
+    public void recordAnnounced(long nowNanos) {
+        if (!enabled) return;
+        counters.incrementAndGet(Counter.ANNOUNCEMENTS.ordinal());
+        long since = noteInViewNanos.get();
+        if (since != NO_NOTE && since != ANNOUNCED && noteInViewNanos.compareAndSet(since, ANNOUNCED)) {
+            histograms[Stage.NOTE_TO_SPEECH.ordinal()].record(nowNanos - since);
+        }
+    }
+
+    /** Describes the negotiated camera stream, e.g. {@code "640x480 YUV_420_888"}; survives {@link #reset()}. */
+    public void setCameraConfig(String description) {
+        cameraConfig = description;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) histogram.reset();
+        for (int i = 0; i < counters.length(); i++) counters.set(i, 0);
+        noteInViewNanos.set(NO_NOTE);
+        startNanos = System.nanoTime();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /** Point-in-time copy of all stages and counters. */
+    public static class Snapshot {
+        final long uptimeNanos;
+        final long[] counts = new long[Stage.values().length];
+        final long[] p50 = new long[counts.length];
+        final long[] p90 = new long[counts.length];
+        final long[] p99 = new long[counts.length];
+        final long[] mean = new long[counts.length];
+        final long[] max = new long[counts.length];
+        final long[] counters = new long[Counter.values().length];
+        final String cameraConfig;
+
+        Snapshot(ScanMetrics metrics) {
+            uptimeNanos = System.nanoTime() - metrics.startNanos;
+            cameraConfig = metrics.cameraConfig;
+            for (int i = 0; i < counts.length; i++) {
+                LatencyHistogram h = metrics.histograms[i];
+                counts[i] = h.getCount();
+                p50[i] = h.percentile(0.5);
+                p90[i] = h.percentile(0.9);
+                p99[i] = h.percentile(0.99);
+                mean[i] = h.getMean();
+                max[i] = h.getMax();
+            }
+            for (int i = 0; i < counters.length; i++) counters[i] = metrics.counters.get(i);
+        }
+
+        public long count(Stage stage) {
+            return counts[stage.ordinal()];
+        }
+
+        public long percentileNanos(Stage stage, int percentile) {
+            switch (percentile) {
+                case 50: return p50[stage.ordinal()];
+                case 90: return p90[stage.ordinal()];
+                case 99: return p99[stage.ordinal()];
+                default: throw new IllegalArgumentException("Unsupported percentile " + percentile);
+            }
+        }
+
+        public long meanNanos(Stage stage) {
+            return mean[stage.ordinal()];
+        }
+
+        public long counter(Counter counter) {
+            return counters[counter.ordinal()];
+        }
+
+        /** Share of cache lookups that hit, 0 when the cache was never consulted. */
+        public float cacheHitRate() {
+            long hits = counters[Counter.CACHE_HITS.ordinal()];
+            long lookups = hits + counters[Counter.CACHE_MISSES.ordinal()];
+            return lookups == 0 ? 0f : (float) hits / lookups;
+        }
+
+        public String toJson() {
+            StringBuilder sb = new StringBuilder(1024);
+            sb.append("{\"uptime_ms\":").append(uptimeNanos / 1_000_000L);
+            sb.append(",\"camera\":\"").append(cameraConfig).append('"');
+            sb.append(",\"counters\":{");
+            for (Counter c : Counter.values()) {
+                if (c.ordinal() > 0) sb.append(',');
+                sb.append('"').append(c.key).append("\":").append(counters[c.ordinal()]);
+            }
+            sb.append("},\"cache_hit_rate\":").append(String.format(Locale.ROOT, "%.3f", cacheHitRate()));
+            sb.append(",\"stages\":{");
+            for (Stage s : Stage.values()) {
+                int i = s.ordinal();
+                if (i > 0) sb.append(',');
+                sb.append('"').append(s.key).append("\":{\"count\":").append(counts[i])
+                        .append(",\"p50_us\":").append(p50[i] / 1000)
+                        .append(",\"p90_us\":").append(p90[i] / 1000)
+                        .append(",\"p99_us\":").append(p99[i] / 1000)
+                        .append(",\"mean_us\":").append(mean[i] / 1000)
+                        .append(",\"max_us\":").append(max[i] / 1000).append('}');
+            }
+            return sb.append("}}").toString();
+        }
+
+        /** Compact multi-line summary for the on-screen debug overlay. */
+        public String toOverlayText() {
+            StringBuilder sb = new StringBuilder(512);
+            if (!cameraConfig.isEmpty()) sb.append(cameraConfig).append('\n');
+            for (Stage s : Stage.values()) {
+                int i = s.ordinal();
+                if (counts[i] == 0) continue;
+                sb.append(String.format(Locale.ROOT, "%-14s p50 %7.2f  p99 %7.2f ms%n",
+                        s.key, p50[i] / 1e6, p99[i] / 1e6));
+            }
+            sb.append(String.format(Locale.ROOT, "frames %d  gated %d  dropped %d  empty %d",
+                    counters[Counter.FRAMES_RECEIVED.ordinal()], counters[Counter.FRAMES_GATED.ordinal()],
+                    counters[Counter.FRAMES_DROPPED.ordinal()], counters[Counter.FRAMES_EMPTY.ordinal()]));
+            long hits = counters[Counter.CACHE_HITS.ordinal()];
+            if (hits + counters[Counter.CACHE_MISSES.ordinal()] > 0) {
+                sb.append(String.format(Locale.ROOT, "%ncache %d hits (%.0f%%)  saved %.1f s",
+                        hits, cacheHitRate() * 100, counters[Counter.CACHE_SAVED_MICROS.ordinal()] / 1e6));
+            }
+            return sb.toString();
+        }
+    }
+}
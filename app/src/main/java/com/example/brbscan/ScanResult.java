@@ -0,0 +1,59 @@
+package com.example.brbscan;
+
+/**
+ * Mutable, reusable outcome of one analyzed frame. Classes are identified by their model
+ * output index; strings are looked up from the {@link CurrencyPack} only when the result is
+ * shown or spoken.
+ */
+public class ScanResult {
+
+    public static final int NOTHING = ResultFuser.NO_DECISION;
+
+    CurrencyPack pack;
+    int classId = NOTHING;
+    float confidence;
+    /** Consecutive results without a note, including this one. */
+    int emptyStreak;
+    long createdNanos;
+
+    /** Records the next decision; keeps the running empty streak. */
+    public void update(CurrencyPack pack, int classId, float confidence, long nowNanos) {
+        this.pack = pack;
+        this.classId = classId;
+        this.confidence = confidence;
+        emptyStreak = classId == NOTHING ? emptyStreak + 1 : 0;
+        createdNanos = nowNanos;
+    }
+
+    public void copyFrom(ScanResult other) {
+        pack = other.pack;
+        classId = other.classId;
+        confidence = other.confidence;
+        emptyStreak = other.emptyStreak;
+        createdNanos = other.createdNanos;
+    }
+
+    public void clear() {
+        pack = null;
+        classId = NOTHING;
+        confidence = 0f;
+        emptyStreak = 0;
+        createdNanos = 0;
+    }
+
+    public boolean isNote() {
+        return classId != NOTHING;
+    }
+
+    public int getClassId() {
+        return classId;
+    }
+
+    public float getConfidence() {
+        return confidence;
+    }
+
+    public int getEmptyStreak() {
+        return emptyStreak;
+    }
+}
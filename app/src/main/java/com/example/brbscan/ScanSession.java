@@ -0,0 +1,111 @@
+package com.example.brbscan;
+
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+
+/**
+ * Ties the scan loop to the Activity lifecycle. Pausing stops frame delivery and the torch
+ * but keeps the interpreter and pooled buffers, so resuming is instant. Memory pressure frees
+ * spare models while visible and everything once in the background; the next resume then
+ * re-warms only the active pack, off the main thread.
+ *
+ * <p>Measures each resume up to the first completed recognition, and counts camera frames
+ * still delivered while paused as a proxy for idle drain. Lifecycle calls come from the main
+ * thread, {@link #onFrameWhilePaused} from the camera thread and {@link #onRecognition} from
+ * the inference thread.
+ */
+public class ScanSession {
+
+    private static final String TAG = "ScanSession";
+
+    public interface Host {
+        /** Attaches or detaches the frame analyzer and switches the torch accordingly. */
+        void setCapturing(boolean capturing);
+
+        /** Frees spare models, or with {@code all} the active one and its frame buffers too. */
+        void release(boolean all);
+
+        /** Loads and warms the active pack again, in the background. */
+        void rewarm();
+    }
+
+    private final Host host;
+    private final ScanMetrics metrics;
+
+    private volatile boolean paused = false;
+    private boolean released = false;
+    private long pausedNanos;
+    // Set by a resume until the first recognition after it; 0 when nothing is being measured
+    private volatile long resumedNanos = 0;
+    private volatile long pausedForNanos;
+    private volatile boolean rewarming;
+
+    public ScanSession(Host host, ScanMetrics metrics) {
+        this.host = host;
+        this.metrics = metrics;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /** True while the active model was freed and has not been re-warmed yet. */
+    public boolean isReleased() {
+        return released;
+    }
+
+    public void onPause(long nowNanos) {
+        if (paused) return;
+        paused = true;
+        pausedNanos = nowNanos;
+        resumedNanos = 0;
+        host.setCapturing(false);
+    }
+
+    public void onResume(long nowNanos) {
+        if (!paused) return;
+        paused = false;
+        pausedForNanos = nowNanos - pausedNanos;
+        rewarming = released;
+        resumedNanos = nowNanos;
+        if (released) {
+            released = false;
+            metrics.increment(ScanMetrics.Counter.REWARMS);
+            host.rewarm();
+        }
+        host.setCapturing(true);
+    }
+
+    /**
+     * A {@link ComponentCallbacks2} trim level. The levels are not a single scale: the running
+     * ones sit below {@code TRIM_MEMORY_UI_HIDDEN}, which only says the UI went away and frees
+     * nothing, and the background ones above it.
+     */
+    public void onTrimMemory(int level) {
+        switch (level) {
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW:
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL:
+                host.release(false);
+                break;
+            default:
+                if (level < ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || !paused || released) return;
+                released = true;
+                Log.i(TAG, "Releasing models and buffers, trim level " + level);
+                host.release(true);
+        }
+    }
+
+    public void onFrameWhilePaused() {
+        metrics.increment(ScanMetrics.Counter.FRAMES_WHILE_PAUSED);
+    }
+
+    /** Called after every completed recognition; only the first after a resume is measured. */
+    public void onRecognition(long nowNanos) {
+        long resumed = resumedNanos;
+        if (resumed == 0) return;
+        resumedNanos = 0;
+        metrics.record(ScanMetrics.Stage.RESUME_TO_INFERENCE, nowNanos - resumed);
+        Log.i(TAG, "Resumed after " + pausedForNanos / 1_000_000L + " ms paused, first inference "
+                + (nowNanos - resumed) / 1_000_000L + " ms later" + (rewarming ? " (re-warmed)" : ""));
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.brbscan;
+
+import android.content.Context;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link TextToSpeech}-backed speaker for the {@link OutputScheduler}. A pack's phrases are
+ * synthesized to audio files once and registered with {@link TextToSpeech#addSpeech}, so an
+ * announcement plays a cached clip instead of waiting for the synthesizer. Announcements
+ * flush the engine's queue so they never wait behind that synthesis; flushed jobs are queued
+ * again behind the announcement.
+ */
+public class SpeechOutput implements OutputScheduler.Speaker {
+
+    private static final String TAG = "SpeechOutput";
+    private static final String SYNTH_PREFIX = "synth:";
+
+    public interface Listener {
+        /** The engine finished starting up, or failed to; speech refused until then can be retried. */
+        void onEngineReady(boolean available);
+
+        void onSpeechStart(String utteranceId);
+
+        /** Called once per utterance, whether it finished, failed or was stopped. */
+        void onSpeechDone(String utteranceId);
+    }
+
+    private final TextToSpeech tts;
+    private final File cacheDir;
+    private final Listener listener;
+    // Synthesis utterance ID -> phrase, until its file is complete
+    private final Map<String, String> synthesizing = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    private volatile boolean failed;
+    private volatile CurrencyPack pendingPack;
+
+    public SpeechOutput(Context context, File cacheDir, Listener listener) {
+        this.cacheDir = cacheDir;
+        this.listener = listener;
+        tts = new TextToSpeech(context, status -> {
+            if (status != TextToSpeech.SUCCESS) {
+                Log.e(TAG, "Text-to-speech unavailable: " + status);
+                failed = true;
+                listener.onEngineReady(false);
+                return;
+            }
+            ready = true;
+            CurrencyPack pack = pendingPack;
+            if (pack != null) prepare(pack);
+            listener.onEngineReady(true);
+        });
+        tts.setOnUtteranceProgressListener(new UtteranceProgressListener() {
+            @Override
+            public void onStart(String utteranceId) {
+                if (!utteranceId.startsWith(SYNTH_PREFIX)) listener.onSpeechStart(utteranceId);
+            }
+
+            @Override
+            public void onDone(String utteranceId) {
+                finished(utteranceId, true, false);
+            }
+
+            @Override
+            public void onError(String utteranceId) {
+                finished(utteranceId, false, false);
+            }
+
+            @Override
+            public void onStop(String utteranceId, boolean interrupted) {
+                finished(utteranceId, false, true);
+            }
+        });
+    }
+
+    /**
+     * Switches the voice to the pack's locale and caches its phrases, synthesizing the ones
+     * not on disk yet. Safe to call before the engine is ready.
+     */
+    public void prepare(CurrencyPack pack) {
+        pendingPack = pack;
+        if (!ready) return;
+        tts.setLanguage(pack.getLocale());
+        cache(pack.getName(), pack);
+        for (int i = 0; i < pack.numClasses(); i++) {
+            cache(pack.speech(i), pack);
+        }
+    }
+
+    // Registers a cached clip for the phrase, or queues its synthesis
+    private void cache(String text, CurrencyPack pack) {
+        if (text == null || text.isEmpty()) return;
+        // Keyed by locale and phrase, so edited manifests never replay an old clip
+        File file = new File(new File(cacheDir, pack.id),
+                Integer.toHexString((pack.getLocale() + "|" + text).hashCode()) + ".wav");
+        if (file.length() > 0) {
+            tts.addSpeech(text, file);
+            return;
+        }
+        String id = SYNTH_PREFIX + file.getAbsolutePath();
+        if (synthesizing.containsKey(id)) return;
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Cannot create " + dir);
+            return;
+        }
+        synthesize(id, text, file);
+    }
+
+    private void synthesize(String id, String text, File file) {
+        synthesizing.put(id, text);
+        if (tts.synthesizeToFile(text, null, file, id) != TextToSpeech.SUCCESS) {
+            synthesizing.remove(id);
+        }
+    }
+
+    // Stopped synthesis was flushed by an announcement and goes back on the queue behind it
+    private void finished(String utteranceId, boolean success, boolean stopped) {
+        if (!utteranceId.startsWith(SYNTH_PREFIX)) {
+            listener.onSpeechDone(utteranceId);
+            return;
+        }
+        String text = synthesizing.remove(utteranceId);
+        File file = new File(utteranceId.substring(SYNTH_PREFIX.length()));
+        if (success && text != null && file.length() > 0) {
+            tts.addSpeech(text, file);
+            return;
+        }
+        if (!file.delete() && file.exists()) {
+            Log.w(TAG, "Cannot remove partial clip " + file);
+        }
+        if (stopped && ready && text != null) synthesize(utteranceId, text, file);
+    }
+
+    @Override
+    public boolean speak(String text, String utteranceId) {
+        // The scheduler sends one utterance at a time, so a flush only drops pending synthesis
+        return ready && tts.speak(text, TextToSpeech.QUEUE_FLUSH, null, utteranceId) == TextToSpeech.SUCCESS;
+    }
+
+    @Override
+    public boolean isUnavailable() {
+        return failed;
+    }
+
+    @Override
+    public void stop() {
+        if (ready) tts.stop();
+    }
+
+    public void shutdown() {
+        ready = false;
+        tts.stop();
+        tts.shutdown();
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.brbscan;
+
+/**
+ * Counts a stack of notes flipped past the camera. A large luma change against the scene at
+ * the last count (the top note moving away) opens a new slot; once frame-to-frame motion has
+ * settled, the first fused note decision on a frame taken after the settle is counted for that
+ * slot. A note held in view is therefore counted once, and two equal notes in a row twice.
+ *
+ * <p>{@link #onFrame} runs on the camera thread for every frame, {@link #needsFusionReset}
+ * and {@link #onDecision} on the inference thread. Both paths are allocation-free.
+ */
+public class StackCounter {
+
+    // Mean absolute luma-grid difference to the settled scene that counts as a new note
+    float changeThreshold = 20f;
+    // Frame-to-frame difference below which the scene is considered still
+    float settleThreshold = 6f;
+    int settleFrames = 3;
+
+    private final LumaGrid anchor = new LumaGrid(16, 12);
+    private final LumaGrid previous = new LumaGrid(16, 12);
+
+    // Camera thread
+    private boolean hasPrevious;
+    private boolean changing = true;
+    private int stillFrames;
+    private long frames;
+    private long firstFrameNanos;
+    private long lastFrameNanos;
+
+    // Written by the camera thread: the timestamp before the epoch, so a reader of the epoch
+    // never sees an older settle time
+    private volatile int changeEpoch;
+    private volatile int settledEpoch = -1;
+    private volatile long settledTimestamp;
+
+    // Inference thread
+    private int countedEpoch = -1;
+    private int fusedChangeEpoch;
+    private int fusedSettledEpoch = -1;
+    private long decisions;
+    private long firstDecisionNanos;
+    private long lastDecisionNanos;
+
+    private volatile long total;
+    private volatile int notes;
+
+    /**
+     * Tracks scene changes from the frame's luma grid ({@link FrameGate#getLumaGrid()}). Every
+     * frame must be passed, including ones the gate rejects, so motion is measured between
+     * neighbours.
+     */
+    public void onFrame(LumaGrid grid, long timestampNanos) {
+        if (frames++ == 0) firstFrameNanos = timestampNanos;
+        lastFrameNanos = timestampNanos;
+        if (!hasPrevious) {
+            previous.copyFrom(grid);
+            hasPrevious = true;
+            return;
+        }
+        float motion = grid.meanAbsDiff(previous);
+        previous.copyFrom(grid);
+
+        if (changing) {
+            stillFrames = motion < settleThreshold ? stillFrames + 1 : 0;
+            if (stillFrames >= settleFrames) {
+                changing = false;
+                anchor.copyFrom(grid);
+                settledTimestamp = timestampNanos;
+                settledEpoch = changeEpoch;
+            }
+        } else if (grid.meanAbsDiff(anchor) > changeThreshold) {
+            changing = true;
+            stillFrames = 0;
+            changeEpoch = changeEpoch + 1;
+        }
+    }
+
+    /**
+     * True once per scene change and once per settle; the caller then resets fusion so the
+     * next decision is not carried over from the previous note or the flip itself.
+     */
+    public boolean needsFusionReset() {
+        int change = changeEpoch;
+        int settled = settledEpoch;
+        if (change == fusedChangeEpoch && settled == fusedSettledEpoch) return false;
+        fusedChangeEpoch = change;
+        fusedSettledEpoch = settled;
+        return true;
+    }
+
+    /**
+     * Feeds one fused decision for the frame taken at {@code timestampNanos}. Returns the
+     * class counted for a new note, or {@link ScanResult#NOTHING}.
+     */
+    public int onDecision(CurrencyPack pack, int classId, long timestampNanos) {
+        if (decisions++ == 0) firstDecisionNanos = timestampNanos;
+        lastDecisionNanos = timestampNanos;
+
+        int settled = settledEpoch;
+        if (classId == ScanResult.NOTHING || settled <= countedEpoch || settled != changeEpoch
+                || timestampNanos < settledTimestamp) {
+            return ScanResult.NOTHING;
+        }
+        countedEpoch = settled;
+        total += pack.value(classId);
+        notes++;
+        return classId;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int getNotes() {
+        return notes;
+    }
+
+    /** Camera frames seen per second since the last reset. */
+    public float getFrameRate() {
+        return rate(frames, firstFrameNanos, lastFrameNanos);
+    }
+
+    /** Classified frames per second since the last reset. */
+    public float getDecisionRate() {
+        return rate(decisions, firstDecisionNanos, lastDecisionNanos);
+    }
+
+    private static float rate(long count, long first, long last) {
+        return count < 2 || last <= first ? 0f : (count - 1) * 1e9f / (last - first);
+    }
+
+    /**
+     * Starts a new count. Call with the camera and inference threads quiet, e.g. between
+     * pipeline stop and start, or accept that a frame in flight may use stale state.
+     */
+    public void reset() {
+        hasPrevious = false;
+        changing = true;
+        stillFrames = 0;
+        frames = 0;
+        decisions = 0;
+        // Whatever is in view when counting starts is the first note
+        changeEpoch = changeEpoch + 1;
+        countedEpoch = changeEpoch - 1;
+        settledEpoch = -1;
+        fusedChangeEpoch = changeEpoch;
+        fusedSettledEpoch = -1;
+        total = 0;
+        notes = 0;
+    }
+}
@@ -9,23 +9,40 @@ import android.view.View;
 
 import java.util.Random;
 
+/**
+ * Decorative falling-star background for the top bar. Star state lives in one packed
+ * {@code float[]} and each size tier is drawn with a single {@link Canvas#drawPoints} call.
+ * A {@link RenderGovernor} paces the animation, so it idles while the scanner is busy, the
+ * device is hot or the view is hidden.
+ */
 public class StarFieldView extends View implements Choreographer.FrameCallback {
 
-    private static class Star {
-        float x, y;
-        float speed;
-        float radius;
-    }
-
-    private final Star[] stars;
+    private static final int STAR_COLOR = 0xFFAA00FF; // Vibrant purple
+    private static final long FIXED_TIMESTEP_NANOS = 16_000_000L; // ~60fps
+    // Longer gaps, e.g. after a freeze, are skipped rather than replayed step by step
+    private static final long MAX_CATCH_UP_NANOS = 250_000_000L;
+
+    // Round point diameters in pixels; stars keep their tier for life
+    private static final float[] TIER_SIZES = {1.5f, 2.5f, 3.5f};
+    private static final int STARS_PER_TIER = 27;
+    private static final int STAR_COUNT = STARS_PER_TIER * TIER_SIZES.length;
+
+    // Packed per-star state: position as a fraction of the view, speed per millisecond
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int SPEED = 2;
+    private static final int STRIDE = 3;
+
+    private final float[] stars = new float[STAR_COUNT * STRIDE];
+    private final float[] points = new float[STAR_COUNT * 2];
     private final Paint paint;
     private final Random random = new Random();
+    private final RenderGovernor governor = new RenderGovernor();
+    private ScanMetrics metrics = ScanMetrics.DISCARD;
 
-    private static final int STAR_COUNT = 80;
-    private static final int STAR_COLOR = 0xFFAA00FF; // Vibrant purple
-    private static final long FIXED_TIMESTEP = 16; // ~60fps, in ms
-
-    private long lastUpdateTime = 0L;
+    private boolean attached = false;
+    private boolean callbackPosted = false;
+    private long lastStepNanos = 0L;
 
     public StarFieldView(Context context) {
         this(context, null);
@@ -40,61 +57,112 @@ public class StarFieldView extends View implements Choreographer.FrameCallback {
 
         paint = new Paint(Paint.ANTI_ALIAS_FLAG);
         paint.setColor(STAR_COLOR);
+        paint.setStrokeCap(Paint.Cap.ROUND);
 
-        stars = new Star[STAR_COUNT];
         for (int i = 0; i < STAR_COUNT; i++) {
-            stars[i] = createRandomStar();
+            stars[i * STRIDE + Y] = random.nextFloat();
+            respawn(i);
         }
     }
 
-    private Star createRandomStar() {
-        Star star = new Star();
-        star.x = random.nextFloat();
-        star.y = random.nextFloat();
-        star.radius = 0.5f + random.nextFloat() * 1.5f;
-        star.speed = 0.0005f + random.nextFloat() * 0.001f; // speed per ms
-        return star;
+    /** Records draw cost, drawn and skipped frames. */
+    public void setMetrics(ScanMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** Polled every frame; a busy pipeline slows or freezes the animation. */
+    void setLoadSource(RenderGovernor.LoadSource source) {
+        governor.setLoadSource(source);
+    }
+
+    /** A {@code PowerManager.THERMAL_STATUS_*} value. */
+    public void setThermalStatus(int status) {
+        governor.setThermalStatus(status);
+        schedule();
+    }
+
+    /** Stops the animation while the host is paused, even if it is still on screen. */
+    public void setRunning(boolean running) {
+        governor.setRunning(running);
+        schedule();
+    }
+
+    private void respawn(int star) {
+        int i = star * STRIDE;
+        stars[i + X] = random.nextFloat();
+        stars[i + SPEED] = 0.0005f + random.nextFloat() * 0.001f;
     }
 
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
-        lastUpdateTime = System.currentTimeMillis();
-        Choreographer.getInstance().postFrameCallback(this);
+        attached = true;
+        schedule();
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        attached = false;
         Choreographer.getInstance().removeFrameCallback(this);
+        callbackPosted = false;
+    }
+
+    @Override
+    public void onVisibilityAggregated(boolean isVisible) {
+        super.onVisibilityAggregated(isVisible);
+        governor.setVisible(isVisible);
+        schedule();
+    }
+
+    // Posts a frame callback if the animation should run and none is pending
+    private void schedule() {
+        if (!attached || callbackPosted || !governor.isActive()) return;
+        callbackPosted = true;
+        lastStepNanos = 0L;
+        Choreographer.getInstance().postFrameCallback(this);
     }
 
     @Override
     public void doFrame(long frameTimeNanos) {
-        long now = System.currentTimeMillis();
-        long elapsed = now - lastUpdateTime;
-
-        // Fixed timestep loop to avoid spiral of death if lag spikes
-        while (elapsed >= FIXED_TIMESTEP) {
-            updateStars(FIXED_TIMESTEP);
-            elapsed -= FIXED_TIMESTEP;
-            lastUpdateTime += FIXED_TIMESTEP;
-        }
+        callbackPosted = false;
+        if (!attached || !governor.isActive()) return;
 
-        invalidate();
+        if (governor.onFrame(frameTimeNanos)) {
+            step(frameTimeNanos);
+            invalidate();
+            metrics.increment(ScanMetrics.Counter.STARFIELD_FRAMES);
+        }
+        long skipped = governor.takeSkippedFrames();
+        if (skipped > 0) metrics.add(ScanMetrics.Counter.STARFIELD_SKIPPED, skipped);
+
+        callbackPosted = true;
+        long delay = governor.getDelayMillis();
+        if (delay > 0) {
+            Choreographer.getInstance().postFrameCallbackDelayed(this, delay);
+        } else {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
 
-        // Schedule next frame
-        Choreographer.getInstance().postFrameCallback(this);
+    // Fixed timestep loop to avoid spiral of death if lag spikes
+    private void step(long frameTimeNanos) {
+        if (lastStepNanos == 0L || frameTimeNanos - lastStepNanos > MAX_CATCH_UP_NANOS) {
+            lastStepNanos = frameTimeNanos - FIXED_TIMESTEP_NANOS;
+        }
+        while (frameTimeNanos - lastStepNanos >= FIXED_TIMESTEP_NANOS) {
+            updateStars(FIXED_TIMESTEP_NANOS / 1_000_000L);
+            lastStepNanos += FIXED_TIMESTEP_NANOS;
+        }
     }
 
     private void updateStars(long deltaMillis) {
-        for (Star star : stars) {
-            star.y += star.speed * deltaMillis;
-            if (star.y > 1f) {
-                star.y = 0f;
-                star.x = random.nextFloat();
-                star.radius = 0.5f + random.nextFloat() * 1.5f;
-                star.speed = 0.0005f + random.nextFloat() * 0.001f;
+        for (int star = 0; star < STAR_COUNT; star++) {
+            int i = star * STRIDE;
+            stars[i + Y] += stars[i + SPEED] * deltaMillis;
+            if (stars[i + Y] > 1f) {
+                stars[i + Y] = 0f;
+                respawn(star);
             }
         }
     }
@@ -102,13 +170,21 @@ public class StarFieldView extends View implements Choreographer.FrameCallback {
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        final int width = getWidth();
-        final int height = getHeight();
-
-        for (Star star : stars) {
-            float cx = star.x * width;
-            float cy = star.y * height;
-            canvas.drawCircle(cx, cy, star.radius, paint);
+        long start = metrics.begin(ScanMetrics.Stage.STARFIELD_DRAW);
+        try {
+            final int width = getWidth();
+            final int height = getHeight();
+
+            for (int star = 0; star < STAR_COUNT; star++) {
+                points[star * 2] = stars[star * STRIDE + X] * width;
+                points[star * 2 + 1] = stars[star * STRIDE + Y] * height;
+            }
+            for (int tier = 0; tier < TIER_SIZES.length; tier++) {
+                paint.setStrokeWidth(TIER_SIZES[tier]);
+                canvas.drawPoints(points, tier * STARS_PER_TIER * 2, STARS_PER_TIER * 2, paint);
+            }
+        } finally {
+            metrics.end(ScanMetrics.Stage.STARFIELD_DRAW, start);
         }
     }
 }
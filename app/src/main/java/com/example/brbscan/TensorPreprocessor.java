@@ -0,0 +1,230 @@
+package com.example.brbscan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts a YUV_420_888 frame straight into the normalized RGB model input: rotation,
+ * bilinear resampling and colour conversion happen in one pass through cached
+ * {@link ResampleTable}s, with no intermediate bitmaps.
+ *
+ * <p>For a batched input the crops are, in batch order: the region of interest, the same
+ * region turned 90 and 180 degrees, and a centre crop of the frame.
+ */
+public class TensorPreprocessor {
+
+    static final int MAX_CROPS = 4;
+    private static final float CENTER_CROP_FRACTION = 0.6f;
+
+    // BT.601 full-range coefficients in 8.8 fixed point
+    private static final int R_V = 359;  // 1.402
+    private static final int G_U = 88;   // 0.344
+    private static final int G_V = 183;  // 0.714
+    private static final int B_U = 454;  // 1.772
+
+    private final int size;
+    private final int batch;
+    private final TensorSpec inputSpec;
+    private final InputEncoder encoder;
+    private final int[] channels;
+    private final RegionOfInterest fullFrame = new RegionOfInterest();
+    private final RegionOfInterest centerCrop = new RegionOfInterest();
+
+    // One cached table per batch slot, so alternating crops do not rebuild each other's tables
+    private final ResampleTable[] tables;
+
+    public TensorPreprocessor(int size) {
+        this(TensorSpec.float32(1, size, size, 3));
+    }
+
+    /** Creates a preprocessor for an NHWC RGB input tensor of any supported data type. */
+    public TensorPreprocessor(TensorSpec inputSpec) {
+        this(inputSpec, true);
+    }
+
+    /**
+     * @param filter bilinear resampling when true, otherwise the nearest source sample; nearest
+     *               is cheaper but aliases when the crop is much larger than the input
+     */
+    public TensorPreprocessor(TensorSpec inputSpec, boolean filter) {
+        if (inputSpec.shape.length != 4 || inputSpec.shape[1] != inputSpec.shape[2] || inputSpec.shape[3] != 3
+                || inputSpec.shape[0] < 1 || inputSpec.shape[0] > MAX_CROPS) {
+            throw new IllegalArgumentException("Expected a square NHWC RGB input of at most "
+                    + MAX_CROPS + " crops, got " + inputSpec);
+        }
+        this.size = inputSpec.shape[1];
+        this.batch = inputSpec.shape[0];
+        this.inputSpec = inputSpec;
+        encoder = InputEncoder.forSpec(inputSpec);
+        channels = new int[size * 3];
+        tables = new ResampleTable[batch];
+        for (int i = 0; i < batch; i++) {
+            tables[i] = new ResampleTable(size, filter);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /** Number of crops written per frame. */
+    public int getBatch() {
+        return batch;
+    }
+
+    /** Direct, native-order buffer holding the [batch, size, size, 3] input in the model's own type. */
+    public ByteBuffer getInput() {
+        return encoder.getBuffer();
+    }
+
+    public TensorSpec getInputSpec() {
+        return inputSpec;
+    }
+
+    /** Allocates another input buffer this preprocessor can fill, e.g. for a pipeline slot. */
+    public InputEncoder newInput() {
+        return InputEncoder.forSpec(inputSpec);
+    }
+
+    public void process(YuvFrame frame) {
+        process(frame, encoder);
+    }
+
+    public void process(YuvFrame frame, InputEncoder target) {
+        process(frame, target, null);
+    }
+
+    /**
+     * Resamples only {@code crop} (sensor coordinates) into the model input; a null crop
+     * uses the whole frame.
+     */
+    public void process(YuvFrame frame, InputEncoder target, RegionOfInterest crop) {
+        RegionOfInterest region = crop != null ? crop : fullFrame.setFull(frame.width, frame.height);
+        fill(frame, target, region, 0, 0);
+        if (batch > 1) fill(frame, target, region, 90, 1);
+        if (batch > 2) fill(frame, target, region, 180, 2);
+        if (batch > 3) {
+            int side = Math.round(Math.min(frame.width, frame.height) * CENTER_CROP_FRACTION);
+            int left = (frame.width - side) / 2;
+            int top = (frame.height - side) / 2;
+            fill(frame, target, centerCrop.set(left, top, left + side, top + side), 0, 3);
+        }
+    }
+
+    /**
+     * Sets {@code out} to the bounding box of every sensor pixel {@link #process} reads for
+     * {@code crop}, i.e. the part of the frame a {@link FrameSignature} has to cover.
+     */
+    public RegionOfInterest readRegion(YuvFrame frame, RegionOfInterest crop, RegionOfInterest out) {
+        if (crop == null) return out.setFull(frame.width, frame.height);
+        out.copyFrom(crop);
+        if (batch > 3) {
+            int side = Math.round(Math.min(frame.width, frame.height) * CENTER_CROP_FRACTION);
+            int left = (frame.width - side) / 2;
+            int top = (frame.height - side) / 2;
+            out.set(Math.min(out.left, left), Math.min(out.top, top),
+                    Math.max(out.right, left + side), Math.max(out.bottom, top + side));
+        }
+        return out;
+    }
+
+    // Writes one crop, turned a further extraRotation degrees clockwise, into batch slot index
+    private void fill(YuvFrame frame, InputEncoder target, RegionOfInterest crop, int extraRotation, int index) {
+        ResampleTable table = tables[index];
+        table.prepare(frame, (frame.rotationDegrees + extraRotation) % 360,
+                crop.left, crop.top, crop.right, crop.bottom);
+        int base = index * size * size * 3;
+        if (table.filter) {
+            fillBilinear(frame, target, table, base);
+        } else {
+            fillNearest(frame, target, table, base);
+        }
+    }
+
+    private void fillNearest(YuvFrame frame, InputEncoder target, ResampleTable table, int base) {
+        ByteBuffer yPlane = frame.y;
+        ByteBuffer uPlane = frame.u;
+        ByteBuffer vPlane = frame.v;
+        int[] yCol = table.yCol0;
+        int[] uvCol = table.uvCol0;
+        int[] row = channels;
+
+        for (int oy = 0; oy < size; oy++) {
+            int yRow = table.yRow0[oy];
+            int uvRow = table.uvRow0[oy];
+            int c = 0;
+            for (int ox = 0; ox < size; ox++) {
+                int luma = yPlane.get(yRow + yCol[ox]) & 0xff;
+                int uvIndex = uvRow + uvCol[ox];
+                int u = (uPlane.get(uvIndex) & 0xff) - 128;
+                int v = (vPlane.get(uvIndex) & 0xff) - 128;
+                toRgb(luma, u, v, row, c);
+                c += 3;
+            }
+            target.writeRow(row, c, base + oy * size * 3);
+        }
+    }
+
+    private void fillBilinear(YuvFrame frame, InputEncoder target, ResampleTable table, int base) {
+        ByteBuffer yPlane = frame.y;
+        ByteBuffer uPlane = frame.u;
+        ByteBuffer vPlane = frame.v;
+        int[] yCol0 = table.yCol0;
+        int[] yCol1 = table.yCol1;
+        int[] yColWeight = table.yColWeight;
+        int[] uvCol0 = table.uvCol0;
+        int[] uvCol1 = table.uvCol1;
+        int[] uvColWeight = table.uvColWeight;
+        int[] row = channels;
+
+        for (int oy = 0; oy < size; oy++) {
+            int yRow0 = table.yRow0[oy];
+            int yRow1 = table.yRow1[oy];
+            int yRowWeight = table.yRowWeight[oy];
+            int uvRow0 = table.uvRow0[oy];
+            int uvRow1 = table.uvRow1[oy];
+            int uvRowWeight = table.uvRowWeight[oy];
+            int c = 0;
+            for (int ox = 0; ox < size; ox++) {
+                int luma = bilerp(yPlane, yRow0, yRow1, yRowWeight, yCol0[ox], yCol1[ox], yColWeight[ox]);
+                int uc0 = uvCol0[ox];
+                int uc1 = uvCol1[ox];
+                int uw = uvColWeight[ox];
+                int u = bilerp(uPlane, uvRow0, uvRow1, uvRowWeight, uc0, uc1, uw) - 128;
+                int v = bilerp(vPlane, uvRow0, uvRow1, uvRowWeight, uc0, uc1, uw) - 128;
+                toRgb(luma, u, v, row, c);
+                c += 3;
+            }
+            target.writeRow(row, c, base + oy * size * 3);
+        }
+    }
+
+    // Weighted mean of four samples; weights are applied to the second row and column
+    private static int bilerp(ByteBuffer plane, int row0, int row1, int rowWeight,
+                              int col0, int col1, int colWeight) {
+        int a = plane.get(row0 + col0) & 0xff;
+        int b = plane.get(row0 + col1) & 0xff;
+        int c = plane.get(row1 + col0) & 0xff;
+        int d = plane.get(row1 + col1) & 0xff;
+        int upper = (a << ResampleTable.WEIGHT_BITS) + (b - a) * colWeight;
+        int lower = (c << ResampleTable.WEIGHT_BITS) + (d - c) * colWeight;
+        int value = (upper << ResampleTable.WEIGHT_BITS) + (lower - upper) * rowWeight;
+        return (value + (1 << (2 * ResampleTable.WEIGHT_BITS - 1))) >> (2 * ResampleTable.WEIGHT_BITS);
+    }
+
+    private static void toRgb(int luma, int u, int v, int[] row, int c) {
+        row[c] = clamp(luma + ((R_V * v + 128) >> 8));
+        row[c + 1] = clamp(luma - ((G_U * u + G_V * v + 128) >> 8));
+        row[c + 2] = clamp(luma + ((B_U * u + 128) >> 8));
+    }
+
+    // Branch-free clamp to [0, 255]
+    private static int clamp(int c) {
+        c &= ~(c >> 31);
+        return (c | ((255 - c) >> 31)) & 0xff;
+    }
+
+    /** Table builds for batch slot {@code index}; stays flat while the geometry is stable. */
+    long getTableBuildCount(int index) {
+        return tables[index].getBuildCount();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.brbscan;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Tensor;
+
+import java.util.Arrays;
+
+/**
+ * Data type, shape and quantization parameters of a model tensor, captured once at load time.
+ */
+public class TensorSpec {
+    final DataType dataType;
+    final int[] shape;
+    final float scale;
+    final int zeroPoint;
+
+    public TensorSpec(DataType dataType, int[] shape, float scale, int zeroPoint) {
+        this.dataType = dataType;
+        this.shape = shape.clone();
+        this.scale = scale;
+        this.zeroPoint = zeroPoint;
+    }
+
+    public static TensorSpec float32(int... shape) {
+        return new TensorSpec(DataType.FLOAT32, shape, 0f, 0);
+    }
+
+    public static TensorSpec of(Tensor tensor) {
+        Tensor.QuantizationParams params = tensor.quantizationParams();
+        return new TensorSpec(tensor.dataType(), tensor.shape(),
+                params != null ? params.getScale() : 0f,
+                params != null ? params.getZeroPoint() : 0);
+    }
+
+    public DataType getDataType() {
+        return dataType;
+    }
+
+    public int[] getShape() {
+        return shape.clone();
+    }
+
+    public int numElements() {
+        int count = 1;
+        for (int dim : shape) count *= dim;
+        return count;
+    }
+
+    public int bytesPerElement() {
+        switch (dataType) {
+            case UINT8:
+            case INT8:
+                return 1;
+            case INT16:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+    public int numBytes() {
+        return numElements() * bytesPerElement();
+    }
+
+    public boolean isQuantized() {
+        return dataType == DataType.UINT8 || dataType == DataType.INT8;
+    }
+
+    @Override
+    public String toString() {
+        return dataType + Arrays.toString(shape)
+                + (isQuantized() ? " scale=" + scale + " zp=" + zeroPoint : "");
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.brbscan;
+
+import android.os.Build;
+
+import org.tensorflow.lite.Delegate;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.gpu.CompatibilityList;
+import org.tensorflow.lite.gpu.GpuDelegate;
+import org.tensorflow.lite.nnapi.NnApiDelegate;
+
+import java.nio.ByteBuffer;
+
+public class TfliteInferenceEngine implements InferenceEngine {
+
+    private final InferenceConfig config;
+    private final Interpreter interpreter;
+    private final Delegate delegate;
+    private TensorSpec inputSpec;
+    private TensorSpec outputSpec;
+
+    public TfliteInferenceEngine(ByteBuffer model, InferenceConfig config) {
+        this.config = config;
+
+        Interpreter.Options options = new Interpreter.Options()
+                .setNumThreads(config.numThreads)
+                .setUseXNNPACK(config.useXnnpack);
+
+        switch (config.accelerator) {
+            case GPU:
+                try (CompatibilityList compatibility = new CompatibilityList()) {
+                    if (!compatibility.isDelegateSupportedOnThisDevice()) {
+                        throw new IllegalStateException("GPU delegate not supported on this device");
+                    }
+                    delegate = new GpuDelegate(compatibility.getBestOptionsForThisDevice());
+                }
+                break;
+            case NNAPI:
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+                    throw new IllegalStateException("NNAPI requires Android 9 or newer");
+                }
+                delegate = new NnApiDelegate();
+                break;
+            default:
+                delegate = null;
+                break;
+        }
+        if (delegate != null) options.addDelegate(delegate);
+
+        try {
+            interpreter = new Interpreter(model, options);
+        } catch (RuntimeException e) {
+            closeDelegate();
+            throw e;
+        }
+        inputSpec = TensorSpec.of(interpreter.getInputTensor(0));
+        outputSpec = TensorSpec.of(interpreter.getOutputTensor(0));
+    }
+
+    public static InferenceEngine.Factory factory(ByteBuffer model) {
+        return config -> new TfliteInferenceEngine(model, config);
+    }
+
+    public Interpreter getInterpreter() {
+        return interpreter;
+    }
+
+    @Override
+    public void run(ByteBuffer input, Object output) {
+        input.rewind();
+        interpreter.run(input, output);
+    }
+
+    // The interpreter rejects a shape the model or its delegate cannot run when resizing or
+    // when allocating for it; the previous shape is then restored
+    @Override
+    public boolean resizeInput(int[] shape) {
+        try {
+            interpreter.resizeInput(0, shape);
+            interpreter.allocateTensors();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            interpreter.resizeInput(0, inputSpec.shape);
+            interpreter.allocateTensors();
+            return false;
+        }
+        inputSpec = TensorSpec.of(interpreter.getInputTensor(0));
+        outputSpec = TensorSpec.of(interpreter.getOutputTensor(0));
+        return true;
+    }
+
+    @Override
+    public InferenceConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    public TensorSpec getInputSpec() {
+        return inputSpec;
+    }
+
+    @Override
+    public TensorSpec getOutputSpec() {
+        return outputSpec;
+    }
+
+    @Override
+    public void close() {
+        interpreter.close();
+        closeDelegate();
+    }
+
+    private void closeDelegate() {
+        if (delegate == null) return;
+        try {
+            delegate.close();
+        } catch (Exception ignored) {
+            // Delegate teardown failures leave nothing for us to recover
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.brbscan;
+
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable view over the planes of a YUV_420_888 frame. Holds no pixel data of its own, so
+ * it is only valid while the source image is open.
+ */
+public class YuvFrame {
+    ByteBuffer y;
+    ByteBuffer u;
+    ByteBuffer v;
+    int yRowStride;
+    int yPixelStride;
+    int uvRowStride;
+    int uvPixelStride;
+    int width;
+    int height;
+    int rotationDegrees;
+    long timestampNanos;
+
+    public YuvFrame set(ImageProxy imageProxy) {
+        ImageProxy.PlaneProxy[] planes = imageProxy.getPlanes();
+        return set(planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), planes[1].getPixelStride(),
+                imageProxy.getWidth(), imageProxy.getHeight(),
+                imageProxy.getImageInfo().getRotationDegrees(),
+                imageProxy.getImageInfo().getTimestamp());
+    }
+
+    public YuvFrame set(ByteBuffer y, int yRowStride, int yPixelStride,
+                        ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+                        int width, int height, int rotationDegrees, long timestampNanos) {
+        this.y = y;
+        this.u = u;
+        this.v = v;
+        this.yRowStride = yRowStride;
+        this.yPixelStride = yPixelStride;
+        this.uvRowStride = uvRowStride;
+        this.uvPixelStride = uvPixelStride;
+        this.width = width;
+        this.height = height;
+        this.rotationDegrees = rotationDegrees;
+        this.timestampNanos = timestampNanos;
+        return this;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRotationDegrees() {
+        return rotationDegrees;
+    }
+
+    /** Width of the frame once rotated upright. */
+    public int uprightWidth() {
+        return (rotationDegrees == 90 || rotationDegrees == 270) ? height : width;
+    }
+
+    /** Height of the frame once rotated upright. */
+    public int uprightHeight() {
+        return (rotationDegrees == 90 || rotationDegrees == 270) ? width : height;
+    }
+
+    public int lumaAt(int x, int yPos) {
+        return y.get(yPos * yRowStride + x * yPixelStride) & 0xff;
+    }
+
+    /** Drops the plane references so a closed image is not kept reachable. */
+    public void clear() {
+        y = null;
+        u = null;
+        v = null;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.brbscan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AnalysisResolutionTest {
+
+    private static final float ROI = AnalysisResolution.DEFAULT_MIN_ROI_FRACTION;
+
+    // A typical back camera's YUV_420_888 output sizes, largest first as Camera2 reports them
+    private static final int[][] PHONE = {
+            {4000, 3000}, {1920, 1080}, {1600, 1200}, {1280, 960}, {1280, 720},
+            {800, 600}, {720, 480}, {640, 480}, {640, 360}, {352, 288}, {320, 240}, {176, 144},
+    };
+
+    private static int[] pick(int[][] sizes, int inputSize) {
+        int index = AnalysisResolution.choose(sizes, inputSize, ROI);
+        return index < 0 ? null : sizes[index];
+    }
+
+    @Test
+    public void smallestCoveringSize_isChosen() {
+        // 224 px input from half the short side needs 448 rows
+        assertEquals(448, AnalysisResolution.requiredShortSide(224, ROI));
+        assertArrayEquals(new int[]{640, 480}, pick(PHONE, 224));
+        // A larger model input pushes the stream up
+        assertArrayEquals(new int[]{1280, 720}, pick(PHONE, 320));
+    }
+
+    @Test
+    public void equalAreas_preferTheNativeAspect() {
+        // Both 518400 pixels; 16:9 would crop the sensor's field of view
+        int[][] tied = {{960, 540}, {800, 648}};
+        assertArrayEquals(new int[]{800, 648}, pick(tied, 224));
+    }
+
+    @Test
+    public void portraitSizes_areMeasuredByTheirShortSide() {
+        int[][] sizes = {{480, 640}, {360, 640}, {720, 1280}};
+        assertArrayEquals(new int[]{480, 640}, pick(sizes, 224));
+    }
+
+    @Test
+    public void nothingLargeEnough_takesTheLongestShortSide() {
+        int[][] sizes = {{320, 240}, {352, 288}, {176, 144}, {400, 288}};
+        assertArrayEquals(new int[]{352, 288}, pick(sizes, 224));
+    }
+
+    @Test
+    public void emptyList_choosesNothing() {
+        assertNull(pick(new int[0][], 224));
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.brbscan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AnalysisSchedulerTest {
+
+    private static final long MS = 1_000_000L;
+    private static final int NONE = -1;
+
+    private static YuvFrame frameOf(SyntheticYuvFrame planes) {
+        return new YuvFrame().set(planes.y, planes.yRowStride, 1, planes.u, planes.v,
+                planes.uvRowStride, planes.uvPixelStride, planes.width, planes.height, 0, 0);
+    }
+
+    /** Feeds the same frame at 30 fps for the given duration and returns how many were analyzed. */
+    private static int run(AnalysisScheduler scheduler, YuvFrame frame, long startMs, long durationMs,
+                           long inferenceMs, int label) {
+        int analyzed = 0;
+        for (long t = startMs; t < startMs + durationMs; t += 33) {
+            if (scheduler.shouldAnalyze(frame, t * MS)) {
+                analyzed++;
+                scheduler.onResult(inferenceMs * MS, label);
+            }
+        }
+        return analyzed;
+    }
+
+    @Test
+    public void staticEmptyScene_backsOffToIdleRate() {
+        AnalysisScheduler scheduler = new AnalysisScheduler();
+        YuvFrame empty = frameOf(SyntheticYuvFrame.flat(64, 48, 40));
+
+        run(scheduler, empty, 0, 10_000, 30, NONE);
+        assertEquals(1000, scheduler.getIntervalMillis());
+
+        int analyzedNextTenSeconds = run(scheduler, empty, 10_000, 10_000, 30, NONE);
+        assertTrue("analyzed " + analyzedNextTenSeconds, analyzedNextTenSeconds <= 11);
+        assertEquals(AnalysisScheduler.Decision.SKIP, scheduler.getLastDecision());
+    }
+
+    @Test
+    public void sceneChange_snapsBackToInferenceRate() {
+        AnalysisScheduler scheduler = new AnalysisScheduler();
+        YuvFrame empty = frameOf(SyntheticYuvFrame.flat(64, 48, 40));
+        YuvFrame note = frameOf(SyntheticYuvFrame.planar(64, 48, 0, 3));
+
+        run(scheduler, empty, 0, 5_000, 30, NONE);
+        assertTrue(scheduler.getIntervalMillis() >= 600);
+
+        // The note arriving is analyzed on the very next frame after the idle interval elapses
+        assertTrue(scheduler.shouldAnalyze(note, 6_100 * MS));
+        assertEquals(AnalysisScheduler.Decision.ANALYZE_SCENE_CHANGE, scheduler.getLastDecision());
+        assertTrue(scheduler.getLastSceneScore() > 12f);
+    }
+
+    @Test
+    public void sceneChange_isAnalyzedBeforeIdleIntervalElapses() {
+        AnalysisScheduler scheduler = new AnalysisScheduler();
+        YuvFrame empty = frameOf(SyntheticYuvFrame.flat(64, 48, 40));
+        YuvFrame note = frameOf(SyntheticYuvFrame.planar(64, 48, 0, 3));
+
+        run(scheduler, empty, 0, 5_000, 30, NONE);
+        assertTrue(scheduler.shouldAnalyze(empty, 20_000 * MS));
+        scheduler.onResult(30 * MS, NONE);
+
+        // 100 ms later is well inside the idle interval, but past the inference floor
+        assertFalse(scheduler.shouldAnalyze(empty, 20_100 * MS));
+        assertTrue(scheduler.shouldAnalyze(note, 20_100 * MS));
+        assertEquals(AnalysisScheduler.Decision.ANALYZE_SCENE_CHANGE, scheduler.getLastDecision());
+        assertEquals(50, scheduler.getIntervalMillis());
+    }
+
+    @Test
+    public void interval_neverBeatsInferenceTime() {
+        AnalysisScheduler scheduler = new AnalysisScheduler();
+        // Every frame differs, but inference takes 200 ms
+        YuvFrame a = frameOf(SyntheticYuvFrame.planar(64, 48, 0, 1));
+        YuvFrame b = frameOf(SyntheticYuvFrame.planar(64, 48, 0, 2));
+        int analyzed = 0;
+        for (long t = 0; t < 2_000; t += 33) {
+            if (scheduler.shouldAnalyze((t / 33) % 2 == 0 ? a : b, t * MS)) {
+                analyzed++;
+                scheduler.onResult(200 * MS, 1);
+            }
+        }
+        assertTrue("analyzed " + analyzed, analyzed <= 11);
+        assertTrue(analyzed >= 8);
+    }
+
+    @Test
+    public void stableDetection_backsOffLessThanEmptyScene() {
+        AnalysisScheduler scheduler = new AnalysisScheduler();
+        YuvFrame note = frameOf(SyntheticYuvFrame.planar(64, 48, 0, 5));
+        run(scheduler, note, 0, 10_000, 30, 2);
+        assertEquals(600, scheduler.getIntervalMillis());
+        assertTrue(scheduler.getAnalysisRate() > 1f);
+        assertTrue(scheduler.getSkippedCount() > scheduler.getAnalyzedCount());
+    }
+
+    @Test
+    public void load_isInferenceTimeOverTheAnalysisInterval() {
+        AnalysisScheduler scheduler = new AnalysisScheduler();
+        YuvFrame empty = frameOf(SyntheticYuvFrame.flat(64, 48, 40));
+        assertEquals(0f, scheduler.getLoad(), 0f);
+
+        run(scheduler, empty, 0, 10_000, 30, NONE);
+        assertEquals(0.03f, scheduler.getLoad(), 0.005f);
+
+        // Inference slower than the floor keeps the thread saturated
+        AnalysisScheduler busy = new AnalysisScheduler();
+        busy.setSustained(true);
+        run(busy, empty, 0, 2_000, 120, NONE);
+        assertEquals(1f, busy.getLoad(), 0.001f);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.brbscan;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BackendSelectorTest {
+
+    private static class MapStore implements BackendSelector.Store {
+        final Map<String, String> values = new HashMap<>();
+
+        @Override
+        public String get(String key) {
+            return values.get(key);
+        }
+
+        @Override
+        public void put(String key, String value) {
+            values.put(key, value);
+        }
+    }
+
+    private final List<FakeInferenceEngine> created = new ArrayList<>();
+
+    // Four threads with XNNPACK is the fastest fake; everything else is slower
+    private InferenceEngine create(InferenceConfig config) {
+        if (config.getAccelerator() == InferenceConfig.Accelerator.GPU) {
+            throw new IllegalStateException("no GPU");
+        }
+        long micros = config.isXnnpackEnabled() ? 2000 / config.getNumThreads() : 3000;
+        FakeInferenceEngine engine = new FakeInferenceEngine(config, micros * 1000);
+        created.add(engine);
+        return engine;
+    }
+
+    @Test
+    public void probe_picksFastestAndClosesTheRest() throws Exception {
+        MapStore store = new MapStore();
+        BackendSelector selector = new BackendSelector(this::create, store);
+
+        InferenceEngine engine = selector.select("model", InferenceConfig.cpuCandidates(8));
+
+        assertEquals(InferenceConfig.cpu(4, true), engine.getConfig());
+        assertFalse(selector.wasLastSelectionCached());
+        assertEquals(4, selector.getLastTimings().size());
+        assertEquals("CPU:4:xnnpack", store.values.get("model"));
+        for (FakeInferenceEngine fake : created) {
+            assertEquals(fake != engine, fake.closed);
+        }
+    }
+
+    @Test
+    public void cachedSelection_skipsProbe() throws Exception {
+        MapStore store = new MapStore();
+        store.values.put("model", "CPU:2:xnnpack");
+        BackendSelector selector = new BackendSelector(this::create, store);
+
+        InferenceEngine engine = selector.select("model", InferenceConfig.cpuCandidates(8));
+
+        assertEquals(InferenceConfig.cpu(2, true), engine.getConfig());
+        assertTrue(selector.wasLastSelectionCached());
+        assertEquals(1, created.size());
+        assertEquals(0, created.get(0).runs);
+    }
+
+    @Test
+    public void unusableCachedSelection_fallsBackToProbe() throws Exception {
+        MapStore store = new MapStore();
+        store.values.put("model", InferenceConfig.gpu().key());
+        BackendSelector selector = new BackendSelector(this::create, store);
+
+        InferenceEngine engine = selector.select("model",
+                Arrays.asList(InferenceConfig.gpu(), InferenceConfig.cpu(1, true)));
+
+        assertEquals(InferenceConfig.cpu(1, true), engine.getConfig());
+        assertEquals("CPU:1:xnnpack", store.values.get("model"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noUsableCandidate_throws() throws Exception {
+        new BackendSelector(this::create, new MapStore())
+                .select("model", Arrays.asList(InferenceConfig.gpu()));
+    }
+
+    @Test
+    public void configKeys_roundTrip() {
+        for (InferenceConfig config : InferenceConfig.cpuCandidates(6)) {
+            assertEquals(config, InferenceConfig.fromKey(config.key()));
+        }
+        assertEquals(InferenceConfig.nnapi(), InferenceConfig.fromKey(InferenceConfig.nnapi().key()));
+        assertNull(InferenceConfig.fromKey("TPU:1:plain"));
+        assertNull(InferenceConfig.fromKey("garbage"));
+        assertNull(InferenceConfig.fromKey(null));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.brbscan;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Turns a diagnostics dump pulled from a device ({@link DiagnosticsRecorder}) into a fixture
+ * directory {@link ReplayFixture#loadDirectory} can replay. Every recorded frame with an image
+ * becomes a planar YUV dump of its thumbnail, labelled with the class the app decided or else
+ * its most likely class. A comment above each line says what the app saw, so the label of a
+ * missed note can be corrected by hand before replaying.
+ */
+class DiagnosticsExporter {
+
+    /** Writes the fixtures and manifest into {@code dir}; returns the number of fixtures. */
+    static int export(File dump, File dir) throws IOException {
+        List<DiagnosticsRecorder.Record> records = DiagnosticsRecorder.readAll(dump);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+
+        int fixtures = 0;
+        long firstNanos = records.isEmpty() ? 0 : records.get(0).timestampNanos;
+        try (PrintWriter manifest = new PrintWriter(new File(dir, "manifest.csv"), "UTF-8")) {
+            manifest.println("# Exported from " + dump.getName() + ", " + records.size() + " frames");
+            manifest.println("# file,label,width,height,yRowStride,uvRowStride,uvPixelStride,rotation");
+            for (DiagnosticsRecorder.Record r : records) {
+                manifest.println(describe(r, firstNanos));
+                if (r.rgb == null) continue;
+
+                int w = r.thumbWidth;
+                int h = r.thumbHeight;
+                int[] argb = new int[w * h];
+                for (int i = 0; i < argb.length; i++) {
+                    argb[i] = 0xff000000 | (r.rgb[i * 3] & 0xff) << 16
+                            | (r.rgb[i * 3 + 1] & 0xff) << 8 | (r.rgb[i * 3 + 2] & 0xff);
+                }
+                String name = String.format(Locale.ROOT, "frame_%06d.yuv", r.sequence);
+                ReplayFixture.writeYuvDump(new File(dir, name), ReplayFixture.fromArgb(argb, w, h, 0));
+                int label = r.decided != ResultFuser.NO_DECISION ? r.decided : argmax(r.logits);
+                manifest.println(name + "," + label + "," + w + "," + h + "," + w + "," + (w + 1) / 2 + ",1,0");
+                fixtures++;
+            }
+        }
+        return fixtures;
+    }
+
+    private static String describe(DiagnosticsRecorder.Record r, long firstNanos) {
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT,
+                "# #%d at %.3f s: decided %d, top %d (%.2f), inference %.2f ms, postprocess %.2f ms",
+                r.sequence, (r.timestampNanos - firstNanos) / 1e9, r.decided, r.topClass, r.confidence,
+                r.inferenceNanos / 1e6, r.postprocessNanos / 1e6));
+        if ((r.flags & DiagnosticsRecorder.FLAG_EMPTY) != 0) return line.append(", no candidate").toString();
+        if ((r.flags & DiagnosticsRecorder.FLAG_CACHE_HIT) != 0) line.append(", cached");
+        line.append(", crop ").append(r.crop).append(", logits");
+        for (float logit : r.logits) line.append(String.format(Locale.ROOT, " %.3f", logit));
+        return line.toString();
+    }
+
+    private static int argmax(float[] logits) {
+        int best = 0;
+        for (int k = 1; k < logits.length; k++) if (logits[k] > logits[best]) best = k;
+        return best;
+    }
+}
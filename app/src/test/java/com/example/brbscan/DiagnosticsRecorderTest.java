@@ -0,0 +1,280 @@
+package com.example.brbscan;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.tensorflow.lite.DataType;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DiagnosticsRecorderTest {
+
+    private static final int CLASSES = LinearFixtureModel.CLASSES;
+    private static final float[] LOGITS = {0.5f, -1f, 2f, 0f, 3.25f};
+
+    private File dir;
+    private File dump;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("diagnostics").toFile();
+        dir.deleteOnExit();
+        dump = new File(dir, "diagnostics.ring");
+        dump.deleteOnExit();
+    }
+
+    // A size x size input whose channels encode their pixel position
+    private static ByteBuffer gradient(TensorSpec spec) {
+        int size = spec.shape[1];
+        InputEncoder encoder = InputEncoder.forSpec(spec);
+        int[] row = new int[size * 3];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                row[x * 3] = x * 255 / (size - 1);
+                row[x * 3 + 1] = y * 255 / (size - 1);
+                row[x * 3 + 2] = 200;
+            }
+            encoder.writeRow(row, row.length, y * size * 3);
+        }
+        return encoder.getBuffer();
+    }
+
+    private static void assertGradientThumbnail(DiagnosticsRecorder.Record r, int size, int step, int tolerance) {
+        assertEquals(size / step, r.thumbWidth);
+        assertEquals(size / step, r.thumbHeight);
+        for (int ty = 0; ty < r.thumbHeight; ty++) {
+            for (int tx = 0; tx < r.thumbWidth; tx++) {
+                int i = (ty * r.thumbWidth + tx) * 3;
+                assertEquals(tx * step * 255 / (size - 1), r.rgb[i] & 0xff, tolerance);
+                assertEquals(ty * step * 255 / (size - 1), r.rgb[i + 1] & 0xff, tolerance);
+                assertEquals(200, r.rgb[i + 2] & 0xff, tolerance);
+            }
+        }
+    }
+
+    @Test
+    public void recordedFrames_readBackWithThumbnailsLogitsAndTimings() throws Exception {
+        TensorSpec spec = TensorSpec.float32(1, 16, 16, 3);
+        ByteBuffer input = gradient(spec);
+        try (DiagnosticsRecorder recorder = new DiagnosticsRecorder(dump, spec, CLASSES, 8, 8)) {
+            recorder.record(input, 0, LOGITS, 1_000, 12_000_000, 300_000, ResultFuser.NO_DECISION, 4, 0.6f);
+            // A cache hit has no model time
+            recorder.record(input, 0, LOGITS, 2_000, 0, 200_000, 4, 4, 0.9f);
+            recorder.recordEmpty(3_000, 100_000, 4, 4, 0.8f);
+        }
+
+        List<DiagnosticsRecorder.Record> records = DiagnosticsRecorder.readAll(dump);
+        assertEquals(3, records.size());
+        DiagnosticsRecorder.Record first = records.get(0);
+        assertEquals(1, first.sequence);
+        assertEquals(1_000, first.timestampNanos);
+        assertEquals(12_000_000, first.inferenceNanos);
+        assertEquals(300_000, first.postprocessNanos);
+        assertEquals(ResultFuser.NO_DECISION, first.decided);
+        assertEquals(4, first.topClass);
+        assertEquals(0.6f, first.confidence, 0f);
+        assertEquals(0, first.flags);
+        assertArrayEquals(LOGITS, first.logits, 0f);
+        assertGradientThumbnail(first, 16, 2, 1);
+
+        assertEquals(DiagnosticsRecorder.FLAG_CACHE_HIT, records.get(1).flags);
+        DiagnosticsRecorder.Record empty = records.get(2);
+        assertEquals(DiagnosticsRecorder.FLAG_EMPTY, empty.flags);
+        assertNull(empty.rgb);
+        assertEquals(4, empty.decided);
+    }
+
+    @Test
+    public void quantizedInputs_decodeToTheSameThumbnail() throws Exception {
+        TensorSpec[] specs = {
+                new TensorSpec(DataType.UINT8, new int[]{1, 16, 16, 3}, 1 / 127.5f, 127),
+                new TensorSpec(DataType.INT8, new int[]{1, 16, 16, 3}, 1 / 127.5f, -1),
+                new TensorSpec(DataType.UINT8, new int[]{1, 16, 16, 3}, 0f, 0),
+        };
+        for (TensorSpec spec : specs) {
+            try (DiagnosticsRecorder recorder = new DiagnosticsRecorder(dump, spec, CLASSES, 2, 16)) {
+                recorder.record(gradient(spec), 0, LOGITS, 0, 1, 1, 0, 0, 0f);
+            }
+            assertGradientThumbnail(DiagnosticsRecorder.readAll(dump).get(0), 16, 1, 1);
+            assertTrue(dump.delete());
+        }
+    }
+
+    @Test
+    public void batchedInput_recordsTheFusedCrop() throws Exception {
+        TensorSpec spec = TensorSpec.float32(2, 8, 8, 3);
+        InputEncoder encoder = InputEncoder.forSpec(spec);
+        int[] row = new int[8 * 3];
+        for (int crop = 0; crop < 2; crop++) {
+            Arrays.fill(row, crop == 0 ? 10 : 240);
+            for (int y = 0; y < 8; y++) encoder.writeRow(row, row.length, (crop * 8 + y) * 8 * 3);
+        }
+        try (DiagnosticsRecorder recorder = new DiagnosticsRecorder(dump, spec, CLASSES, 2, 8)) {
+            recorder.record(encoder.getBuffer(), 1, LOGITS, 0, 1, 1, 0, 0, 0f);
+        }
+        DiagnosticsRecorder.Record r = DiagnosticsRecorder.readAll(dump).get(0);
+        assertEquals(1, r.crop);
+        for (byte b : r.rgb) assertEquals(240, b & 0xff, 1);
+    }
+
+    @Test
+    public void ring_keepsTheNewestFrames_andResumesAfterReopening() throws Exception {
+        TensorSpec spec = TensorSpec.float32(1, 8, 8, 3);
+        ByteBuffer input = gradient(spec);
+        try (DiagnosticsRecorder recorder = new DiagnosticsRecorder(dump, spec, CLASSES, 4, 4)) {
+            for (int i = 1; i <= 6; i++) recorder.record(input, 0, LOGITS, i, 1, 1, 0, 0, 0f);
+        }
+        assertSequences(3, 6);
+
+        // Same geometry: the ring survives an app restart
+        try (DiagnosticsRecorder recorder = new DiagnosticsRecorder(dump, spec, CLASSES, 4, 4)) {
+            assertEquals(6, recorder.getWritten());
+            recorder.record(input, 0, LOGITS, 7, 1, 1, 0, 0, 0f);
+        }
+        assertSequences(4, 7);
+        assertEquals(7, DiagnosticsRecorder.readAll(dump).get(3).timestampNanos);
+
+        // A model with another class count starts a new ring
+        try (DiagnosticsRecorder recorder = new DiagnosticsRecorder(dump, spec, CLASSES + 1, 4, 4)) {
+            assertEquals(0, recorder.getWritten());
+        }
+        assertTrue(DiagnosticsRecorder.readAll(dump).isEmpty());
+    }
+
+    private void assertSequences(long first, long last) throws Exception {
+        List<DiagnosticsRecorder.Record> records = DiagnosticsRecorder.readAll(dump);
+        assertEquals(last - first + 1, records.size());
+        for (int i = 0; i < records.size(); i++) assertEquals(first + i, records.get(i).sequence);
+    }
+
+    @Test
+    public void tornRecord_isSkipped() throws Exception {
+        TensorSpec spec = TensorSpec.float32(1, 8, 8, 3);
+        int recordBytes;
+        try (DiagnosticsRecorder recorder = new DiagnosticsRecorder(dump, spec, CLASSES, 4, 8)) {
+            for (int i = 1; i <= 3; i++) recorder.record(gradient(spec), 0, LOGITS, i, 1, 1, 0, 0, 0f);
+            recordBytes = (int) ((dump.length() - DiagnosticsRecorder.HEADER_BYTES) / 4);
+        }
+        // The app died while writing the second record, before its sequence was committed
+        try (RandomAccessFile file = new RandomAccessFile(dump, "rw")) {
+            file.seek(DiagnosticsRecorder.HEADER_BYTES + recordBytes);
+            file.writeLong(0L);
+        }
+        List<DiagnosticsRecorder.Record> records = DiagnosticsRecorder.readAll(dump);
+        assertEquals(2, records.size());
+        assertEquals(1, records.get(0).sequence);
+        assertEquals(3, records.get(1).sequence);
+    }
+
+    @Test
+    public void exportedDump_replaysToTheRecordedDecisions() throws Exception {
+        FusionConfig fusionConfig;
+        try (InputStream in = new FileInputStream("src/main/assets/fusion.properties")) {
+            fusionConfig = FusionConfig.load(in, CLASSES);
+        }
+        Recognizer recognizer = new Recognizer(LinearFixtureModel.float32(32), fusionConfig);
+        TensorPreprocessor preprocessor = recognizer.newPreprocessor();
+        int[] colours = {0xffe02020, 0xff20e020, 0xff2020e0};
+        try (DiagnosticsRecorder recorder = new DiagnosticsRecorder(dump,
+                recognizer.getEngine().getInputSpec(), CLASSES, 16, 16)) {
+            for (int colour : colours) {
+                int[] pixels = new int[64 * 48];
+                Arrays.fill(pixels, colour);
+                YuvFrame frame = ReplayFixture.fromArgb(pixels, 64, 48, 90);
+                recognizer.reset();
+                for (int i = 0; i < 2; i++) {
+                    preprocessor.process(frame);
+                    ByteBuffer input = preprocessor.getInput();
+                    int decided = recognizer.recognize(input);
+                    recorder.record(input, recognizer.getLastCrop(), recognizer.getLastLogits(), i,
+                            recognizer.getLastInferenceNanos(), recognizer.getLastPostprocessNanos(),
+                            decided, recognizer.getTopClass(), recognizer.getConfidence());
+                }
+            }
+            recorder.recordEmpty(10, 1, ResultFuser.NO_DECISION, ResultFuser.NO_DECISION, 0f);
+        }
+
+        File fixtures = new File(dir, "fixtures");
+        assertEquals(6, DiagnosticsExporter.export(dump, fixtures));
+        List<ReplayFixture> loaded = ReplayFixture.loadDirectory(fixtures);
+        assertEquals(6, loaded.size());
+        for (int i = 0; i < 6; i++) assertEquals(i / 2, loaded.get(i).label);
+
+        // The thumbnails still show the model what it saw on the device, already cropped
+        ReplayReport report = new ReplayHarness(recognizer, fusionConfig.getNoneClass(), false).run(loaded, 3, 0);
+        for (int label = 0; label < 3; label++) assertEquals(4, report.confusion[label][label]);
+    }
+
+    /**
+     * Exports a dump pulled from a device into fixtures for {@link ReplayHarnessTest}:
+     * {@code -Dbrbscan.diagnostics.dump=<diagnostics_jod.ring> -Dbrbscan.diagnostics.out=<dir>}.
+     */
+    @Test
+    public void exportExternalDump() throws Exception {
+        String dumpPath = System.getProperty("brbscan.diagnostics.dump");
+        String outPath = System.getProperty("brbscan.diagnostics.out");
+        Assume.assumeTrue(dumpPath != null && outPath != null);
+        int exported = DiagnosticsExporter.export(new File(dumpPath), new File(outPath));
+        System.out.println("Exported " + exported + " fixtures to " + outPath);
+    }
+
+    @Test
+    public void fullSizeRing_writesWithoutAllocating() throws Exception {
+        TensorSpec spec = TensorSpec.float32(1, 224, 224, 3);
+        ByteBuffer input = gradient(spec);
+        int capacity = 200;
+        ReplayHarness.AllocationCounter allocations = new ReplayHarness.AllocationCounter();
+        long allocated;
+        try (DiagnosticsRecorder recorder = new DiagnosticsRecorder(dump, spec, CLASSES, capacity, 112)) {
+            for (int i = 0; i < capacity; i++) recorder.record(input, 0, LOGITS, i, 1, 1, 0, 0, 0f);
+            long allocStart = allocations.current();
+            for (int i = 0; i < 2 * capacity; i++) recorder.record(input, 0, LOGITS, i, 1, 1, 0, 0, 0f);
+            allocated = allocStart < 0 ? -1 : allocations.current() - allocStart - allocations.overhead;
+        }
+        assertGradientThumbnail(DiagnosticsRecorder.readAll(dump).get(0), 224, 2, 1);
+
+        Assume.assumeTrue("thread allocation counter unavailable", allocated >= 0);
+        assertEquals(0, Math.max(0, allocated));
+    }
+
+    /**
+     * Write and read rates of a full-size ring. Run with
+     * {@code ./gradlew test -Dbrbscan.bench=true}.
+     */
+    @Test
+    public void fullSizeRing_throughput() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("brbscan.bench"));
+        TensorSpec spec = TensorSpec.float32(1, 224, 224, 3);
+        ByteBuffer input = gradient(spec);
+        int frames = 2_000;
+        int capacity = 200;
+        long writeNanos;
+        try (DiagnosticsRecorder recorder = new DiagnosticsRecorder(dump, spec, CLASSES, capacity, 112)) {
+            for (int i = 0; i < capacity; i++) recorder.record(input, 0, LOGITS, i, 1, 1, 0, 0, 0f);
+            long start = System.nanoTime();
+            for (int i = 0; i < frames; i++) recorder.record(input, 0, LOGITS, i, 1, 1, 0, 0, 0f);
+            writeNanos = System.nanoTime() - start;
+        }
+
+        long start = System.nanoTime();
+        List<DiagnosticsRecorder.Record> records = DiagnosticsRecorder.readAll(dump);
+        long readNanos = System.nanoTime() - start;
+        assertEquals(capacity, records.size());
+
+        double recordMb = (dump.length() - DiagnosticsRecorder.HEADER_BYTES) / (double) capacity / 1e6;
+        System.out.printf("diagnostics ring: write %.3f ms/frame (%.0f MB/s), read %.0f frames/s (%.0f MB/s)%n",
+                writeNanos / 1e6 / frames, recordMb * frames / (writeNanos / 1e9),
+                capacity / (readNanos / 1e9), recordMb * capacity / (readNanos / 1e9));
+        // Far below the budget of a frame even on a slow test host
+        assertTrue("write took " + writeNanos / frames + " ns/frame", writeNanos / frames < 5_000_000L);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.brbscan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * CPU-only stand-in for a TFLite interpreter: spins for a fixed time per run and writes
+ * a canned output vector.
+ */
+class FakeInferenceEngine implements InferenceEngine {
+    private final InferenceConfig config;
+    private final long runNanos;
+    private final float[] logits;
+    int runs = 0;
+    boolean closed = false;
+
+    FakeInferenceEngine(InferenceConfig config, long runNanos, float... logits) {
+        this.config = config;
+        this.runNanos = runNanos;
+        this.logits = logits;
+    }
+
+    @Override
+    public void run(ByteBuffer input, Object output) {
+        runs++;
+        long end = System.nanoTime() + runNanos;
+        while (System.nanoTime() < end) {
+            // Busy-wait so timings stay precise at sub-millisecond scale
+        }
+        if (output instanceof ByteBuffer) {
+            ByteBuffer out = (ByteBuffer) output;
+            for (int i = 0; i < logits.length && (i + 1) * 4 <= out.capacity(); i++) {
+                out.putFloat(i * 4, logits[i]);
+            }
+        }
+    }
+
+    @Override
+    public TensorSpec getInputSpec() {
+        return TensorSpec.float32(1, 4, 4, 3);
+    }
+
+    @Override
+    public TensorSpec getOutputSpec() {
+        return TensorSpec.float32(1, Math.max(1, logits.length));
+    }
+
+    @Override
+    public InferenceConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.brbscan;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrameGateTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final long FRAME_NANOS = 33_333_333L;
+
+    private static YuvFrame frameOf(SyntheticYuvFrame planes) {
+        return new YuvFrame().set(planes.y, planes.yRowStride, 1, planes.u, planes.v,
+                planes.uvRowStride, planes.uvPixelStride, planes.width, planes.height, 90, 0);
+    }
+
+    private static SyntheticYuvFrame sharpTexture(long seed) {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.flat(WIDTH, HEIGHT, 0);
+        Random random = new Random(seed);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                planes.setLuma(x, y, 50 + random.nextInt(150));
+            }
+        }
+        return planes;
+    }
+
+    // Smooth, well-exposed gradients with no fine detail, like an out-of-focus note
+    private static SyntheticYuvFrame smoothTexture() {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.flat(WIDTH, HEIGHT, 0);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                planes.setLuma(x, y, (int) (128 + 60 * Math.sin(x / 15.0) * Math.cos(y / 13.0)));
+            }
+        }
+        return planes;
+    }
+
+    @Test
+    public void sharpWellExposedFrame_passes() {
+        FrameGate gate = new FrameGate();
+        assertEquals(FrameGate.Verdict.PASS, gate.check(frameOf(sharpTexture(1)), 0));
+        assertTrue(gate.getLastSharpness() > gate.minSharpness);
+    }
+
+    @Test
+    public void darkFrame_isRejected() {
+        FrameGate gate = new FrameGate();
+        assertEquals(FrameGate.Verdict.TOO_DARK,
+                gate.check(frameOf(SyntheticYuvFrame.flat(WIDTH, HEIGHT, 10)), 0));
+        assertFalse(FrameGate.Verdict.TOO_DARK.isTransient());
+    }
+
+    @Test
+    public void clippedFrame_isOverexposed() {
+        FrameGate gate = new FrameGate();
+        assertEquals(FrameGate.Verdict.OVEREXPOSED,
+                gate.check(frameOf(SyntheticYuvFrame.flat(WIDTH, HEIGHT, 250)), 0));
+    }
+
+    @Test
+    public void blankFrame_hasLowContrast() {
+        FrameGate gate = new FrameGate();
+        assertEquals(FrameGate.Verdict.LOW_CONTRAST,
+                gate.check(frameOf(SyntheticYuvFrame.flat(WIDTH, HEIGHT, 120)), 0));
+    }
+
+    @Test
+    public void smoothFrame_isBlurry() {
+        FrameGate gate = new FrameGate();
+        assertEquals(FrameGate.Verdict.BLURRY, gate.check(frameOf(smoothTexture()), 0));
+        assertTrue(gate.getLastContrast() > gate.minContrast);
+        assertTrue(FrameGate.Verdict.BLURRY.isTransient());
+    }
+
+    @Test
+    public void sceneJumpBetweenConsecutiveFrames_isMotion() {
+        FrameGate gate = new FrameGate();
+        assertEquals(FrameGate.Verdict.PASS, gate.check(frameOf(sharpTexture(1)), 0));
+        assertEquals(FrameGate.Verdict.MOTION, gate.check(frameOf(sharpTexture(2)), FRAME_NANOS));
+        // The same frame again is steady
+        assertEquals(FrameGate.Verdict.PASS, gate.check(frameOf(sharpTexture(2)), 2 * FRAME_NANOS));
+    }
+
+    @Test
+    public void changeAfterLongGap_isNotMotion() {
+        FrameGate gate = new FrameGate();
+        gate.check(frameOf(sharpTexture(1)), 0);
+        assertEquals(FrameGate.Verdict.PASS, gate.check(frameOf(sharpTexture(2)), 30 * FRAME_NANOS));
+
+        gate.reset();
+        assertEquals(FrameGate.Verdict.PASS, gate.check(frameOf(sharpTexture(3)), 31 * FRAME_NANOS));
+    }
+
+    @Test
+    public void verdicts_areCountedByReason() {
+        FrameGate gate = new FrameGate();
+        YuvFrame dark = frameOf(SyntheticYuvFrame.flat(WIDTH, HEIGHT, 10));
+        YuvFrame sharp = frameOf(sharpTexture(4));
+        gate.check(dark, 0);
+        gate.check(dark, FRAME_NANOS);
+        gate.check(sharp, 10 * FRAME_NANOS);
+
+        assertEquals(2, gate.getCount(FrameGate.Verdict.TOO_DARK));
+        assertEquals(1, gate.getCount(FrameGate.Verdict.PASS));
+        assertEquals(0, gate.getCount(FrameGate.Verdict.BLURRY));
+        assertEquals(3, gate.getCheckedCount());
+        assertTrue(gate.toString().contains("too_dark=2"));
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.brbscan;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FramePipelineTest {
+
+    private final SyntheticYuvFrame planes = SyntheticYuvFrame.planar(32, 24, 0, 11);
+    private final List<Long> consumed = Collections.synchronizedList(new ArrayList<>());
+
+    private YuvFrame frameAt(long timestamp) {
+        return new YuvFrame().set(planes.y, planes.yRowStride, 1, planes.u, planes.v,
+                planes.uvRowStride, planes.uvPixelStride, planes.width, planes.height, 0, timestamp);
+    }
+
+    private static void awaitIdle(FramePipeline pipeline) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.getConsumedCount() + pipeline.getDroppedCount() < pipeline.getSubmittedCount()) {
+            assertTrue("pipeline did not drain", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void fastConsumer_seesEveryFrameInOrder() throws Exception {
+        FramePipeline pipeline = new FramePipeline(new TensorPreprocessor(8), 3,
+                (input, timestamp) -> consumed.add(timestamp));
+        pipeline.start();
+        for (long t = 1; t <= 10; t++) {
+            assertTrue(pipeline.submit(frameAt(t)));
+            awaitIdle(pipeline);
+        }
+        pipeline.stop();
+
+        assertEquals(10, consumed.size());
+        assertEquals(0, pipeline.getDroppedCount());
+        for (int i = 0; i < consumed.size(); i++) {
+            assertEquals(i + 1L, (long) consumed.get(i));
+        }
+    }
+
+    @Test
+    public void slowConsumer_dropsOldestAndKeepsLatest() throws Exception {
+        FramePipeline pipeline = new FramePipeline(new TensorPreprocessor(8), 3, (input, timestamp) -> {
+            consumed.add(timestamp);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        pipeline.start();
+        for (long t = 1; t <= 30; t++) {
+            pipeline.submit(frameAt(t));
+            Thread.sleep(2);
+        }
+        awaitIdle(pipeline);
+        pipeline.stop();
+
+        assertTrue(pipeline.getDroppedCount() > 0);
+        assertEquals(30, pipeline.getConsumedCount() + pipeline.getDroppedCount());
+        assertEquals(30L, (long) consumed.get(consumed.size() - 1));
+        for (int i = 1; i < consumed.size(); i++) {
+            assertTrue(consumed.get(i) > consumed.get(i - 1));
+        }
+    }
+
+    @Test
+    public void submit_doesNotWaitForInference() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        FramePipeline pipeline = new FramePipeline(new TensorPreprocessor(8), 3, (input, timestamp) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            consumed.add(timestamp);
+        });
+        pipeline.start();
+        pipeline.submit(frameAt(1));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Inference is blocked on frame 1, yet the camera thread keeps converting
+        long start = System.nanoTime();
+        for (long t = 2; t <= 6; t++) {
+            assertTrue(pipeline.submit(frameAt(t)));
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        release.countDown();
+        awaitIdle(pipeline);
+        pipeline.stop();
+
+        assertEquals(Long.valueOf(1), consumed.get(0));
+        assertEquals(Long.valueOf(6), consumed.get(consumed.size() - 1));
+        assertEquals(4, pipeline.getDroppedCount());
+    }
+
+    @Test
+    public void consumerSeesPreprocessedInput() throws Exception {
+        TensorPreprocessor reference = new TensorPreprocessor(8);
+        reference.process(frameAt(0));
+        ByteBuffer expected = reference.getInput();
+        List<Boolean> matches = Collections.synchronizedList(new ArrayList<>());
+
+        FramePipeline pipeline = new FramePipeline(new TensorPreprocessor(8), 3,
+                (input, timestamp) -> matches.add(input.equals(expected)));
+        pipeline.start();
+        pipeline.submit(frameAt(1));
+        awaitIdle(pipeline);
+        pipeline.stop();
+
+        assertEquals(Collections.singletonList(true), matches);
+    }
+
+    @Test
+    public void stopAsync_returnsAtOnce_andReportsOnceTheCurrentFrameIsDone() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        FramePipeline pipeline = new FramePipeline(new TensorPreprocessor(8), 3, (input, timestamp) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            consumed.add(timestamp);
+        });
+        pipeline.start();
+        pipeline.submit(frameAt(1));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        pipeline.stopAsync(() -> {
+            // Runs after the frame in flight, never alongside it
+            assertEquals(1, consumed.size());
+            stopped.countDown();
+        });
+        assertFalse(pipeline.submit(frameAt(2)));
+        assertEquals(1, stopped.getCount());
+
+        release.countDown();
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        pipeline.stop();
+        assertEquals(Collections.singletonList(1L), consumed);
+
+        // Without a running thread there is nothing to wait for
+        CountDownLatch idle = new CountDownLatch(1);
+        pipeline.stopAsync(idle::countDown);
+        assertEquals(0, idle.getCount());
+    }
+
+    @Test
+    public void stoppedPipeline_rejectsFrames() {
+        FramePipeline pipeline = new FramePipeline(new TensorPreprocessor(8), 3, (input, timestamp) -> { });
+        assertFalse(pipeline.submit(frameAt(1)));
+    }
+}
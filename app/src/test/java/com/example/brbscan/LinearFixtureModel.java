@@ -0,0 +1,100 @@
+package com.example.brbscan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixture model: a linear classifier over the mean normalized colour of the input. It reads
+ * and writes tensors in whatever representation its specs declare, like a converted TFLite
+ * model, so quantized and float paths can be compared without native code.
+ */
+class LinearFixtureModel implements InferenceEngine {
+
+    static final int CLASSES = 5;
+
+    // Per-class RGB weights; each class responds to a different colour balance
+    private static final float[][] WEIGHTS = {
+            {1.0f, -0.5f, -0.5f},
+            {-0.5f, 1.0f, -0.5f},
+            {-0.5f, -0.5f, 1.0f},
+            {0.6f, 0.6f, -1.0f},
+            {0.1f, 0.1f, 0.1f},
+    };
+
+    TensorSpec inputSpec;
+    TensorSpec outputSpec;
+    private final float[] mean = new float[3];
+
+    LinearFixtureModel(TensorSpec inputSpec, TensorSpec outputSpec) {
+        this.inputSpec = inputSpec;
+        this.outputSpec = outputSpec;
+    }
+
+    static LinearFixtureModel float32(int size) {
+        return new LinearFixtureModel(TensorSpec.float32(1, size, size, 3), TensorSpec.float32(1, CLASSES));
+    }
+
+    @Override
+    public void run(ByteBuffer input, Object output) {
+        int batch = inputSpec.shape[0];
+        int elements = inputSpec.numElements() / batch;
+        ByteBuffer out = (ByteBuffer) output;
+        for (int b = 0; b < batch; b++) {
+            mean[0] = mean[1] = mean[2] = 0f;
+            for (int i = 0; i < elements; i++) {
+                mean[i % 3] += readInput(input, b * elements + i) / (elements / 3f);
+            }
+            for (int k = 0; k < CLASSES; k++) {
+                float logit = 4f * (WEIGHTS[k][0] * mean[0] + WEIGHTS[k][1] * mean[1] + WEIGHTS[k][2] * mean[2]);
+                writeOutput(out, b * CLASSES + k, logit);
+            }
+        }
+    }
+
+    @Override
+    public boolean resizeInput(int[] shape) {
+        inputSpec = new TensorSpec(inputSpec.dataType, shape.clone(), inputSpec.scale, inputSpec.zeroPoint);
+        outputSpec = new TensorSpec(outputSpec.dataType, new int[]{shape[0], CLASSES},
+                outputSpec.scale, outputSpec.zeroPoint);
+        return true;
+    }
+
+    private float readInput(ByteBuffer input, int i) {
+        switch (inputSpec.dataType) {
+            case UINT8: return ((input.get(i) & 0xff) - inputSpec.zeroPoint) * inputSpec.scale;
+            case INT8: return (input.get(i) - inputSpec.zeroPoint) * inputSpec.scale;
+            default: return input.getFloat(i * 4);
+        }
+    }
+
+    private void writeOutput(ByteBuffer out, int k, float value) {
+        switch (outputSpec.dataType) {
+            case UINT8:
+                out.put(k, (byte) Math.max(0, Math.min(255, Math.round(value / outputSpec.scale) + outputSpec.zeroPoint)));
+                break;
+            case INT8:
+                out.put(k, (byte) Math.max(-128, Math.min(127, Math.round(value / outputSpec.scale) + outputSpec.zeroPoint)));
+                break;
+            default:
+                out.putFloat(k * 4, value);
+        }
+    }
+
+    @Override
+    public InferenceConfig getConfig() {
+        return InferenceConfig.cpu(1, false);
+    }
+
+    @Override
+    public TensorSpec getInputSpec() {
+        return inputSpec;
+    }
+
+    @Override
+    public TensorSpec getOutputSpec() {
+        return outputSpec;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.brbscan;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ModelRegistryTest {
+
+    private static CurrencyPack pack(String id, String manifest) throws Exception {
+        return CurrencyPack.load(id, new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    private static CurrencyPack simplePack(String id) throws Exception {
+        return pack(id, "model=" + id + ".tflite\nclasses=2\nclass.0.label=A\nclass.1.label=B\n");
+    }
+
+    /** Hands out fake-engine recognizers and remembers what it built. */
+    private static class FakeLoader implements ModelRegistry.Loader {
+        final List<String> loaded = new ArrayList<>();
+        final List<FakeInferenceEngine> engines = new ArrayList<>();
+
+        @Override
+        public Recognizer load(CurrencyPack pack) throws Exception {
+            loaded.add(pack.id);
+            FakeInferenceEngine engine = new FakeInferenceEngine(InferenceConfig.cpu(1, true), 0, 0f, 0f);
+            engines.add(engine);
+            return new Recognizer(engine, pack.loadFusionConfig(null));
+        }
+    }
+
+    @Test
+    public void shippedManifest_describesTheLegacyLabels() throws Exception {
+        CurrencyPack jod;
+        try (InputStream in = new FileInputStream("src/main/assets/packs/jod.properties")) {
+            jod = CurrencyPack.load("jod", in, null);
+        }
+        assertEquals(5, jod.numClasses());
+        assertEquals("عشرون دينار", jod.label(2));
+        assertEquals(jod.label(2), jod.speech(2));
+        assertArrayEquals(new long[]{0, 600, 400, 600}, jod.vibration(3));
+        assertNull(jod.vibration(4));
+        assertEquals("ar", jod.getLocale().getLanguage());
+        assertEquals("fusion.properties", jod.fusionPath);
+        assertTrue(jod.isBundled());
+    }
+
+    @Test
+    public void inlineFusionKeys_areUsedWithoutFusionFile() throws Exception {
+        CurrencyPack p = pack("x", "model=x.tflite\nclasses=3\nnone.class=2\n"
+                + "class.0.label=A\nclass.1.label=B\nclass.1.speech=Bee\nclass.2.label=-\n"
+                + "class.1.threshold=0.8\n");
+        FusionConfig config = p.loadFusionConfig(null);
+        assertEquals(2, config.getNoneClass());
+        assertEquals(0.8f, config.thresholds[1], 1e-6f);
+        assertEquals("Bee", p.speech(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingLabel_isRejected() throws Exception {
+        pack("x", "model=x.tflite\nclasses=2\nclass.0.label=A\n");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void declaredInputShape_mustMatchModel() throws Exception {
+        CurrencyPack p = pack("x", "model=x.tflite\ninput.shape=1,224,224,3\nclasses=1\nclass.0.label=A\n");
+        p.checkInputSpec(TensorSpec.float32(1, 4, 4, 3));
+    }
+
+    @Test
+    public void residentRecognizers_areBoundedLeastRecentlyUsedFirst() throws Exception {
+        FakeLoader loader = new FakeLoader();
+        ModelRegistry registry = new ModelRegistry(loader, 2);
+        for (String id : new String[]{"a", "b", "c"}) registry.register(simplePack(id));
+
+        registry.acquire("a");
+        registry.activate("a");
+        registry.acquire("b");
+        registry.activate("b");
+        assertEquals(2, registry.residentCount());
+
+        // Switching back is served from memory
+        registry.acquire("a");
+        registry.activate("a");
+        assertEquals(2, loader.loaded.size());
+
+        // "b" is now least recently used and goes when "c" arrives
+        registry.acquire("c");
+        assertEquals(3, registry.residentCount());
+        registry.activate("c");
+        assertEquals(2, registry.residentCount());
+        assertTrue(registry.isResident("a"));
+        assertFalse(registry.isResident("b"));
+        assertTrue(loader.engines.get(1).closed);
+        assertFalse(loader.engines.get(0).closed);
+        assertEquals("c", registry.getActiveId());
+    }
+
+    @Test
+    public void activePack_isNeverEvicted() throws Exception {
+        FakeLoader loader = new FakeLoader();
+        ModelRegistry registry = new ModelRegistry(loader, 1);
+        registry.register(simplePack("a"));
+        registry.register(simplePack("b"));
+
+        registry.acquire("a");
+        registry.activate("a");
+        registry.acquire("b");
+        // Both stay loaded until the switch completes
+        assertEquals(2, registry.residentCount());
+        registry.activate("b");
+        assertEquals(1, registry.residentCount());
+        assertTrue(registry.isResident("b"));
+    }
+
+    @Test
+    public void next_cyclesInRegistrationOrder() throws Exception {
+        ModelRegistry registry = new ModelRegistry(new FakeLoader(), 2);
+        registry.register(simplePack("a"));
+        registry.register(simplePack("b"));
+        assertEquals("b", registry.next("a").id);
+        assertEquals("a", registry.next("b").id);
+    }
+
+    @Test
+    public void close_releasesEverythingAndRejectsLateLoads() throws Exception {
+        FakeLoader loader = new FakeLoader();
+        ModelRegistry registry = new ModelRegistry(loader, 2);
+        registry.register(simplePack("a"));
+        registry.acquire("a");
+        registry.close();
+        assertTrue(loader.engines.get(0).closed);
+        assertEquals(0, registry.residentCount());
+        try {
+            registry.acquire("a");
+            fail("Closed registry loaded a model");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void reload_keepsTheReplacedRecognizerOpenUntilActivate() throws Exception {
+        FakeLoader loader = new FakeLoader();
+        ModelRegistry registry = new ModelRegistry(loader, 2);
+        registry.register(simplePack("a"));
+        Recognizer first = registry.acquire("a");
+        registry.activate("a");
+
+        Recognizer fresh = registry.reload("a");
+        assertNotSame(first, fresh);
+        assertSame(fresh, registry.acquire("a"));
+        assertEquals(1, registry.residentCount());
+        // The pipeline may still be running the old one
+        assertFalse(loader.engines.get(0).closed);
+
+        registry.activate("a");
+        assertTrue(loader.engines.get(0).closed);
+        assertFalse(loader.engines.get(1).closed);
+    }
+
+    @Test
+    public void release_freesSpareModels_orEverything_andReloadsOnAcquire() throws Exception {
+        FakeLoader loader = new FakeLoader();
+        ModelRegistry registry = new ModelRegistry(loader, 2);
+        registry.register(simplePack("a"));
+        registry.register(simplePack("b"));
+        registry.acquire("b");
+        registry.activate("b");
+        registry.acquire("a");
+        registry.activate("a");
+
+        assertEquals(1, registry.release(false));
+        assertTrue(registry.isResident("a"));
+        assertTrue(loader.engines.get(0).closed);
+
+        assertEquals(1, registry.release(true));
+        assertEquals(0, registry.residentCount());
+        assertTrue(loader.engines.get(1).closed);
+        // The active pack is remembered and comes back on the next acquire
+        assertEquals("a", registry.getActiveId());
+        registry.acquire("a");
+        registry.activate("a");
+        assertEquals(3, loader.loaded.size());
+    }
+
+    @Test
+    public void activate_keepsARecognizerAcquiredButNotYetActivated() throws Exception {
+        FakeLoader loader = new FakeLoader();
+        ModelRegistry registry = new ModelRegistry(loader, 1);
+        for (String id : new String[]{"a", "b", "c"}) registry.register(simplePack(id));
+        registry.acquire("a");
+        registry.activate("a");
+
+        // A fast a -> b -> c switch: c is loaded before b is installed, and the limit is
+        // still exceeded once the previous pack has gone
+        registry.acquire("b");
+        registry.acquire("c");
+        registry.activate("b");
+        assertFalse(registry.isResident("a"));
+        assertTrue(loader.engines.get(0).closed);
+        assertTrue(registry.isResident("c"));
+        assertFalse(loader.engines.get(2).closed);
+
+        registry.activate("c");
+        assertFalse(loader.engines.get(2).closed);
+        assertTrue(loader.engines.get(1).closed);
+        assertEquals(1, registry.residentCount());
+    }
+
+    @Test
+    public void release_keepsARecognizerAcquiredButNotYetActivated() throws Exception {
+        FakeLoader loader = new FakeLoader();
+        ModelRegistry registry = new ModelRegistry(loader, 2);
+        registry.register(simplePack("a"));
+        registry.register(simplePack("b"));
+        registry.acquire("a");
+        registry.activate("a");
+
+        // A switch to b is in flight when memory runs low
+        Recognizer b = registry.acquire("b");
+        assertEquals(0, registry.release(false));
+        // Only a is closed, even when everything may go
+        assertEquals(1, registry.release(true));
+        assertTrue(registry.isResident("b"));
+        assertFalse(loader.engines.get(1).closed);
+
+        registry.activate("b");
+        assertSame(b, registry.acquire("b"));
+        registry.abandon("b");
+        // A hand-out that is given up no longer protects its recognizer
+        registry.acquire("a");
+        registry.abandon("a");
+        assertEquals(1, registry.release(false));
+        assertTrue(loader.engines.get(2).closed);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.brbscan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.*;
+
+public class MultiCropTest {
+
+    private static final int SIZE = 16;
+    private static final int RED = 0;
+
+    private FusionConfig fusionConfig;
+
+    @Before
+    public void loadShippedConfig() throws Exception {
+        try (InputStream in = new FileInputStream("src/main/assets/fusion.properties")) {
+            fusionConfig = FusionConfig.load(in, LinearFixtureModel.CLASSES);
+        }
+    }
+
+    private static YuvFrame frameOf(SyntheticYuvFrame planes, int rotation) {
+        return new YuvFrame().set(planes.y, planes.yRowStride, 1, planes.u, planes.v,
+                planes.uvRowStride, planes.uvPixelStride, planes.width, planes.height, rotation, 0);
+    }
+
+    private static float[] single(YuvFrame frame, RegionOfInterest crop) {
+        TensorPreprocessor preprocessor = new TensorPreprocessor(SIZE);
+        InputEncoder input = preprocessor.newInput();
+        preprocessor.process(frame, input, crop);
+        FloatBuffer floats = input.getBuffer().asFloatBuffer();
+        float[] values = new float[floats.remaining()];
+        floats.get(values);
+        return values;
+    }
+
+    @Test
+    public void batchedCrops_matchSingleCropsInBatchOrder() {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.semiPlanar(64, 48, 8, 5);
+        RegionOfInterest roi = new RegionOfInterest().set(8, 4, 40, 36);
+        TensorPreprocessor batched = new TensorPreprocessor(TensorSpec.float32(4, SIZE, SIZE, 3));
+        assertEquals(4, batched.getBatch());
+        InputEncoder input = batched.newInput();
+        batched.process(frameOf(planes, 90), input, roi);
+        FloatBuffer floats = input.getBuffer().asFloatBuffer();
+        assertEquals(4 * SIZE * SIZE * 3, floats.remaining());
+
+        int side = Math.round(48 * 0.6f);
+        float[][] expected = {
+                single(frameOf(planes, 90), roi),
+                single(frameOf(planes, 180), roi),
+                single(frameOf(planes, 270), roi),
+                single(frameOf(planes, 90), new RegionOfInterest().set((64 - side) / 2, (48 - side) / 2,
+                        (64 - side) / 2 + side, (48 - side) / 2 + side)),
+        };
+        for (int b = 0; b < 4; b++) {
+            for (int i = 0; i < expected[b].length; i++) {
+                assertEquals("crop " + b + " element " + i, expected[b][i],
+                        floats.get(b * expected[b].length + i), 0f);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyCrops_areRejected() {
+        new TensorPreprocessor(TensorSpec.float32(5, SIZE, SIZE, 3));
+    }
+
+    @Test
+    public void recognizer_fusesTheCropThatShowsTheNote() {
+        // Grey frame with a red note in the centre, while the detected region is a grey corner
+        int w = 64;
+        int h = 48;
+        int[] pixels = new int[w * h];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                boolean centre = Math.abs(x - w / 2) < 12 && Math.abs(y - h / 2) < 12;
+                pixels[y * w + x] = centre ? 0xffe02020 : 0xffc8c8c8;
+            }
+        }
+        YuvFrame frame = ReplayFixture.fromArgb(pixels, w, h, 0);
+        RegionOfInterest corner = new RegionOfInterest().set(0, 0, 16, 16);
+
+        Recognizer single = new Recognizer(LinearFixtureModel.float32(SIZE), fusionConfig);
+        TensorPreprocessor singlePre = single.newPreprocessor();
+        InputEncoder singleInput = singlePre.newInput();
+        singlePre.process(frame, singleInput, corner);
+        single.recognize(singleInput.getBuffer());
+        assertEquals(ResultFuser.NO_DECISION, single.recognize(singleInput.getBuffer()));
+
+        Recognizer multi = new Recognizer(LinearFixtureModel.float32(SIZE), fusionConfig);
+        multi.setCrops(4);
+        TensorPreprocessor multiPre = multi.newPreprocessor();
+        assertEquals(4, multiPre.getBatch());
+        InputEncoder multiInput = multiPre.newInput();
+        multiPre.process(frame, multiInput, corner);
+        multi.recognize(multiInput.getBuffer());
+        assertEquals(RED, multi.recognize(multiInput.getBuffer()));
+        assertEquals(3, multi.getLastCrop());
+        assertEquals(LinearFixtureModel.CLASSES, multi.getLastLogits().length);
+    }
+
+    @Test
+    public void enginesThatCannotResize_keepSingleCrop() {
+        FakeInferenceEngine engine = new FakeInferenceEngine(InferenceConfig.cpu(1, true), 0,
+                0f, 0f, 0f, 0f, 0f);
+        Recognizer recognizer = new Recognizer(engine, fusionConfig);
+        assertFalse(recognizer.setCrops(4));
+        assertEquals(1, recognizer.getCrops());
+        assertEquals(1, recognizer.newPreprocessor().getBatch());
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.brbscan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OutputSchedulerTest {
+
+    private static final long MS = 1_000_000L;
+
+    /** Records what was said; speech only ends when the test says so. */
+    private static class FakeSpeaker implements OutputScheduler.Speaker {
+        final List<String> spoken = new ArrayList<>();
+        final List<String> ids = new ArrayList<>();
+        int stops;
+        boolean accept = true;
+        boolean unavailable;
+
+        @Override
+        public boolean speak(String text, String utteranceId) {
+            if (!accept) return false;
+            spoken.add(text);
+            ids.add(utteranceId);
+            return true;
+        }
+
+        @Override
+        public boolean isUnavailable() {
+            return unavailable;
+        }
+
+        @Override
+        public void stop() {
+            stops++;
+        }
+
+        String lastId() {
+            return ids.get(ids.size() - 1);
+        }
+    }
+
+    private CurrencyPack pack;
+    private FakeSpeaker speaker;
+    private List<long[]> vibrations;
+    private ScanMetrics metrics;
+    private OutputScheduler scheduler;
+    private final ScanResult result = new ScanResult();
+
+    @Before
+    public void setUp() throws Exception {
+        pack = CurrencyPack.load("test", new ByteArrayInputStream(("name=Test\nmodel=m.tflite\nclasses=3\n"
+                + "class.0.label=One\nclass.0.vibration=0,100\n"
+                + "class.1.label=Five\nclass.1.vibration=0,100,100,100\n"
+                + "class.2.label=Ten\n").getBytes(StandardCharsets.UTF_8)), null);
+        speaker = new FakeSpeaker();
+        vibrations = new ArrayList<>();
+        metrics = new ScanMetrics();
+        scheduler = new OutputScheduler(speaker, vibrations::add, metrics);
+    }
+
+    private boolean decide(int classId, long nowNanos) {
+        result.update(pack, classId, 0.9f, nowNanos);
+        return scheduler.onResult(result);
+    }
+
+    private void finishSpeech(long nowNanos) {
+        scheduler.onSpeechDone(speaker.lastId());
+        scheduler.pump(nowNanos);
+    }
+
+    @Test
+    public void noteHeldInView_isAnnouncedOnce() {
+        assertTrue(decide(0, 0));
+        scheduler.pump(0);
+        for (int i = 1; i < 30; i++) assertFalse(decide(0, i * 33 * MS));
+        finishSpeech(2000 * MS);
+        assertEquals(1, speaker.spoken.size());
+        assertEquals("One", speaker.spoken.get(0));
+        assertEquals(1, vibrations.size());
+    }
+
+    @Test
+    public void notesArrivingWhileSpeaking_areQueuedNotDropped() {
+        decide(0, 0);
+        scheduler.pump(0);
+        decide(ScanResult.NOTHING, 100 * MS);
+        decide(1, 200 * MS);
+        decide(ScanResult.NOTHING, 300 * MS);
+        decide(2, 400 * MS);
+        scheduler.pump(400 * MS);
+        assertEquals(1, speaker.spoken.size());
+        assertEquals(2, scheduler.queuedCount());
+
+        finishSpeech(900 * MS);
+        finishSpeech(1400 * MS);
+        finishSpeech(1900 * MS);
+        assertEquals(java.util.Arrays.asList("One", "Five", "Ten"), speaker.spoken);
+        assertFalse(scheduler.isSpeaking());
+        // "Ten" has no vibration pattern, which the haptics side ignores
+        assertEquals(3, vibrations.size());
+        assertNull(vibrations.get(2));
+    }
+
+    @Test
+    public void flickeringNote_isCoalesced_butARealSecondNoteIsNot() {
+        decide(1, 0);
+        scheduler.pump(0);
+        // The fuser briefly loses the same note
+        decide(ScanResult.NOTHING, 100 * MS);
+        assertFalse(decide(1, 200 * MS));
+        assertEquals(1, metrics.get(ScanMetrics.Counter.ANNOUNCEMENTS_COALESCED));
+        finishSpeech(700 * MS);
+
+        // Another five after a real gap, as when counting a stack
+        decide(ScanResult.NOTHING, 900 * MS);
+        assertTrue(decide(1, 1500 * MS));
+        scheduler.pump(1500 * MS);
+        assertEquals(java.util.Arrays.asList("Five", "Five"), speaker.spoken);
+    }
+
+    @Test
+    public void queuedDuplicates_collapseIntoOneAnnouncement() {
+        decide(0, 0);
+        scheduler.pump(0);
+        decide(2, 100 * MS);
+        decide(1, 200 * MS);
+        assertFalse(decide(2, 300 * MS));
+        assertEquals(2, scheduler.queuedCount());
+    }
+
+    @Test
+    public void note_preemptsPackAnnouncement() {
+        assertTrue(scheduler.offerPack(pack, 0));
+        scheduler.pump(0);
+        assertEquals("Test", speaker.spoken.get(0));
+
+        decide(1, 100 * MS);
+        scheduler.pump(100 * MS);
+        assertEquals(1, speaker.stops);
+        assertEquals("Five", speaker.spoken.get(1));
+        assertEquals(1, metrics.get(ScanMetrics.Counter.ANNOUNCEMENTS_PREEMPTED));
+        // A late callback for the interrupted pack name changes nothing
+        assertFalse(scheduler.onSpeechDone(speaker.ids.get(0)));
+        assertTrue(scheduler.isSpeaking());
+    }
+
+    @Test
+    public void lateCallbackForATimedOutUtterance_doesNotEndTheNextOne() {
+        scheduler.maxUtteranceNanos = 1000 * MS;
+        decide(0, 0);
+        scheduler.pump(0);
+        // No callback came for "One"; "Five" then reuses its pooled entry
+        scheduler.pump(1500 * MS);
+        assertFalse(scheduler.isSpeaking());
+        decide(ScanResult.NOTHING, 1600 * MS);
+        decide(1, 1700 * MS);
+        scheduler.pump(1700 * MS);
+        assertEquals(java.util.Arrays.asList("One", "Five"), speaker.spoken);
+        assertFalse(speaker.ids.get(0).equals(speaker.ids.get(1)));
+
+        assertFalse(scheduler.onSpeechDone(speaker.ids.get(0)));
+        assertTrue(scheduler.isSpeaking());
+    }
+
+    @Test
+    public void notesGoBeforeStalePackNames() {
+        decide(0, 0);
+        scheduler.pump(0);
+        scheduler.offerPack(pack, 10 * MS);
+        decide(ScanResult.NOTHING, 20 * MS);
+        decide(2, 30 * MS);
+        finishSpeech(500 * MS);
+        assertEquals("Ten", speaker.spoken.get(1));
+        // The pack name waited past its deadline and is dropped
+        finishSpeech(5000 * MS);
+        assertEquals(2, speaker.spoken.size());
+        assertFalse(scheduler.isSpeaking());
+    }
+
+    @Test
+    public void decisionToSpeechLatency_isRecordedAtSpeechStart() {
+        decide(0, 10 * MS);
+        scheduler.pump(12 * MS);
+        scheduler.onSpeechStart(speaker.lastId(), 40 * MS);
+        ScanMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.count(ScanMetrics.Stage.DECISION_TO_SPEECH));
+        assertEquals(30 * MS, snapshot.meanNanos(ScanMetrics.Stage.DECISION_TO_SPEECH), 2 * MS);
+        assertEquals(1, snapshot.counter(ScanMetrics.Counter.ANNOUNCEMENTS));
+    }
+
+    @Test
+    public void refusedSpeech_keepsItsPlace_untilTheEngineAccepts() {
+        // The engine is still starting up
+        speaker.accept = false;
+        decide(0, 0);
+        scheduler.pump(0);
+        decide(ScanResult.NOTHING, 100 * MS);
+        decide(1, 200 * MS);
+        scheduler.pump(200 * MS);
+        assertFalse(scheduler.isSpeaking());
+        assertEquals(2, scheduler.queuedCount());
+        // Tried twice, vibrated once
+        assertEquals(1, vibrations.size());
+
+        speaker.accept = true;
+        scheduler.pump(300 * MS);
+        finishSpeech(800 * MS);
+        assertEquals(java.util.Arrays.asList("One", "Five"), speaker.spoken);
+        assertEquals(2, vibrations.size());
+    }
+
+    @Test
+    public void failedEngine_onlyVibrates() {
+        speaker.unavailable = true;
+        decide(0, 0);
+        decide(ScanResult.NOTHING, 100 * MS);
+        decide(1, 200 * MS);
+        scheduler.pump(200 * MS);
+        assertFalse(scheduler.isSpeaking());
+        assertEquals(0, scheduler.queuedCount());
+        assertTrue(speaker.spoken.isEmpty());
+        assertEquals(2, vibrations.size());
+    }
+
+    @Test
+    public void silentSpeech_doesNotStallTheQueue() {
+        decide(1, 200 * MS);
+        scheduler.pump(200 * MS);
+        decide(ScanResult.NOTHING, 300 * MS);
+        decide(2, 400 * MS);
+        // No completion callback ever arrives for "Five"
+        scheduler.pump(200 * MS + OutputScheduler.DEFAULT_MAX_UTTERANCE_NANOS + 1);
+        assertEquals(java.util.Arrays.asList("Five", "Ten"), speaker.spoken);
+    }
+
+    @Test
+    public void clear_dropsQueueAndStopsSpeech() {
+        decide(0, 0);
+        scheduler.pump(0);
+        decide(ScanResult.NOTHING, 100 * MS);
+        decide(1, 200 * MS);
+        scheduler.clear();
+        scheduler.pump(300 * MS);
+        assertEquals(1, speaker.stops);
+        assertEquals(0, scheduler.queuedCount());
+        assertFalse(scheduler.isSpeaking());
+    }
+
+    @Test
+    public void countedNotes_areNeverCoalesced() {
+        assertTrue(scheduler.offerCounted(pack, 1, 0));
+        scheduler.pump(0);
+        assertTrue(scheduler.offerCounted(pack, 1, 100 * MS));
+        assertTrue(scheduler.offerCounted(pack, 1, 200 * MS));
+        finishSpeech(500 * MS);
+        finishSpeech(1000 * MS);
+        assertEquals(java.util.Arrays.asList("Five", "Five", "Five"), speaker.spoken);
+        assertEquals(0, metrics.get(ScanMetrics.Counter.ANNOUNCEMENTS_COALESCED));
+    }
+
+    @Test
+    public void summary_goesNext_andReplacesAWaitingOne() {
+        decide(0, 0);
+        scheduler.pump(0);
+        scheduler.offerCounted(pack, 1, 100 * MS);
+        assertTrue(scheduler.offerSummary("Total 5", 200 * MS));
+        assertFalse(scheduler.offerSummary("Total 6", 300 * MS));
+        finishSpeech(500 * MS);
+        finishSpeech(1000 * MS);
+        assertEquals(java.util.Arrays.asList("One", "Total 6", "Five"), speaker.spoken);
+        // Only notes vibrate
+        assertEquals(2, vibrations.size());
+    }
+
+    @Test
+    public void steadyStream_allocatesNothing() {
+        java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        org.junit.Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        String[] spoken = new String[1];
+        OutputScheduler.Speaker silent = new OutputScheduler.Speaker() {
+            @Override
+            public boolean speak(String text, String utteranceId) {
+                spoken[0] = utteranceId;
+                return true;
+            }
+
+            @Override
+            public void stop() {
+            }
+        };
+        OutputScheduler quiet = new OutputScheduler(silent, pattern -> { }, metrics);
+        for (int round = 0; round < 2; round++) {
+            long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (int i = 0; i < 1000; i++) {
+                result.update(pack, i % 2 == 0 ? i / 2 % 3 : ScanResult.NOTHING, 0.9f, i * 700 * MS);
+                quiet.onResult(result);
+                quiet.pump(i * 700 * MS);
+                if (spoken[0] != null) quiet.onSpeechDone(spoken[0]);
+            }
+            long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+            // The first round warms up; the second must be allocation-free
+            if (round == 1) assertEquals(0, allocated);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.brbscan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static com.example.brbscan.PerformanceGovernor.Tier.*;
+
+public class PerformanceGovernorTest {
+
+    private static final long MS = 1_000_000L;
+    private static final long S = 1_000 * MS;
+
+    private final List<String> transitions = new ArrayList<>();
+    private PerformanceGovernor governor;
+    private long now;
+
+    @Before
+    public void setUp() {
+        governor = new PerformanceGovernor((from, to, reason) -> transitions.add(from + "->" + to), 0);
+    }
+
+    // Simulates inference at 10 Hz taking latencyMs each, for the given time
+    private void infer(long latencyMs, long durationMs) {
+        for (long t = 0; t < durationMs; t += 100) {
+            now += 100 * MS;
+            governor.onInference(latencyMs * MS, now);
+        }
+    }
+
+    @Test
+    public void coolPluggedInPhone_staysAtFullPerformance() {
+        governor.setBattery(80, true, now);
+        infer(40, 60_000);
+        assertEquals(FULL, governor.getTier());
+        assertTrue(transitions.isEmpty());
+        assertEquals(50 * MS, FULL.minIntervalNanos);
+        assertTrue(FULL.torch);
+    }
+
+    @Test
+    public void thermalPressure_stepsUpAtOnce_andDownOneTierPerDwell() {
+        governor.setThermalStatus(3, now);
+        assertEquals(SAVER, governor.getTier());
+        governor.setThermalStatus(4, now += S);
+        assertEquals(CRITICAL, governor.getTier());
+        assertFalse(CRITICAL.torch);
+        assertEquals(1, CRITICAL.maxThreads);
+
+        // Cooling down is only trusted after the dwell, and one tier at a time
+        governor.setThermalStatus(0, now += S);
+        assertEquals(CRITICAL, governor.getTier());
+        governor.evaluate(now += PerformanceGovernor.MIN_DWELL_NANOS);
+        assertEquals(SAVER, governor.getTier());
+        governor.evaluate(now += S);
+        assertEquals(SAVER, governor.getTier());
+        governor.evaluate(now += PerformanceGovernor.MIN_DWELL_NANOS);
+        governor.evaluate(now += PerformanceGovernor.MIN_DWELL_NANOS);
+        assertEquals(FULL, governor.getTier());
+        assertEquals(Arrays.asList("FULL->SAVER", "SAVER->CRITICAL", "CRITICAL->SAVER", "SAVER->BALANCED",
+                "BALANCED->FULL"), transitions);
+    }
+
+    @Test
+    public void lowBattery_savesPower_unlessCharging() {
+        governor.setBattery(40, false, now);
+        assertEquals(FULL, governor.getTier());
+        governor.setPowerSave(true, now);
+        assertEquals(BALANCED, governor.getTier());
+        governor.setBattery(12, false, now);
+        assertEquals(SAVER, governor.getTier());
+        governor.setBattery(4, false, now);
+        assertEquals(CRITICAL, governor.getTier());
+
+        governor.setPowerSave(false, now);
+        governor.setBattery(4, true, now += PerformanceGovernor.MIN_DWELL_NANOS);
+        assertEquals(SAVER, governor.getTier());
+    }
+
+    @Test
+    public void throttledInference_stepsUpAfterTheHold() {
+        infer(40, 5_000);
+        // The CPU throttles: inference doubles
+        infer(80, 3_000);
+        assertEquals(FULL, governor.getTier());
+        infer(80, 4_000);
+        assertEquals(BALANCED, governor.getTier());
+        assertEquals(Arrays.asList("FULL->BALANCED"), transitions);
+    }
+
+    @Test
+    public void shortLatencySpikes_areIgnored() {
+        infer(40, 5_000);
+        for (int i = 0; i < 10; i++) {
+            infer(120, 1_000);
+            infer(40, 3_000);
+        }
+        assertEquals(FULL, governor.getTier());
+    }
+
+    @Test
+    public void recoveredLatency_stepsBackDown() {
+        infer(40, 5_000);
+        infer(80, 10_000);
+        assertEquals(BALANCED, governor.getTier());
+        // Steady at the new tier long enough to probe the one below
+        infer(60, 40_000);
+        assertEquals(FULL, governor.getTier());
+        assertEquals(Arrays.asList("FULL->BALANCED", "BALANCED->FULL"), transitions);
+    }
+
+    @Test
+    public void warmupInferences_afterATierChange_doNotCount() {
+        infer(40, 5_000);
+        governor.setThermalStatus(2, now);
+        assertEquals(BALANCED, governor.getTier());
+        // New threads warming up are slow; only settled latency sets the tier's baseline
+        for (int i = 0; i < PerformanceGovernor.WARMUP_INFERENCES; i++) {
+            governor.onInference(500 * MS, now += 100 * MS);
+        }
+        infer(45, 20_000);
+        assertEquals(BALANCED, governor.getTier());
+        // Had the warm-up counted, 45 ms would look like a recovery worth probing FULL again
+        infer(45, 20_000);
+        assertEquals(1, transitions.size());
+    }
+
+    @Test
+    public void powerSaveAtStartup_notifiesBeforeTheCallReturns() {
+        // The listener runs on the caller's thread, so everything it touches must exist
+        // before the first input is wired up
+        List<Thread> threads = new ArrayList<>();
+        PerformanceGovernor started = new PerformanceGovernor((from, to, reason) -> {
+            threads.add(Thread.currentThread());
+            transitions.add(from + "->" + to);
+        }, 0);
+        started.setPowerSave(true, 0);
+        assertEquals(Arrays.asList("FULL->BALANCED"), transitions);
+        assertEquals(Arrays.asList(Thread.currentThread()), threads);
+        assertEquals(BALANCED, started.getTier());
+    }
+}
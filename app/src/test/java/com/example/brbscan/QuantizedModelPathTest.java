@@ -0,0 +1,96 @@
+package com.example.brbscan;
+
+import org.junit.Test;
+import org.tensorflow.lite.DataType;
+
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class QuantizedModelPathTest {
+
+    private static final int SIZE = 24;
+    private static final int CLASSES = LinearFixtureModel.CLASSES;
+
+    private static int classify(InferenceEngine model, YuvFrame frame) {
+        TensorPreprocessor preprocessor = new TensorPreprocessor(model.getInputSpec());
+        OutputDecoder decoder = OutputDecoder.forSpec(model.getOutputSpec());
+        preprocessor.process(frame);
+        model.run(preprocessor.getInput(), decoder.getBuffer());
+        float[] logits = decoder.decode();
+        int best = 0;
+        for (int i = 1; i < logits.length; i++) {
+            if (logits[i] > logits[best]) best = i;
+        }
+        return best;
+    }
+
+    private static YuvFrame tintedFrame(int luma, int u, int v) {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.planar(48, 32, 0, luma * 31 + u);
+        // Keep some texture in luma but force the chroma tint
+        for (int i = 0; i < planes.u.capacity(); i++) {
+            planes.u.put(i, (byte) u);
+            planes.v.put(i, (byte) v);
+        }
+        for (int i = 0; i < planes.y.capacity(); i++) {
+            planes.y.put(i, (byte) (luma + ((planes.y.get(i) & 0xff) % 16) - 8));
+        }
+        return new YuvFrame().set(planes.y, planes.yRowStride, 1, planes.u, planes.v,
+                planes.uvRowStride, planes.uvPixelStride, planes.width, planes.height, 90, 0);
+    }
+
+    // The neutral tint is bright: mid grey leaves every logit near zero, a tie either path may break
+    private static final int[][] TINTS = {
+            {120, 100, 200}, {140, 80, 60}, {90, 210, 110}, {170, 60, 170}, {200, 128, 128}, {60, 140, 140},
+    };
+
+    private static void assertAgreesWithFloat(TensorSpec inputSpec, TensorSpec outputSpec) {
+        InferenceEngine floatModel = new LinearFixtureModel(
+                TensorSpec.float32(1, SIZE, SIZE, 3), TensorSpec.float32(1, CLASSES));
+        InferenceEngine quantModel = new LinearFixtureModel(inputSpec, outputSpec);
+        boolean[] seen = new boolean[CLASSES];
+        int distinct = 0;
+        for (int[] tint : TINTS) {
+            YuvFrame frame = tintedFrame(tint[0], tint[1], tint[2]);
+            int expected = classify(floatModel, frame);
+            assertEquals(inputSpec + " on tint " + tint[0] + "/" + tint[1] + "/" + tint[2],
+                    expected, classify(quantModel, frame));
+            if (!seen[expected]) {
+                seen[expected] = true;
+                distinct++;
+            }
+        }
+        // The fixture frames must exercise more than one label to make agreement meaningful
+        assertTrue(distinct >= 3);
+    }
+
+    @Test
+    public void uint8Model_agreesWithFloatModel() {
+        assertAgreesWithFloat(new TensorSpec(DataType.UINT8, new int[]{1, SIZE, SIZE, 3}, 1 / 127.5f, 128),
+                new TensorSpec(DataType.UINT8, new int[]{1, CLASSES}, 0.05f, 128));
+    }
+
+    @Test
+    public void int8Model_agreesWithFloatModel() {
+        assertAgreesWithFloat(new TensorSpec(DataType.INT8, new int[]{1, SIZE, SIZE, 3}, 1 / 128f, 0),
+                new TensorSpec(DataType.INT8, new int[]{1, CLASSES}, 0.05f, 0));
+    }
+
+    @Test
+    public void buffersAreSizedForTheTensorType() {
+        TensorSpec uint8 = new TensorSpec(DataType.UINT8, new int[]{1, SIZE, SIZE, 3}, 1 / 127.5f, 128);
+        assertEquals(SIZE * SIZE * 3, new TensorPreprocessor(uint8).getInput().capacity());
+        assertEquals(SIZE * SIZE * 3 * 4, new TensorPreprocessor(SIZE).getInput().capacity());
+        assertEquals(ByteOrder.nativeOrder(), new TensorPreprocessor(SIZE).getInput().order());
+    }
+
+    @Test
+    public void quantizedOutput_isDequantized() {
+        OutputDecoder decoder = OutputDecoder.forSpec(
+                new TensorSpec(DataType.UINT8, new int[]{1, 2}, 0.5f, 100));
+        decoder.getBuffer().put(0, (byte) 200).put(1, (byte) 90);
+        float[] values = decoder.decode();
+        assertEquals(50f, values[0], 1e-6f);
+        assertEquals(-5f, values[1], 1e-6f);
+    }
+}
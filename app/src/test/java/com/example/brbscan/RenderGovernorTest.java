@@ -0,0 +1,90 @@
+package com.example.brbscan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RenderGovernorTest {
+
+    private static final long VSYNC = 16_666_667L;
+
+    private RenderGovernor governor;
+    private float load;
+
+    @Before
+    public void setUp() {
+        governor = new RenderGovernor();
+        governor.setLoadSource(() -> load);
+        governor.setVisible(true);
+    }
+
+    // Calls back every vsync for the given time and returns how many frames were drawn
+    private int run(long startNanos, long durationNanos) {
+        int drawn = 0;
+        for (long t = startNanos; t < startNanos + durationNanos; t += VSYNC) {
+            if (governor.onFrame(t)) drawn++;
+        }
+        return drawn;
+    }
+
+    @Test
+    public void idleScanner_drawsEveryFrame() {
+        load = 0.1f;
+        assertEquals(RenderGovernor.FULL, governor.mode());
+        assertEquals(60, run(VSYNC, 1_000_000_000L));
+        assertEquals(0, governor.takeSkippedFrames());
+    }
+
+    @Test
+    public void busyPipeline_dropsToTheLowRate_andCountsSkippedFrames() {
+        run(VSYNC, 100_000_000L);
+        governor.takeSkippedFrames();
+        load = 0.6f;
+        assertEquals(RenderGovernor.LOW, governor.mode());
+        int drawn = run(7 * VSYNC, 1_000_000_000L);
+        assertEquals(RenderGovernor.LOW_FPS, drawn, 1);
+        assertEquals(60 - drawn, governor.takeSkippedFrames(), 2);
+    }
+
+    @Test
+    public void lowRate_asksToBeCalledBackWhenTheNextFrameIsDue() {
+        load = 0.6f;
+        assertTrue(governor.onFrame(VSYNC));
+        assertFalse(governor.onFrame(2 * VSYNC));
+        long delay = governor.getDelayMillis();
+        assertTrue(String.valueOf(delay), delay > 70 && delay < RenderGovernor.LOW_INTERVAL_NANOS / 1_000_000L);
+    }
+
+    @Test
+    public void saturationOrSevereHeat_freezes_andPollsSlowly() {
+        load = 0.9f;
+        assertEquals(RenderGovernor.FROZEN, governor.mode());
+        assertFalse(governor.onFrame(VSYNC));
+        assertEquals(RenderGovernor.POLL_INTERVAL_MILLIS, governor.getDelayMillis());
+
+        load = 0f;
+        governor.setThermalStatus(2);
+        assertEquals(RenderGovernor.LOW, governor.mode());
+        governor.setThermalStatus(3);
+        assertEquals(RenderGovernor.FROZEN, governor.mode());
+        governor.setThermalStatus(0);
+        assertTrue(governor.onFrame(2 * VSYNC));
+    }
+
+    @Test
+    public void hiddenOrPausedView_needsNoCallbacks_andSkipsNothing() {
+        run(VSYNC, 100_000_000L);
+        governor.setVisible(false);
+        assertFalse(governor.isActive());
+        assertEquals(RenderGovernor.FROZEN, governor.mode());
+        governor.setVisible(true);
+        governor.setRunning(false);
+        assertFalse(governor.isActive());
+        governor.setRunning(true);
+
+        // Time spent hidden is not reported as skipped frames
+        assertTrue(governor.onFrame(10_000_000_000L));
+        assertEquals(0, governor.takeSkippedFrames());
+    }
+}
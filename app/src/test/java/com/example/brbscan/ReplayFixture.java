@@ -0,0 +1,140 @@
+package com.example.brbscan;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recorded frame with its expected class, loaded from a fixture directory.
+ *
+ * <p>The directory holds a {@code manifest.csv} with one frame per line ({@code #} starts a
+ * comment). Raw YUV_420_888 dumps carry their stride metadata in the manifest:
+ * <pre>frame_001.yuv,label,width,height,yRowStride,uvRowStride,uvPixelStride,rotation</pre>
+ * where the file is the Y plane ({@code yRowStride * height} bytes) followed by the U and V
+ * planes ({@code uvRowStride * ceil(height / 2)} bytes each). Still images only need
+ * <pre>note.png,label[,rotation]</pre>
+ * and are converted to planar YUV so they take the same path as camera frames.
+ */
+class ReplayFixture {
+    final String name;
+    final int label;
+    final YuvFrame frame;
+
+    ReplayFixture(String name, int label, YuvFrame frame) {
+        this.name = name;
+        this.label = label;
+        this.frame = frame;
+    }
+
+    static List<ReplayFixture> loadDirectory(File dir) throws IOException {
+        List<ReplayFixture> fixtures = new ArrayList<>();
+        File manifest = new File(dir, "manifest.csv");
+        try (BufferedReader reader = Files.newBufferedReader(manifest.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] f = line.split("\\s*,\\s*");
+                File file = new File(dir, f[0]);
+                int label = Integer.parseInt(f[1]);
+                if (f[0].endsWith(".yuv")) {
+                    fixtures.add(new ReplayFixture(f[0], label, readYuvDump(file,
+                            Integer.parseInt(f[2]), Integer.parseInt(f[3]), Integer.parseInt(f[4]),
+                            Integer.parseInt(f[5]), Integer.parseInt(f[6]), Integer.parseInt(f[7]))));
+                } else {
+                    int rotation = f.length > 2 ? Integer.parseInt(f[2]) : 0;
+                    fixtures.add(new ReplayFixture(f[0], label, readImage(file, rotation)));
+                }
+            }
+        }
+        return fixtures;
+    }
+
+    static YuvFrame readYuvDump(File file, int width, int height, int yRowStride,
+                                int uvRowStride, int uvPixelStride, int rotation) throws IOException {
+        byte[] data = Files.readAllBytes(file.toPath());
+        int ySize = yRowStride * height;
+        int uvSize = uvRowStride * ((height + 1) / 2);
+        if (data.length < ySize + 2 * uvSize) {
+            throw new IOException(file + " is shorter than its stride metadata implies");
+        }
+        return new YuvFrame().set(slice(data, 0, ySize), yRowStride, 1,
+                slice(data, ySize, uvSize), slice(data, ySize + uvSize, uvSize),
+                uvRowStride, uvPixelStride, width, height, rotation, 0);
+    }
+
+    static void writeYuvDump(File file, YuvFrame frame) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            writePlane(out, frame.y, frame.yRowStride * frame.height);
+            int uvSize = frame.uvRowStride * ((frame.height + 1) / 2);
+            writePlane(out, frame.u, uvSize);
+            writePlane(out, frame.v, uvSize);
+        }
+    }
+
+    /** Converts packed ARGB pixels into a planar YUV 4:2:0 frame (BT.601 full range). */
+    static YuvFrame fromArgb(int[] argb, int width, int height, int rotation) {
+        int cw = (width + 1) / 2;
+        int ch = (height + 1) / 2;
+        ByteBuffer y = ByteBuffer.allocateDirect(width * height);
+        ByteBuffer u = ByteBuffer.allocateDirect(cw * ch);
+        ByteBuffer v = ByteBuffer.allocateDirect(cw * ch);
+        for (int py = 0; py < height; py++) {
+            for (int px = 0; px < width; px++) {
+                int p = argb[py * width + px];
+                int r = (p >> 16) & 0xff, g = (p >> 8) & 0xff, b = p & 0xff;
+                y.put(py * width + px, (byte) clamp(Math.round(0.299f * r + 0.587f * g + 0.114f * b)));
+                if ((px & 1) == 0 && (py & 1) == 0) {
+                    int ci = (py / 2) * cw + px / 2;
+                    u.put(ci, (byte) clamp(Math.round(128 - 0.168736f * r - 0.331264f * g + 0.5f * b)));
+                    v.put(ci, (byte) clamp(Math.round(128 + 0.5f * r - 0.418688f * g - 0.081312f * b)));
+                }
+            }
+        }
+        return new YuvFrame().set(y, width, 1, u, v, cw, 1, width, height, rotation, 0);
+    }
+
+    // Android's bootclasspath has no javax.imageio, so it is reached reflectively on the host JVM
+    private static YuvFrame readImage(File file, int rotation) throws IOException {
+        try {
+            Object image = Class.forName("javax.imageio.ImageIO").getMethod("read", File.class).invoke(null, file);
+            if (image == null) throw new IOException("Unsupported image " + file);
+            Class<?> type = image.getClass();
+            int width = (Integer) type.getMethod("getWidth").invoke(image);
+            int height = (Integer) type.getMethod("getHeight").invoke(image);
+            int[] argb = new int[width * height];
+            Method getRgb = type.getMethod("getRGB", int.class, int.class, int.class, int.class,
+                    int[].class, int.class, int.class);
+            getRgb.invoke(image, 0, 0, width, height, argb, 0, width);
+            return fromArgb(argb, width, height, rotation);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Image decoding needs javax.imageio on the host JVM", e);
+        }
+    }
+
+    private static ByteBuffer slice(byte[] data, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+        buffer.put(data, offset, length).rewind();
+        return buffer;
+    }
+
+    private static void writePlane(OutputStream out, ByteBuffer plane, int size) throws IOException {
+        byte[] bytes = new byte[size];
+        ByteBuffer source = plane.duplicate();
+        source.rewind();
+        source.get(bytes, 0, Math.min(size, source.remaining()));
+        out.write(bytes);
+    }
+
+    private static int clamp(int c) {
+        return Math.min(255, Math.max(0, c));
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.brbscan;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Feeds recorded frames through the same region detection, preprocessing, inference and
+ * fusion code the camera pipeline uses and measures each stage. Each fixture is replayed as if
+ * the note were held in view for {@code framesPerFixture} frames, with fusion reset between
+ * fixtures. Frames without a note candidate are fused as empty, as on the device. The
+ * {@link FrameGate} is not replayed: fixtures are still frames with no motion between them.
+ *
+ * <p>Fixtures that already are model inputs, such as diagnostics thumbnails, skip region
+ * detection so they are not cropped a second time.
+ *
+ * <p>Any {@link InferenceEngine} works; a {@link TfliteInferenceEngine} needs a TFLite
+ * native runtime built for the host.
+ */
+class ReplayHarness {
+
+    private final Recognizer recognizer;
+    private final TensorPreprocessor preprocessor;
+    private final InputEncoder input;
+    // Null when fixtures are already cropped to the note
+    private final RoiDetector roiDetector;
+    private final int noneClass;
+    private final AllocationCounter allocations = new AllocationCounter();
+    private final ScanResult result = new ScanResult();
+
+    ReplayHarness(Recognizer recognizer, int noneClass) {
+        this(recognizer, noneClass, true);
+    }
+
+    ReplayHarness(Recognizer recognizer, int noneClass, boolean detectRegions) {
+        this.recognizer = recognizer;
+        this.noneClass = noneClass;
+        roiDetector = detectRegions ? new RoiDetector() : null;
+        preprocessor = recognizer.newPreprocessor();
+        input = preprocessor.newInput();
+    }
+
+    ReplayReport run(List<ReplayFixture> fixtures, int framesPerFixture, int warmupFrames) {
+        // Let the JIT settle before anything is measured
+        for (int i = 0; i < warmupFrames && !fixtures.isEmpty(); i++) {
+            YuvFrame frame = fixtures.get(i % fixtures.size()).frame;
+            RegionOfInterest roi = roiDetector != null ? roiDetector.detect(frame) : null;
+            if (roi != null && !roi.isFound()) continue;
+            preprocessor.process(frame, input, roi);
+            recognizer.recognize(input.getBuffer());
+        }
+
+        ReplayReport report = new ReplayReport(fixtures.size() * framesPerFixture, recognizer.numClasses());
+        long wallStart = System.nanoTime();
+
+        for (ReplayFixture fixture : fixtures) {
+            recognizer.reset();
+            boolean decided = false;
+            for (int r = 0; r < framesPerFixture; r++) {
+                long allocStart = allocations.current();
+                long start = System.nanoTime();
+                RegionOfInterest roi = roiDetector != null ? roiDetector.detect(fixture.frame) : null;
+                long detected = System.nanoTime();
+                boolean candidate = roi == null || roi.isFound();
+                if (candidate) preprocessor.process(fixture.frame, input, roi);
+                long preprocessed = System.nanoTime();
+                int decision = candidate ? recognizer.recognize(input.getBuffer()) : recognizer.recognizeEmpty();
+                // Same hand-off the app performs before the UI maps IDs to strings
+                result.update(null, decision, recognizer.getConfidence(), preprocessed);
+                long end = System.nanoTime();
+                long allocEnd = allocations.current();
+
+                int frame = report.frames++;
+                report.stageNanos[ReplayReport.ROI][frame] = detected - start;
+                report.stageNanos[ReplayReport.PREPROCESS][frame] = preprocessed - detected;
+                report.stageNanos[ReplayReport.INFERENCE][frame] = recognizer.getLastInferenceNanos();
+                report.stageNanos[ReplayReport.POSTPROCESS][frame] = recognizer.getLastPostprocessNanos();
+                report.stageNanos[ReplayReport.TOTAL][frame] = end - start;
+                report.allocatedBytes[frame] = allocStart < 0 ? -1
+                        : Math.max(0, allocEnd - allocStart - allocations.overhead);
+
+                int predicted = decision == ResultFuser.NO_DECISION ? noneClass : decision;
+                report.confusion[fixture.label][predicted]++;
+                if (!decided && decision != ResultFuser.NO_DECISION) {
+                    decided = true;
+                    report.framesToDecision += r + 1;
+                    report.decidedFixtures++;
+                }
+            }
+        }
+
+        report.wallNanos = System.nanoTime() - wallStart;
+        return report;
+    }
+
+    /**
+     * Reads per-thread allocated bytes from the HotSpot management bean when available. The
+     * reflective read itself allocates, so its own cost is measured once and subtracted.
+     */
+    static class AllocationCounter {
+        private final Object bean;
+        private final Method allocatedBytes;
+        final long overhead;
+
+        AllocationCounter() {
+            Object found = null;
+            Method method = null;
+            try {
+                found = Class.forName("java.lang.management.ManagementFactory")
+                        .getMethod("getThreadMXBean").invoke(null);
+                method = Class.forName("com.sun.management.ThreadMXBean")
+                        .getMethod("getThreadAllocatedBytes", long.class);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                found = null;
+            }
+            bean = found;
+            allocatedBytes = method;
+
+            long calibrated = Long.MAX_VALUE;
+            for (int i = 0; i < 100 && bean != null; i++) {
+                long a = read();
+                long b = read();
+                calibrated = Math.min(calibrated, b - a);
+            }
+            overhead = bean == null ? 0 : calibrated;
+        }
+
+        /** Allocated bytes so far, net of the counter's own reads, or -1 if unsupported. */
+        long current() {
+            return bean == null ? -1 : read();
+        }
+
+        private long read() {
+            try {
+                return (Long) allocatedBytes.invoke(bean, Thread.currentThread().getId());
+            } catch (ReflectiveOperationException e) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.brbscan;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReplayHarnessTest {
+
+    private static final int NONE = 4;
+
+    private FusionConfig fusionConfig;
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        try (InputStream in = new FileInputStream("src/main/assets/fusion.properties")) {
+            fusionConfig = FusionConfig.load(in, LinearFixtureModel.CLASSES);
+        }
+        dir = Files.createTempDirectory("replay").toFile();
+        dir.deleteOnExit();
+    }
+
+    // A checkered "note" on a plain grey table, so the region detector finds it; the linear
+    // fixture model maps each tint to a distinct class
+    private static int[] note(int width, int height, int argb) {
+        int[] pixels = new int[width * height];
+        java.util.Arrays.fill(pixels, 0xff808080);
+        int darker = 0xff000000 | (argb >> 1 & 0x7f7f7f);
+        for (int y = height / 5; y < height - height / 5; y++) {
+            for (int x = width / 5; x < width - width / 5; x++) {
+                pixels[y * width + x] = (x / 3 + y / 3) % 2 == 0 ? argb : darker;
+            }
+        }
+        return pixels;
+    }
+
+    private void writeFixtures() throws Exception {
+        int w = 64;
+        int h = 48;
+        YuvFrame red = ReplayFixture.fromArgb(note(w, h, 0xffe02020), w, h, 90);
+        YuvFrame green = ReplayFixture.fromArgb(note(w, h, 0xff20e020), w, h, 90);
+        YuvFrame blue = ReplayFixture.fromArgb(note(w, h, 0xff2020e0), w, h, 0);
+        ReplayFixture.writeYuvDump(new File(dir, "red.yuv"), red);
+        ReplayFixture.writeYuvDump(new File(dir, "green.yuv"), green);
+        ReplayFixture.writeYuvDump(new File(dir, "blue.yuv"), blue);
+        try (PrintWriter out = new PrintWriter(new File(dir, "manifest.csv"), "UTF-8")) {
+            out.println("# file,label,width,height,yRowStride,uvRowStride,uvPixelStride,rotation");
+            out.println("red.yuv,0," + w + "," + h + "," + w + "," + (w / 2) + ",1,90");
+            out.println("green.yuv,1," + w + "," + h + "," + w + "," + (w / 2) + ",1,90");
+            out.println("blue.yuv,2," + w + "," + h + "," + w + "," + (w / 2) + ",1,0");
+        }
+    }
+
+    @Test
+    public void recordedYuvDumps_replayThroughThePipeline() throws Exception {
+        writeFixtures();
+        List<ReplayFixture> fixtures = ReplayFixture.loadDirectory(dir);
+        assertEquals(3, fixtures.size());
+
+        Recognizer recognizer = new Recognizer(LinearFixtureModel.float32(32), fusionConfig);
+        ReplayReport report = new ReplayHarness(recognizer, NONE).run(fixtures, 5, 10);
+
+        assertEquals(15, report.frames);
+        // The first frame of each fixture is undecided until fusion sees agreement
+        for (int label = 0; label < 3; label++) {
+            assertEquals(1, report.confusion[label][NONE]);
+            assertEquals(4, report.confusion[label][label]);
+        }
+        assertEquals(2.0, (double) report.framesToDecision / report.decidedFixtures, 1e-9);
+        assertTrue(report.framesPerSecond() > 0);
+        assertTrue(report.percentileNanos(ReplayReport.TOTAL, 99)
+                >= report.percentileNanos(ReplayReport.TOTAL, 50));
+        if (Boolean.getBoolean("brbscan.bench")) System.out.println(report);
+    }
+
+    @Test
+    public void frameWithoutANote_isFusedAsEmpty_unlessAlreadyCropped() {
+        int[] table = new int[64 * 48];
+        java.util.Arrays.fill(table, 0xffe02020);
+        List<ReplayFixture> fixtures = java.util.Collections.singletonList(
+                new ReplayFixture("plain", 0, ReplayFixture.fromArgb(table, 64, 48, 0)));
+
+        Recognizer recognizer = new Recognizer(LinearFixtureModel.float32(32), fusionConfig);
+        assertEquals(3, new ReplayHarness(recognizer, NONE).run(fixtures, 3, 0).confusion[0][NONE]);
+        assertEquals(2, new ReplayHarness(recognizer, NONE, false).run(fixtures, 3, 0).confusion[0][0]);
+    }
+
+    @Test
+    public void steadyStateReplay_allocatesNothingPerFrame() throws Exception {
+        writeFixtures();
+        List<ReplayFixture> fixtures = ReplayFixture.loadDirectory(dir);
+        Recognizer recognizer = new Recognizer(LinearFixtureModel.float32(32), fusionConfig);
+        ReplayReport report = new ReplayHarness(recognizer, NONE).run(fixtures, 20, 200);
+
+        Assume.assumeTrue("thread allocation counter unavailable", report.allocatedBytesPerFrame() >= 0);
+        assertEquals(0.0, report.allocatedBytesPerFrame(), 0.0);
+    }
+
+    @Test
+    public void warmUp_runsModelWithoutTouchingFusion() {
+        FakeInferenceEngine engine = new FakeInferenceEngine(InferenceConfig.cpu(1, true), 0,
+                0f, 6f, 0f, 0f, 0f);
+        Recognizer recognizer = new Recognizer(engine, fusionConfig);
+        recognizer.warmUp();
+        recognizer.warmUp();
+        assertEquals(2, engine.runs);
+        assertEquals(ResultFuser.NO_DECISION, recognizer.getTopClass());
+
+        // Agreement still needs two real frames, so warm-up runs were not fused
+        ByteBuffer input = recognizer.newPreprocessor().getInput();
+        assertEquals(ResultFuser.NO_DECISION, recognizer.recognize(input));
+        assertEquals(1, recognizer.recognize(input));
+    }
+
+    @Test
+    public void yuvDump_roundTrips() throws Exception {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.semiPlanar(20, 10, 4, 9);
+        YuvFrame original = new YuvFrame().set(planes.y, planes.yRowStride, 1, planes.u, planes.v,
+                planes.uvRowStride, planes.uvPixelStride, planes.width, planes.height, 180, 0);
+        File file = new File(dir, "frame.yuv");
+        ReplayFixture.writeYuvDump(file, original);
+
+        YuvFrame loaded = ReplayFixture.readYuvDump(file, 20, 10, planes.yRowStride,
+                planes.uvRowStride, planes.uvPixelStride, 180);
+        TensorPreprocessor a = new TensorPreprocessor(8);
+        TensorPreprocessor b = new TensorPreprocessor(8);
+        a.process(original);
+        b.process(loaded);
+        assertEquals(a.getInput(), b.getInput());
+    }
+
+    /**
+     * Replays a real fixture directory against a real model:
+     * {@code -Dbrbscan.replay.dir=<fixtures> -Dbrbscan.replay.model=<model.tflite>}.
+     * Needs a TFLite native runtime for the host on java.library.path.
+     */
+    @Test
+    public void replayExternalFixtures() throws Exception {
+        String fixtureDir = System.getProperty("brbscan.replay.dir");
+        String modelPath = System.getProperty("brbscan.replay.model");
+        Assume.assumeTrue(fixtureDir != null && modelPath != null);
+
+        try (RandomAccessFile file = new RandomAccessFile(modelPath, "r")) {
+            TfliteInferenceEngine engine = new TfliteInferenceEngine(
+                    file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()),
+                    InferenceConfig.cpu(Runtime.getRuntime().availableProcessors(), true));
+            try {
+                Recognizer recognizer = new Recognizer(engine, FusionConfig.load(
+                        new FileInputStream("src/main/assets/fusion.properties"), engine.getOutputSpec().numElements()));
+                ReplayReport report = new ReplayHarness(recognizer, fusionConfig.getNoneClass())
+                        .run(ReplayFixture.loadDirectory(new File(fixtureDir)), 5, 20);
+                System.out.println(report);
+            } finally {
+                engine.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.brbscan;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Results of a replay run: per-stage latency percentiles, allocation per frame, throughput
+ * and the confusion matrix of per-frame decisions against fixture labels.
+ */
+class ReplayReport {
+
+    static final String[] STAGES = {"roi", "preprocess", "inference", "postprocess", "total"};
+    static final int ROI = 0;
+    static final int PREPROCESS = 1;
+    static final int INFERENCE = 2;
+    static final int POSTPROCESS = 3;
+    static final int TOTAL = 4;
+
+    final long[][] stageNanos;
+    final long[] allocatedBytes;
+    final int[][] confusion;
+    int frames = 0;
+    long wallNanos = 0;
+    long framesToDecision = 0;
+    int decidedFixtures = 0;
+
+    ReplayReport(int capacity, int numClasses) {
+        stageNanos = new long[STAGES.length][capacity];
+        allocatedBytes = new long[capacity];
+        confusion = new int[numClasses][numClasses];
+    }
+
+    long percentileNanos(int stage, double percentile) {
+        if (frames == 0) return 0;
+        long[] sorted = Arrays.copyOf(stageNanos[stage], frames);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * frames) - 1;
+        return sorted[Math.max(0, Math.min(frames - 1, index))];
+    }
+
+    /** Mean bytes allocated per frame, or -1 if the JVM does not report thread allocation. */
+    double allocatedBytesPerFrame() {
+        if (frames == 0 || allocatedBytes[0] < 0) return -1;
+        long sum = 0;
+        for (int i = 0; i < frames; i++) sum += allocatedBytes[i];
+        return (double) sum / frames;
+    }
+
+    double framesPerSecond() {
+        return wallNanos == 0 ? 0 : frames * 1e9 / wallNanos;
+    }
+
+    double accuracy() {
+        int correct = 0;
+        int total = 0;
+        for (int i = 0; i < confusion.length; i++) {
+            for (int j = 0; j < confusion.length; j++) {
+                total += confusion[i][j];
+                if (i == j) correct += confusion[i][j];
+            }
+        }
+        return total == 0 ? 0 : (double) correct / total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "frames=%d  fps=%.1f  alloc/frame=%.0f B  accuracy=%.3f%n",
+                frames, framesPerSecond(), allocatedBytesPerFrame(), accuracy()));
+        if (decidedFixtures > 0) {
+            sb.append(String.format(Locale.ROOT, "mean frames to decision=%.2f%n",
+                    (double) framesToDecision / decidedFixtures));
+        }
+        sb.append(String.format(Locale.ROOT, "%-12s %9s %9s %9s%n", "stage", "p50 ms", "p90 ms", "p99 ms"));
+        for (int s = 0; s < STAGES.length; s++) {
+            sb.append(String.format(Locale.ROOT, "%-12s %9.3f %9.3f %9.3f%n", STAGES[s],
+                    percentileNanos(s, 50) / 1e6, percentileNanos(s, 90) / 1e6, percentileNanos(s, 99) / 1e6));
+        }
+        sb.append("confusion (rows = expected, cols = predicted):\n");
+        for (int[] row : confusion) {
+            sb.append(Arrays.toString(row)).append('\n');
+        }
+        return sb.toString();
+    }
+}
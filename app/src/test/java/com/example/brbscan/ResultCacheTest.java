@@ -0,0 +1,203 @@
+package com.example.brbscan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class ResultCacheTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final long NOW = 10_000_000_000L;
+
+    private FusionConfig fusionConfig;
+    private final RegionOfInterest whole = new RegionOfInterest().setFull(WIDTH, HEIGHT);
+
+    @Before
+    public void loadShippedConfig() throws Exception {
+        try (InputStream in = new FileInputStream("src/main/assets/fusion.properties")) {
+            fusionConfig = FusionConfig.load(in, LinearFixtureModel.CLASSES);
+        }
+    }
+
+    // Blocky luma pattern with a brightness offset and uniform chroma; mirrored flips it left to right
+    private static YuvFrame scene(int offset, int u, int v, boolean mirrored) {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.flat(WIDTH, HEIGHT, 0);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int px = mirrored ? WIDTH - 1 - x : x;
+                planes.setLuma(x, y, 40 + offset + 50 * ((px / 7 + y / 5 * 2) % 3));
+            }
+        }
+        for (int i = 0; i < planes.u.capacity(); i++) {
+            planes.u.put(i, (byte) u);
+            planes.v.put(i, (byte) v);
+        }
+        return new YuvFrame().set(planes.y, planes.yRowStride, 1, planes.u, planes.v,
+                planes.uvRowStride, planes.uvPixelStride, WIDTH, HEIGHT, 90, 0);
+    }
+
+    private FrameSignature signature(YuvFrame frame) {
+        FrameSignature signature = new FrameSignature();
+        signature.compute(frame, whole);
+        return signature;
+    }
+
+    @Test
+    public void signature_ignoresExposureButNotLayoutOrColour() {
+        FrameSignature base = signature(scene(0, 128, 128, false));
+        assertTrue(base.isValid());
+        assertEquals(0, base.distance(signature(scene(0, 128, 128, false))));
+        assertEquals(0, base.distance(signature(scene(30, 128, 128, false))));
+        assertTrue(base.distance(signature(scene(0, 128, 128, true))) > ResultCache.DEFAULT_MAX_DISTANCE);
+
+        FrameSignature tinted = signature(scene(0, 100, 170, false));
+        assertEquals(0, base.distance(tinted));
+        assertEquals(128, base.meanU);
+        assertEquals(170, tinted.meanV);
+    }
+
+    @Test
+    public void lookup_returnsTheStoredLogitsForANearMatchOnly() {
+        ResultCache cache = new ResultCache(3);
+        float[] out = new float[3];
+        FrameSignature base = signature(scene(0, 128, 128, false));
+        assertFalse(cache.lookup(base, NOW, out));
+        cache.put(base, new float[]{1f, 2f, 3f}, 0, NOW);
+
+        assertTrue(cache.lookup(signature(scene(20, 128, 128, false)), NOW, out));
+        assertArrayEquals(new float[]{1f, 2f, 3f}, out, 0f);
+        assertFalse(cache.lookup(signature(scene(0, 128, 128, true)), NOW, out));
+        // Same layout in another colour is another note
+        assertFalse(cache.lookup(signature(scene(0, 100, 170, false)), NOW, out));
+        assertFalse(cache.lookup(new FrameSignature(), NOW, out));
+    }
+
+    @Test
+    public void closeHashes_withinTheDistanceLimit_match() {
+        ResultCache cache = new ResultCache(1);
+        FrameSignature stored = signature(scene(0, 128, 128, false));
+        cache.put(stored, new float[]{5f}, 0, NOW);
+        FrameSignature near = new FrameSignature();
+        near.copyFrom(stored);
+        near.hash ^= 0b1011L;
+        assertTrue(cache.lookup(near, NOW, new float[1]));
+        near.hash ^= 0b110000L;
+        assertFalse(cache.lookup(near, NOW, new float[1]));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntry_isEvicted() {
+        ResultCache cache = new ResultCache(2, 1);
+        FrameSignature a = signature(scene(0, 128, 128, false));
+        FrameSignature b = signature(scene(0, 128, 128, true));
+        FrameSignature c = signature(scene(0, 60, 200, false));
+        float[] out = new float[1];
+        cache.put(a, new float[]{1f}, 0, NOW);
+        cache.put(b, new float[]{2f}, 0, NOW);
+        assertTrue(cache.lookup(a, NOW, out));
+        cache.put(c, new float[]{3f}, 0, NOW);
+
+        assertEquals(2, cache.size());
+        assertFalse(cache.lookup(b, NOW, out));
+        assertTrue(cache.lookup(a, NOW, out));
+        assertEquals(1f, out[0], 0f);
+        assertTrue(cache.lookup(c, NOW, out));
+        assertEquals(3f, out[0], 0f);
+    }
+
+    @Test
+    public void oldEntries_areRefreshed() {
+        ResultCache cache = new ResultCache(2);
+        FrameSignature a = signature(scene(0, 128, 128, false));
+        cache.put(a, new float[]{1f, 1f}, 0, NOW);
+        assertTrue(cache.lookup(a, NOW + ResultCache.DEFAULT_MAX_AGE_NANOS, new float[2]));
+        assertFalse(cache.lookup(a, NOW + ResultCache.DEFAULT_MAX_AGE_NANOS + 1, new float[2]));
+        // Re-storing the same scene replaces its entry rather than adding one
+        cache.put(a, new float[]{2f, 2f}, 0, NOW + ResultCache.DEFAULT_MAX_AGE_NANOS + 1);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void recognizer_skipsTheModelOnAHit_andReportsIt() {
+        FakeInferenceEngine engine = new FakeInferenceEngine(InferenceConfig.cpu(1, true), 200_000,
+                4f, 0f, 0f, 0f, 0f);
+        Recognizer recognizer = new Recognizer(engine, fusionConfig);
+        recognizer.setResultCache(new ResultCache(recognizer.numClasses()));
+        ScanMetrics metrics = new ScanMetrics();
+        recognizer.setMetrics(metrics);
+        ByteBuffer input = InputEncoder.forSpec(engine.getInputSpec()).getBuffer();
+        FrameSignature held = signature(scene(0, 128, 128, false));
+
+        int first = recognizer.recognize(input, held);
+        int second = recognizer.recognize(input, held);
+        assertEquals(1, engine.runs);
+        assertEquals(0, recognizer.getLastInferenceNanos());
+        assertArrayEquals(new float[]{4f, 0f, 0f, 0f, 0f}, recognizer.getLastLogits(), 0f);
+        assertEquals(ResultFuser.NO_DECISION, first);
+        assertEquals(0, second);
+
+        recognizer.recognize(input, signature(scene(0, 128, 128, true)));
+        recognizer.recognize(input);
+        assertEquals(3, engine.runs);
+        assertEquals(1, metrics.get(ScanMetrics.Counter.CACHE_HITS));
+        assertEquals(2, metrics.get(ScanMetrics.Counter.CACHE_MISSES));
+        assertTrue(metrics.get(ScanMetrics.Counter.CACHE_SAVED_MICROS) >= 200);
+        assertEquals(1f / 3, metrics.snapshot().cacheHitRate(), 1e-6f);
+    }
+
+    @Test
+    public void pipeline_signsTheRegionTheModelReads() throws Exception {
+        TensorPreprocessor preprocessor = new TensorPreprocessor(8);
+        final FrameSignature seen = new FrameSignature();
+        final Object done = new Object();
+        FramePipeline pipeline = new FramePipeline(preprocessor, 3, new FramePipeline.FrameConsumer() {
+            @Override
+            public void onFrame(ByteBuffer input, long timestampNanos) {
+                fail("Signed frames use the three-argument callback");
+            }
+
+            @Override
+            public void onFrame(ByteBuffer input, FrameSignature signature, long timestampNanos) {
+                synchronized (done) {
+                    seen.copyFrom(signature);
+                    done.notifyAll();
+                }
+            }
+        });
+        pipeline.setSignatures(true);
+        pipeline.start();
+        YuvFrame frame = scene(0, 128, 128, false);
+        RegionOfInterest roi = new RegionOfInterest().set(8, 4, 40, 36);
+        roi.found = true;
+        pipeline.submit(frame, roi);
+        synchronized (done) {
+            long deadline = System.currentTimeMillis() + 2000;
+            while (!seen.isValid() && System.currentTimeMillis() < deadline) done.wait(100);
+        }
+        pipeline.stop();
+
+        FrameSignature expected = new FrameSignature();
+        expected.compute(frame, roi);
+        assertTrue(seen.isValid());
+        assertEquals(expected.hash, seen.hash);
+    }
+
+    @Test
+    public void batchedReadRegion_coversTheCentreCrop() {
+        TensorPreprocessor batched = new TensorPreprocessor(TensorSpec.float32(4, 8, 8, 3));
+        YuvFrame frame = scene(0, 128, 128, false);
+        RegionOfInterest out = new RegionOfInterest();
+        batched.readRegion(frame, new RegionOfInterest().set(0, 0, 16, 16), out);
+        int side = Math.round(HEIGHT * 0.6f);
+        assertEquals(0, out.left);
+        assertEquals(0, out.top);
+        assertEquals((WIDTH - side) / 2 + side, out.right);
+        assertEquals((HEIGHT - side) / 2 + side, out.bottom);
+    }
+}
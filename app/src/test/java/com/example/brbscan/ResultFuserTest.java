@@ -0,0 +1,144 @@
+package com.example.brbscan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class ResultFuserTest {
+
+    private static final int FIVE = 0;
+    private static final int TEN = 1;
+    private static final int TWENTY = 2;
+    private static final int FIFTY = 3;
+    private static final int NONE = 4;
+
+    private FusionConfig config;
+
+    @Before
+    public void loadShippedConfig() throws Exception {
+        // Unit tests run with the module directory as working directory
+        try (InputStream in = new FileInputStream("src/main/assets/fusion.properties")) {
+            config = FusionConfig.load(in, 5);
+        }
+    }
+
+    private static float[] logits(int peak, float margin) {
+        float[] values = new float[5];
+        values[peak] = margin;
+        return values;
+    }
+
+    /** Feeds a sequence and returns the index of the first frame that produced a decision. */
+    private static int firstDecision(ResultFuser fuser, float[][] sequence, int expectedClass) {
+        for (int i = 0; i < sequence.length; i++) {
+            int decided = fuser.add(sequence[i]);
+            if (decided != ResultFuser.NO_DECISION) {
+                assertEquals(expectedClass, decided);
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void shippedConfig_mapsLegacyConstants() {
+        assertEquals(NONE, config.getNoneClass());
+        assertEquals(0.65f, config.thresholds[FIFTY], 1e-6f);
+        assertEquals(0.45f, config.thresholds[TEN], 1e-6f);
+        assertEquals(3, config.minAgreement[FIFTY]);
+        assertEquals(0.9f, config.weights[FIFTY], 1e-6f);
+        assertEquals(1.1f, config.weights[TWENTY], 1e-6f);
+    }
+
+    @Test
+    public void steadyConfidentNote_isDecidedOnSecondFrame() {
+        ResultFuser fuser = new ResultFuser(config);
+        float[][] steady = {logits(TEN, 4f), logits(TEN, 4f), logits(TEN, 4f)};
+        assertEquals(1, firstDecision(fuser, steady, TEN));
+        assertTrue(fuser.getConfidence() > 0.9f);
+    }
+
+    @Test
+    public void fifty_needsThreeAgreeingFrames() {
+        ResultFuser fuser = new ResultFuser(config);
+        float[][] steady = {logits(FIFTY, 4f), logits(FIFTY, 4f), logits(FIFTY, 4f), logits(FIFTY, 4f)};
+        assertEquals(2, firstDecision(fuser, steady, FIFTY));
+    }
+
+    @Test
+    public void singleFrameFlicker_isNotAnnounced() {
+        ResultFuser fuser = new ResultFuser(config);
+        float[][] recorded = {
+                logits(NONE, 3f), logits(NONE, 3f), logits(FIVE, 5f), logits(NONE, 3f),
+                logits(NONE, 3f), logits(TWENTY, 5f), logits(NONE, 3f), logits(NONE, 3f),
+        };
+        for (float[] frame : recorded) {
+            assertEquals(ResultFuser.NO_DECISION, fuser.add(frame));
+        }
+    }
+
+    @Test
+    public void ambiguousFrames_stayBelowThreshold() {
+        ResultFuser fuser = new ResultFuser(config);
+        // Five and ten alternate with small margins: the aggregate never gets confident
+        float[] fiveish = {1.2f, 1.0f, 0.2f, 0.2f, 0.4f};
+        float[] tenish = {1.0f, 1.2f, 0.2f, 0.2f, 0.4f};
+        for (int i = 0; i < 10; i++) {
+            assertEquals(ResultFuser.NO_DECISION, fuser.add(i % 2 == 0 ? fiveish : tenish));
+        }
+        assertTrue(fuser.getConfidence() < 0.45f);
+    }
+
+    @Test
+    public void noteEnteringAfterEmptyFrames_isDecidedQuickly() {
+        ResultFuser fuser = new ResultFuser(config);
+        float[][] recorded = {
+                logits(NONE, 3f), logits(NONE, 3f), logits(NONE, 3f),
+                logits(TWENTY, 1.5f), logits(TWENTY, 3f), logits(TWENTY, 3f), logits(TWENTY, 3f),
+        };
+        int decidedAt = firstDecision(fuser, recorded, TWENTY);
+        assertTrue("decided at " + decidedAt, decidedAt >= 4 && decidedAt <= 5);
+    }
+
+    @Test
+    public void reset_clearsHistory() {
+        ResultFuser fuser = new ResultFuser(config);
+        fuser.add(logits(TEN, 4f));
+        fuser.reset();
+        // Only one frame since the reset, so agreement is not met yet
+        assertEquals(ResultFuser.NO_DECISION, fuser.add(logits(TEN, 4f)));
+        assertEquals(TEN, fuser.add(logits(TEN, 4f)));
+    }
+
+    @Test
+    public void windowMode_averagesRecentFrames() {
+        Properties p = new Properties();
+        p.setProperty("mode", "window");
+        p.setProperty("window", "4");
+        p.setProperty("none.class", "4");
+        p.setProperty("default.threshold", "0.6");
+        p.setProperty("default.min_agreement", "3");
+        ResultFuser fuser = new ResultFuser(FusionConfig.fromProperties(p, 5));
+
+        assertEquals(ResultFuser.NO_DECISION, fuser.add(logits(FIVE, 4f)));
+        assertEquals(ResultFuser.NO_DECISION, fuser.add(logits(NONE, 4f)));
+        assertEquals(ResultFuser.NO_DECISION, fuser.add(logits(FIVE, 4f)));
+        assertEquals(FIVE, fuser.add(logits(FIVE, 4f)));
+    }
+
+    @Test
+    public void emptyFrames_fadeOutEarlierDetection() {
+        ResultFuser fuser = new ResultFuser(config);
+        fuser.add(logits(TEN, 6f));
+        assertEquals(TEN, fuser.add(logits(TEN, 6f)));
+
+        assertEquals(ResultFuser.NO_DECISION, fuser.addEmpty());
+        assertEquals(ResultFuser.NO_DECISION, fuser.addEmpty());
+        assertEquals(NONE, fuser.getTopClass());
+    }
+}
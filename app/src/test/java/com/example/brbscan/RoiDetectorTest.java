@@ -0,0 +1,103 @@
+package com.example.brbscan;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RoiDetectorTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    private static YuvFrame frameOf(SyntheticYuvFrame planes) {
+        return new YuvFrame().set(planes.y, planes.yRowStride, 1, planes.u, planes.v,
+                planes.uvRowStride, planes.uvPixelStride, planes.width, planes.height, 90, 0);
+    }
+
+    // Fills a rectangle with high-contrast print-like texture
+    private static void texture(SyntheticYuvFrame planes, int left, int top, int right, int bottom, long seed) {
+        Random random = new Random(seed);
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) {
+                planes.setLuma(x, y, 40 + random.nextInt(180));
+            }
+        }
+    }
+
+    @Test
+    public void flatFrame_hasNoCandidate() {
+        RoiDetector detector = new RoiDetector();
+        RegionOfInterest roi = detector.detect(frameOf(SyntheticYuvFrame.flat(WIDTH, HEIGHT, 90)));
+        assertFalse(roi.isFound());
+    }
+
+    @Test
+    public void texturedNote_onPlainBackground_isBoxed() {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.flat(WIDTH, HEIGHT, 70);
+        texture(planes, 120, 60, 240, 150, 3);
+
+        RegionOfInterest roi = new RoiDetector().detect(frameOf(planes));
+        assertTrue(roi.isFound());
+        assertEquals(roi.width(), roi.height());
+        assertTrue(roi.toString(), roi.left <= 120 && roi.top <= 60);
+        assertTrue(roi.toString(), roi.right >= 240 && roi.bottom >= 150);
+        // Background is mostly excluded
+        assertTrue(roi.toString(), roi.width() * roi.height() < WIDTH * HEIGHT / 2);
+        assertTrue(roi.getScore() > 1.2f);
+    }
+
+    @Test
+    public void noteFillingFrame_usesWholeFrame() {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.flat(WIDTH, HEIGHT, 70);
+        texture(planes, 0, 0, WIDTH, HEIGHT, 5);
+
+        RegionOfInterest roi = new RoiDetector().detect(frameOf(planes));
+        assertTrue(roi.isFound());
+        assertEquals(HEIGHT, roi.height());
+        assertTrue(roi.left >= 0 && roi.right <= WIDTH);
+    }
+
+    @Test
+    public void tinySpeck_isNotACandidate() {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.flat(WIDTH, HEIGHT, 70);
+        texture(planes, 150, 100, 158, 108, 9);
+        assertFalse(new RoiDetector().detect(frameOf(planes)).isFound());
+    }
+
+    @Test
+    public void pipeline_skipsInferenceWithoutCandidate() throws Exception {
+        TensorPreprocessor preprocessor = new TensorPreprocessor(16);
+        final int[] counts = new int[2];
+        final Object done = new Object();
+        FramePipeline pipeline = new FramePipeline(preprocessor, 3, new FramePipeline.FrameConsumer() {
+            @Override
+            public void onFrame(java.nio.ByteBuffer input, long timestampNanos) {
+                synchronized (done) {
+                    counts[0]++;
+                    done.notifyAll();
+                }
+            }
+
+            @Override
+            public void onEmptyFrame(long timestampNanos) {
+                synchronized (done) {
+                    counts[1]++;
+                    done.notifyAll();
+                }
+            }
+        });
+        pipeline.start();
+        RoiDetector detector = new RoiDetector();
+        YuvFrame frame = frameOf(SyntheticYuvFrame.flat(WIDTH, HEIGHT, 90));
+        pipeline.submit(frame, detector.detect(frame));
+        synchronized (done) {
+            long deadline = System.currentTimeMillis() + 2000;
+            while (counts[0] + counts[1] == 0 && System.currentTimeMillis() < deadline) done.wait(100);
+        }
+        pipeline.stop();
+        assertEquals(0, counts[0]);
+        assertEquals(1, counts[1]);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.brbscan;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ScanMetricsTest {
+
+    @Test
+    public void bucketBounds_areContiguous() {
+        for (int i = 0; i < 200; i++) {
+            long low = LatencyHistogram.lowerBound(i);
+            assertEquals(i, LatencyHistogram.indexOf(low));
+            assertEquals(i, LatencyHistogram.indexOf(LatencyHistogram.lowerBound(i + 1) - 1));
+        }
+        assertEquals(LatencyHistogram.indexOf(Long.MAX_VALUE), LatencyHistogram.indexOf(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void percentiles_areWithinBucketResolution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(3);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100_000 + random.nextInt(20_000_000);
+            histogram.record(values[i]);
+        }
+        java.util.Arrays.sort(values);
+        for (double q : new double[]{0.5, 0.9, 0.99}) {
+            long exact = values[(int) Math.ceil(q * values.length) - 1];
+            assertEquals("q=" + q, exact, histogram.percentile(q), exact * 0.125);
+        }
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(values.length, histogram.getCount());
+    }
+
+    @Test
+    public void concurrentRecording_losesNothing() throws Exception {
+        ScanMetrics metrics = new ScanMetrics();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 25_000; i++) {
+                    metrics.record(ScanMetrics.Stage.INFERENCE, i);
+                    metrics.increment(ScanMetrics.Counter.INFERENCES);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        ScanMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(100_000, snapshot.count(ScanMetrics.Stage.INFERENCE));
+        assertEquals(100_000, snapshot.counter(ScanMetrics.Counter.INFERENCES));
+    }
+
+    @Test
+    public void noteToSpeech_coversFirstSightingToFirstAnnouncement() {
+        ScanMetrics metrics = new ScanMetrics();
+        metrics.markNoteInView(1_000_000);
+        metrics.markNoteInView(5_000_000);
+        metrics.recordAnnounced(301_000_000);
+        // Repeating the announcement for the same note is not a new latency sample
+        metrics.recordAnnounced(900_000_000);
+
+        ScanMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.count(ScanMetrics.Stage.NOTE_TO_SPEECH));
+        assertEquals(300_000_000, snapshot.meanNanos(ScanMetrics.Stage.NOTE_TO_SPEECH));
+        assertEquals(2, snapshot.counter(ScanMetrics.Counter.ANNOUNCEMENTS));
+
+        metrics.clearNoteInView();
+        metrics.markNoteInView(1_000_000_000);
+        metrics.recordAnnounced(1_200_000_000);
+        assertEquals(2, metrics.snapshot().count(ScanMetrics.Stage.NOTE_TO_SPEECH));
+    }
+
+    @Test
+    public void discardInstance_recordsNothing() {
+        long start = ScanMetrics.DISCARD.begin(ScanMetrics.Stage.GATE);
+        ScanMetrics.DISCARD.end(ScanMetrics.Stage.GATE, start);
+        ScanMetrics.DISCARD.increment(ScanMetrics.Counter.FRAMES_RECEIVED);
+        assertEquals(0, ScanMetrics.DISCARD.snapshot().count(ScanMetrics.Stage.GATE));
+        assertEquals(0, ScanMetrics.DISCARD.get(ScanMetrics.Counter.FRAMES_RECEIVED));
+    }
+
+    @Test
+    public void json_listsEveryStageAndCounter() {
+        ScanMetrics metrics = new ScanMetrics();
+        metrics.record(ScanMetrics.Stage.PREPROCESS, 2_000_000);
+        metrics.increment(ScanMetrics.Counter.FRAMES_DROPPED);
+        String json = metrics.snapshot().toJson();
+
+        assertTrue(json, json.startsWith("{\"uptime_ms\":"));
+        assertTrue(json, json.contains("\"preprocess\":{\"count\":1,"));
+        assertTrue(json, json.contains("\"frames_dropped\":1"));
+        for (ScanMetrics.Stage stage : ScanMetrics.Stage.values()) {
+            assertTrue(stage.key, json.contains("\"" + stage.key + "\":"));
+        }
+        int depth = 0;
+        for (char c : json.toCharArray()) {
+            if (c == '{') depth++;
+            if (c == '}') depth--;
+            assertTrue(depth >= 0);
+        }
+        assertEquals(0, depth);
+    }
+
+    @Test
+    public void pipeline_recordsPreprocessAndQueue() throws Exception {
+        ScanMetrics metrics = new ScanMetrics();
+        Object done = new Object();
+        int[] consumed = new int[1];
+        FramePipeline pipeline = new FramePipeline(new TensorPreprocessor(16), 3, (input, ts) -> {
+            synchronized (done) {
+                consumed[0]++;
+                done.notifyAll();
+            }
+        });
+        pipeline.setMetrics(metrics);
+        pipeline.start();
+        SyntheticYuvFrame planes = SyntheticYuvFrame.planar(64, 48, 0, 1);
+        pipeline.submit(new YuvFrame().set(planes.y, planes.yRowStride, 1, planes.u, planes.v,
+                planes.uvRowStride, planes.uvPixelStride, 64, 48, 0, 0));
+        synchronized (done) {
+            long deadline = System.currentTimeMillis() + 2000;
+            while (consumed[0] == 0 && System.currentTimeMillis() < deadline) done.wait(100);
+        }
+        pipeline.stop();
+
+        ScanMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.count(ScanMetrics.Stage.PREPROCESS));
+        assertEquals(1, snapshot.count(ScanMetrics.Stage.QUEUE));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.brbscan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ScanResultTest {
+
+    private static final int TEN = 1;
+
+    @Test
+    public void emptyStreak_countsConsecutiveNothing() {
+        ScanResult result = new ScanResult();
+        result.update(null, ScanResult.NOTHING, 0.9f, 1);
+        result.update(null, ScanResult.NOTHING, 0.9f, 2);
+        assertEquals(2, result.getEmptyStreak());
+        assertFalse(result.isNote());
+
+        result.update(null, TEN, 0.8f, 3);
+        assertTrue(result.isNote());
+        assertEquals(0, result.getEmptyStreak());
+        assertEquals(TEN, result.getClassId());
+
+        result.update(null, ScanResult.NOTHING, 0.5f, 4);
+        assertEquals(1, result.getEmptyStreak());
+    }
+
+    @Test
+    public void copy_carriesEverything() {
+        ScanResult source = new ScanResult();
+        source.update(null, ScanResult.NOTHING, 0.3f, 7);
+        source.update(null, ScanResult.NOTHING, 0.4f, 8);
+        ScanResult copy = new ScanResult();
+        copy.copyFrom(source);
+        assertEquals(2, copy.getEmptyStreak());
+        assertEquals(0.4f, copy.getConfidence(), 0f);
+        assertEquals(8, copy.createdNanos);
+
+        copy.clear();
+        assertEquals(0, copy.getEmptyStreak());
+        assertEquals(ScanResult.NOTHING, copy.getClassId());
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.brbscan;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScanSessionTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final List<String> calls = new ArrayList<>();
+    private ScanMetrics metrics;
+    private ScanSession session;
+
+    @Before
+    public void setUp() {
+        metrics = new ScanMetrics();
+        session = new ScanSession(new ScanSession.Host() {
+            @Override
+            public void setCapturing(boolean capturing) {
+                calls.add(capturing ? "capture" : "stop");
+            }
+
+            @Override
+            public void release(boolean all) {
+                calls.add(all ? "release all" : "release spare");
+            }
+
+            @Override
+            public void rewarm() {
+                calls.add("rewarm");
+            }
+        }, metrics);
+    }
+
+    @Test
+    public void pause_stopsCapture_andKeepsTheModelForAnInstantResume() {
+        assertFalse(session.isPaused());
+        session.onPause(0);
+        assertTrue(session.isPaused());
+        session.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        session.onResume(5_000 * MS);
+        assertFalse(session.isPaused());
+        assertEquals(Arrays.asList("stop", "capture"), calls);
+        assertEquals(0, metrics.snapshot().counter(ScanMetrics.Counter.REWARMS));
+    }
+
+    @Test
+    public void firstRecognitionAfterResume_isMeasuredOnce() {
+        session.onRecognition(1 * MS);
+        session.onPause(10 * MS);
+        session.onResume(1_000 * MS);
+        session.onRecognition(1_040 * MS);
+        session.onRecognition(1_090 * MS);
+
+        ScanMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.count(ScanMetrics.Stage.RESUME_TO_INFERENCE));
+        assertEquals(40 * MS, snapshot.meanNanos(ScanMetrics.Stage.RESUME_TO_INFERENCE));
+    }
+
+    @Test
+    public void backgroundTrim_releasesEverything_andTheNextResumeRewarms() {
+        session.onPause(0);
+        session.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        session.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertTrue(session.isReleased());
+        session.onResume(1_000 * MS);
+        assertFalse(session.isReleased());
+        assertEquals(Arrays.asList("stop", "release all", "rewarm", "capture"), calls);
+        assertEquals(1, metrics.snapshot().counter(ScanMetrics.Counter.REWARMS));
+
+        // Re-warm time counts towards the first inference
+        session.onRecognition(1_300 * MS);
+        assertEquals(300 * MS, metrics.snapshot().meanNanos(ScanMetrics.Stage.RESUME_TO_INFERENCE));
+    }
+
+    @Test
+    public void pressureWhileScanning_onlyFreesSpareModels() {
+        session.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        session.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        session.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        // Background levels only arrive once the app is no longer visible
+        session.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        session.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertFalse(session.isReleased());
+        assertEquals(Arrays.asList("release spare", "release spare"), calls);
+    }
+
+    @Test
+    public void framesDeliveredWhilePaused_areCounted() {
+        session.onPause(0);
+        session.onFrameWhilePaused();
+        session.onFrameWhilePaused();
+        assertEquals(2, metrics.snapshot().counter(ScanMetrics.Counter.FRAMES_WHILE_PAUSED));
+    }
+}
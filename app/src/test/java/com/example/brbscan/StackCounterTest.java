@@ -0,0 +1,131 @@
+package com.example.brbscan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class StackCounterTest {
+
+    private static final long FRAME = 33_000_000L;
+    private static final int FIVE = 0;
+    private static final int TEN = 1;
+
+    private CurrencyPack pack;
+    private StackCounter counter;
+    private final LumaGrid grid = new LumaGrid(16, 12);
+    private long now;
+
+    @Before
+    public void setUp() throws Exception {
+        pack = CurrencyPack.load("test", new ByteArrayInputStream(("name=Test\nlocale=en\nmodel=m.tflite\nclasses=2\n"
+                + "class.0.label=Five\nclass.0.value=5\n"
+                + "class.1.label=Ten\nclass.1.value=10\n"
+                + "count.total=%1$d in %2$d\n").getBytes(StandardCharsets.UTF_8)), null);
+        counter = new StackCounter();
+        counter.reset();
+    }
+
+    // Feeds n frames of a uniform scene and returns the timestamp of the last
+    private long show(int luma, int n) {
+        Arrays.fill(grid.values, luma);
+        for (int i = 0; i < n; i++) {
+            now += FRAME;
+            counter.onFrame(grid, now);
+        }
+        return now;
+    }
+
+    // Scene changing every frame, as while a note is being flipped
+    private void flip(int n) {
+        for (int i = 0; i < n; i++) show(i % 2 == 0 ? 200 : 40, 1);
+    }
+
+    @Test
+    public void heldNote_isCountedOnce() {
+        long t = show(120, 5);
+        assertEquals(FIVE, counter.onDecision(pack, FIVE, t));
+        for (int i = 0; i < 30; i++) {
+            t = show(120, 1);
+            assertEquals(ScanResult.NOTHING, counter.onDecision(pack, FIVE, t));
+        }
+        assertEquals(1, counter.getNotes());
+        assertEquals(5, counter.getTotal());
+    }
+
+    @Test
+    public void equalNotesSeparatedByAFlip_areCountedTwice() {
+        assertEquals(FIVE, counter.onDecision(pack, FIVE, show(120, 5)));
+        flip(4);
+        assertEquals(FIVE, counter.onDecision(pack, FIVE, show(90, 5)));
+        flip(4);
+        assertEquals(TEN, counter.onDecision(pack, TEN, show(150, 5)));
+        assertEquals(3, counter.getNotes());
+        assertEquals(20, counter.getTotal());
+        assertEquals("20 in 3", pack.totalText(counter.getTotal(), counter.getNotes()));
+    }
+
+    @Test
+    public void movingScene_countsNothing() {
+        counter.onDecision(pack, FIVE, show(120, 5));
+        flip(6);
+        assertEquals(ScanResult.NOTHING, counter.onDecision(pack, TEN, now));
+        assertEquals(1, counter.getNotes());
+    }
+
+    @Test
+    public void decisionFromBeforeTheSettle_isNotCounted() {
+        counter.onDecision(pack, FIVE, show(120, 5));
+        flip(4);
+        long during = now;
+        long settled = show(90, 5);
+        // A stale decision on a mid-flip frame must not count the new note
+        assertEquals(ScanResult.NOTHING, counter.onDecision(pack, FIVE, during));
+        assertEquals(FIVE, counter.onDecision(pack, FIVE, settled));
+    }
+
+    @Test
+    public void emptyDecision_doesNotUseUpTheSlot() {
+        long t = show(120, 5);
+        assertEquals(ScanResult.NOTHING, counter.onDecision(pack, ScanResult.NOTHING, t));
+        assertEquals(TEN, counter.onDecision(pack, TEN, show(120, 1)));
+    }
+
+    @Test
+    public void fusionReset_isRequestedOnChangeAndSettle() {
+        assertFalse(counter.needsFusionReset());
+        show(120, 5);
+        assertTrue(counter.needsFusionReset());
+        assertFalse(counter.needsFusionReset());
+        flip(2);
+        assertTrue(counter.needsFusionReset());
+        assertFalse(counter.needsFusionReset());
+        show(90, 5);
+        assertTrue(counter.needsFusionReset());
+        assertFalse(counter.needsFusionReset());
+    }
+
+    @Test
+    public void reset_startsANewCount() {
+        counter.onDecision(pack, TEN, show(120, 5));
+        counter.reset();
+        assertEquals(0, counter.getNotes());
+        assertEquals(0, counter.getTotal());
+        // The note still in view is the first of the new count
+        assertEquals(TEN, counter.onDecision(pack, TEN, show(120, 5)));
+    }
+
+    @Test
+    public void frameAndDecisionRates_areReported() {
+        for (int i = 0; i < 31; i++) {
+            long t = show(120, 1);
+            if (i % 3 == 0) counter.onDecision(pack, FIVE, t);
+        }
+        assertEquals(1e9f / FRAME, counter.getFrameRate(), 0.01f);
+        assertEquals(1e9f / (3 * FRAME), counter.getDecisionRate(), 0.01f);
+    }
+}
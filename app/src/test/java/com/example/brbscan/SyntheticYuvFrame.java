@@ -0,0 +1,109 @@
+package com.example.brbscan;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * YUV_420_888 planes built in memory, laid out the way camera HALs deliver them.
+ */
+class SyntheticYuvFrame {
+    final int width;
+    final int height;
+    final ByteBuffer y;
+    final ByteBuffer u;
+    final ByteBuffer v;
+    final int yRowStride;
+    final int uvRowStride;
+    final int uvPixelStride;
+
+    private SyntheticYuvFrame(int width, int height, ByteBuffer y, ByteBuffer u, ByteBuffer v,
+                              int yRowStride, int uvRowStride, int uvPixelStride) {
+        this.width = width;
+        this.height = height;
+        this.y = y;
+        this.u = u;
+        this.v = v;
+        this.yRowStride = yRowStride;
+        this.uvRowStride = uvRowStride;
+        this.uvPixelStride = uvPixelStride;
+    }
+
+    /** Fully planar (I420) frame with optional row padding. */
+    static SyntheticYuvFrame planar(int width, int height, int rowPadding, long seed) {
+        int cw = (width + 1) / 2;
+        int ch = (height + 1) / 2;
+        int yStride = width + rowPadding;
+        int uvStride = cw + rowPadding;
+        ByteBuffer y = ByteBuffer.allocateDirect(yStride * (height - 1) + width);
+        ByteBuffer u = ByteBuffer.allocateDirect(uvStride * (ch - 1) + cw);
+        ByteBuffer v = ByteBuffer.allocateDirect(uvStride * (ch - 1) + cw);
+        Random random = new Random(seed);
+        fill(y, random);
+        fill(u, random);
+        fill(v, random);
+        return new SyntheticYuvFrame(width, height, y, u, v, yStride, uvStride, 1);
+    }
+
+    /** Semi-planar (NV21) frame: U and V are views into one interleaved buffer. */
+    static SyntheticYuvFrame semiPlanar(int width, int height, int rowPadding, long seed) {
+        int cw = (width + 1) / 2;
+        int ch = (height + 1) / 2;
+        int yStride = width + rowPadding;
+        int uvStride = cw * 2 + rowPadding;
+        ByteBuffer y = ByteBuffer.allocateDirect(yStride * (height - 1) + width);
+        ByteBuffer vu = ByteBuffer.allocateDirect(uvStride * (ch - 1) + cw * 2);
+        Random random = new Random(seed);
+        fill(y, random);
+        fill(vu, random);
+        ByteBuffer v = vu.duplicate();
+        v.limit(vu.capacity() - 1);
+        vu.position(1);
+        ByteBuffer u = vu.slice();
+        return new SyntheticYuvFrame(width, height, y, u, v.slice(), yStride, uvStride, 2);
+    }
+
+    /** Planar frame with a constant luma value and neutral chroma. */
+    static SyntheticYuvFrame flat(int width, int height, int luma) {
+        SyntheticYuvFrame frame = planar(width, height, 0, 0);
+        fillConstant(frame.y, luma);
+        fillConstant(frame.u, 128);
+        fillConstant(frame.v, 128);
+        return frame;
+    }
+
+    int lumaAt(int x, int yPos) {
+        return y.get(yPos * yRowStride + x) & 0xff;
+    }
+
+    void setLuma(int x, int yPos, int value) {
+        y.put(yPos * yRowStride + x, (byte) value);
+    }
+
+    /** Reference BT.601 conversion in floating point for a single pixel. */
+    int referenceArgb(int x, int yPos) {
+        int uvIndex = (yPos / 2) * uvRowStride + (x / 2) * uvPixelStride;
+        int luma = lumaAt(x, yPos);
+        int cu = (u.get(uvIndex) & 0xff) - 128;
+        int cv = (v.get(uvIndex) & 0xff) - 128;
+        int r = clamp(Math.round(luma + 1.402f * cv));
+        int g = clamp(Math.round(luma - 0.344f * cu - 0.714f * cv));
+        int b = clamp(Math.round(luma + 1.772f * cu));
+        return 0xff000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static int clamp(int c) {
+        return Math.min(255, Math.max(0, c));
+    }
+
+    private static void fill(ByteBuffer buffer, Random random) {
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) random.nextInt(256));
+        }
+    }
+
+    private static void fillConstant(ByteBuffer buffer, int value) {
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) value);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.brbscan;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Times nearest and bilinear preprocessing into a 224x224 input across common CameraX
+ * analysis resolutions. Run with {@code ./gradlew test -Dbrbscan.bench=true}.
+ */
+public class TensorPreprocessorBenchmark {
+
+    private static final int SIZE = 224;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 100;
+    private static final int[][] RESOLUTIONS = {{320, 240}, {640, 480}, {1280, 720}, {1920, 1080}};
+
+    @Test
+    public void compareSamplingAcrossResolutions() {
+        Assume.assumeTrue(Boolean.getBoolean("brbscan.bench"));
+
+        TensorSpec spec = TensorSpec.float32(1, SIZE, SIZE, 3);
+        for (int[] resolution : RESOLUTIONS) {
+            SyntheticYuvFrame planes = SyntheticYuvFrame.semiPlanar(resolution[0], resolution[1], 64, 42);
+            YuvFrame frame = new YuvFrame().set(planes.y, planes.yRowStride, 1, planes.u, planes.v,
+                    planes.uvRowStride, planes.uvPixelStride, planes.width, planes.height, 90, 0);
+
+            long nearestNanos = time(new TensorPreprocessor(spec, false), frame);
+            long bilinearNanos = time(new TensorPreprocessor(spec, true), frame);
+
+            System.out.printf("%dx%d -> %d: nearest %.3f ms, bilinear %.3f ms%n",
+                    resolution[0], resolution[1], SIZE, nearestNanos / 1e6, bilinearNanos / 1e6);
+        }
+    }
+
+    private static long time(TensorPreprocessor preprocessor, YuvFrame frame) {
+        for (int i = 0; i < WARMUP; i++) preprocessor.process(frame);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) preprocessor.process(frame);
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+}
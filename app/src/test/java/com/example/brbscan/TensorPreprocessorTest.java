@@ -0,0 +1,249 @@
+package com.example.brbscan;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.*;
+
+public class TensorPreprocessorTest {
+
+    private static final int SIZE = 16;
+
+    private static TensorPreprocessor nearest() {
+        return new TensorPreprocessor(TensorSpec.float32(1, SIZE, SIZE, 3), false);
+    }
+
+    private static YuvFrame frameOf(SyntheticYuvFrame planes, int rotation) {
+        return new YuvFrame().set(planes.y, planes.yRowStride, 1, planes.u, planes.v,
+                planes.uvRowStride, planes.uvPixelStride, planes.width, planes.height, rotation, 0);
+    }
+
+    // Maps an upright coordinate back to the sensor coordinate it was rotated from
+    private static int[] sourceOf(int ux, int uy, int w, int h, int rotation) {
+        switch (rotation) {
+            case 90: return new int[]{uy, h - 1 - ux};
+            case 180: return new int[]{w - 1 - ux, h - 1 - uy};
+            case 270: return new int[]{w - 1 - uy, ux};
+            default: return new int[]{ux, uy};
+        }
+    }
+
+    private static void assertMatchesRotatedReference(SyntheticYuvFrame planes, int rotation) {
+        YuvFrame frame = frameOf(planes, rotation);
+        TensorPreprocessor preprocessor = nearest();
+        preprocessor.process(frame);
+        FloatBuffer floats = preprocessor.getInput().asFloatBuffer();
+        assertEquals(SIZE * SIZE * 3, floats.remaining());
+
+        int uprightWidth = frame.uprightWidth();
+        int uprightHeight = frame.uprightHeight();
+        for (int oy = 0; oy < SIZE; oy++) {
+            for (int ox = 0; ox < SIZE; ox++) {
+                int ux = (2 * ox + 1) * uprightWidth / (2 * SIZE);
+                int uy = (2 * oy + 1) * uprightHeight / (2 * SIZE);
+                int[] src = sourceOf(ux, uy, planes.width, planes.height, rotation);
+                int argb = planes.referenceArgb(src[0], src[1]);
+                int base = (oy * SIZE + ox) * 3;
+                for (int c = 0; c < 3; c++) {
+                    float expected = (((argb >> (16 - 8 * c)) & 0xff) / 127.5f) - 1;
+                    assertEquals("rotation " + rotation + " at " + ox + "," + oy,
+                            expected, floats.get(base + c), 2.5f / 127.5f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void allRotations_matchReference() {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.semiPlanar(64, 48, 8, 7);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            assertMatchesRotatedReference(planes, rotation);
+        }
+    }
+
+    @Test
+    public void planarFrame_matchesReference() {
+        assertMatchesRotatedReference(SyntheticYuvFrame.planar(40, 30, 4, 8), 90);
+    }
+
+    @Test
+    public void neutralGrayFrame_normalizesToZero() {
+        TensorPreprocessor preprocessor = new TensorPreprocessor(SIZE);
+        SyntheticYuvFrame planes = SyntheticYuvFrame.flat(32, 24, 128);
+        preprocessor.process(frameOf(planes, 0));
+        FloatBuffer floats = preprocessor.getInput().asFloatBuffer();
+        for (int i = 0; i < floats.capacity(); i++) {
+            assertEquals(0.5f / 127.5f, floats.get(i), 1e-6f);
+        }
+    }
+
+    @Test
+    public void inputBuffer_isReusedAcrossFrames() {
+        TensorPreprocessor preprocessor = new TensorPreprocessor(SIZE);
+        ByteBuffer first = preprocessor.getInput();
+        preprocessor.process(frameOf(SyntheticYuvFrame.planar(32, 24, 0, 1), 0));
+        preprocessor.process(frameOf(SyntheticYuvFrame.planar(48, 32, 0, 2), 270));
+        assertSame(first, preprocessor.getInput());
+        assertTrue(first.isDirect());
+    }
+
+    @Test
+    public void crop_samplesOnlyInsideRegion() {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.semiPlanar(64, 48, 8, 11);
+        RegionOfInterest crop = new RegionOfInterest().set(10, 6, 42, 38);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            YuvFrame frame = frameOf(planes, rotation);
+            TensorPreprocessor preprocessor = nearest();
+            preprocessor.process(frame, preprocessor.newInput(), null);
+            InputEncoder target = preprocessor.newInput();
+            preprocessor.process(frame, target, crop);
+            FloatBuffer floats = target.getBuffer().asFloatBuffer();
+
+            // Upright bounds of the crop, found by brute force rather than the rotation formulas
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = -1, maxY = -1;
+            for (int uy = 0; uy < frame.uprightHeight(); uy++) {
+                for (int ux = 0; ux < frame.uprightWidth(); ux++) {
+                    int[] src = sourceOf(ux, uy, planes.width, planes.height, rotation);
+                    if (crop.contains(src[0], src[1])) {
+                        minX = Math.min(minX, ux);
+                        minY = Math.min(minY, uy);
+                        maxX = Math.max(maxX, ux);
+                        maxY = Math.max(maxY, uy);
+                    }
+                }
+            }
+            int cropWidth = maxX - minX + 1;
+            int cropHeight = maxY - minY + 1;
+
+            for (int oy = 0; oy < SIZE; oy++) {
+                for (int ox = 0; ox < SIZE; ox++) {
+                    int ux = minX + (2 * ox + 1) * cropWidth / (2 * SIZE);
+                    int uy = minY + (2 * oy + 1) * cropHeight / (2 * SIZE);
+                    int[] src = sourceOf(ux, uy, planes.width, planes.height, rotation);
+                    assertTrue(crop.contains(src[0], src[1]));
+                    int argb = planes.referenceArgb(src[0], src[1]);
+                    int base = (oy * SIZE + ox) * 3;
+                    for (int c = 0; c < 3; c++) {
+                        float expected = (((argb >> (16 - 8 * c)) & 0xff) / 127.5f) - 1;
+                        assertEquals("rotation " + rotation + " at " + ox + "," + oy,
+                                expected, floats.get(base + c), 2.5f / 127.5f);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void crop_outsideFrame_isRejected() {
+        TensorPreprocessor preprocessor = new TensorPreprocessor(SIZE);
+        preprocessor.process(frameOf(SyntheticYuvFrame.planar(32, 24, 0, 1), 0),
+                preprocessor.newInput(), new RegionOfInterest().set(8, 8, 40, 20));
+    }
+
+    // Upright copy of a plane, built by brute force through sourceOf
+    private static float[] upright(ByteBuffer plane, int rowStride, int pixelStride, int w, int h, int rotation) {
+        boolean swap = rotation == 90 || rotation == 270;
+        int uw = swap ? h : w;
+        int uh = swap ? w : h;
+        float[] out = new float[uw * uh];
+        for (int uy = 0; uy < uh; uy++) {
+            for (int ux = 0; ux < uw; ux++) {
+                int[] src = sourceOf(ux, uy, w, h, rotation);
+                out[uy * uw + ux] = plane.get(src[1] * rowStride + src[0] * pixelStride) & 0xff;
+            }
+        }
+        return out;
+    }
+
+    // Textbook bilinear sample at a continuous pixel-centre coordinate, clamped to the edges
+    private static float sample(float[] plane, int w, int h, float x, float y) {
+        x = Math.max(0, Math.min(w - 1, x));
+        y = Math.max(0, Math.min(h - 1, y));
+        int x0 = (int) x;
+        int y0 = (int) y;
+        int x1 = Math.min(x0 + 1, w - 1);
+        int y1 = Math.min(y0 + 1, h - 1);
+        float fx = x - x0;
+        float fy = y - y0;
+        float upper = plane[y0 * w + x0] * (1 - fx) + plane[y0 * w + x1] * fx;
+        float lower = plane[y1 * w + x0] * (1 - fx) + plane[y1 * w + x1] * fx;
+        return upper * (1 - fy) + lower * fy;
+    }
+
+    private static void assertMatchesBilinearReference(SyntheticYuvFrame planes, int rotation) {
+        YuvFrame frame = frameOf(planes, rotation);
+        TensorPreprocessor preprocessor = new TensorPreprocessor(SIZE);
+        preprocessor.process(frame);
+        FloatBuffer floats = preprocessor.getInput().asFloatBuffer();
+
+        int uw = frame.uprightWidth();
+        int uh = frame.uprightHeight();
+        float[] y = upright(planes.y, planes.yRowStride, 1, planes.width, planes.height, rotation);
+        float[] u = upright(planes.u, planes.uvRowStride, planes.uvPixelStride,
+                planes.width / 2, planes.height / 2, rotation);
+        float[] v = upright(planes.v, planes.uvRowStride, planes.uvPixelStride,
+                planes.width / 2, planes.height / 2, rotation);
+        for (int oy = 0; oy < SIZE; oy++) {
+            for (int ox = 0; ox < SIZE; ox++) {
+                float px = (ox + 0.5f) * uw / SIZE - 0.5f;
+                float py = (oy + 0.5f) * uh / SIZE - 0.5f;
+                float luma = sample(y, uw, uh, px, py);
+                float cu = sample(u, uw / 2, uh / 2, (px - 0.5f) / 2, (py - 0.5f) / 2) - 128;
+                float cv = sample(v, uw / 2, uh / 2, (px - 0.5f) / 2, (py - 0.5f) / 2) - 128;
+                float[] rgb = {luma + 1.402f * cv, luma - 0.344f * cu - 0.714f * cv, luma + 1.772f * cu};
+                int base = (oy * SIZE + ox) * 3;
+                for (int c = 0; c < 3; c++) {
+                    float expected = Math.max(0, Math.min(255, rgb[c])) / 127.5f - 1;
+                    assertEquals("rotation " + rotation + " at " + ox + "," + oy,
+                            expected, floats.get(base + c), 3.5f / 127.5f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bilinear_allRotations_matchReference() {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.semiPlanar(64, 48, 8, 7);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            assertMatchesBilinearReference(planes, rotation);
+        }
+        assertMatchesBilinearReference(SyntheticYuvFrame.planar(40, 30, 4, 8), 270);
+    }
+
+    @Test
+    public void bilinear_cropNeverBlendsInPixelsOutsideIt() {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.flat(64, 48, 250);
+        RegionOfInterest crop = new RegionOfInterest().set(10, 6, 42, 38);
+        for (int sy = crop.top; sy < crop.bottom; sy++) {
+            for (int sx = crop.left; sx < crop.right; sx++) planes.setLuma(sx, sy, 20);
+        }
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            TensorPreprocessor preprocessor = new TensorPreprocessor(SIZE);
+            InputEncoder target = preprocessor.newInput();
+            preprocessor.process(frameOf(planes, rotation), target, crop);
+            FloatBuffer floats = target.getBuffer().asFloatBuffer();
+            for (int i = 0; i < SIZE * SIZE * 3; i++) {
+                assertEquals("rotation " + rotation + " element " + i, 20 / 127.5f - 1, floats.get(i), 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void tables_areRebuiltOnlyWhenGeometryChanges() {
+        SyntheticYuvFrame planes = SyntheticYuvFrame.semiPlanar(64, 48, 8, 3);
+        RegionOfInterest roi = new RegionOfInterest().set(8, 4, 40, 36);
+        TensorPreprocessor preprocessor = new TensorPreprocessor(TensorSpec.float32(4, SIZE, SIZE, 3));
+        InputEncoder target = preprocessor.newInput();
+        for (int i = 0; i < 5; i++) preprocessor.process(frameOf(planes, 90), target, roi);
+        for (int slot = 0; slot < 4; slot++) {
+            assertEquals("slot " + slot, 1, preprocessor.getTableBuildCount(slot));
+        }
+
+        preprocessor.process(frameOf(planes, 90), target, new RegionOfInterest().set(8, 4, 40, 40));
+        assertEquals(2, preprocessor.getTableBuildCount(0));
+        // The centre crop does not depend on the region
+        assertEquals(1, preprocessor.getTableBuildCount(3));
+    }
+}